@@ -0,0 +1,550 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import vjavax.observer.Subscription;
+import vjavax.observer.collection.CollectionChangeEvent;
+import vjavax.observer.collection.CollectionChangeListener;
+
+/**
+ * Thread-safe observable list. Reads are performed optimistically without
+ * locking and only fall back to a read lock if a write happened concurrently.
+ * Writes are exclusive.
+ *
+ * Listeners are notified after the write lock has been released, i.e.,
+ * listeners may be notified concurrently by different writer threads and may
+ * receive events in a different order than the changes were applied. Events
+ * carry a sequence number (see {@link VListChangeEvent#sequenceNumber()})
+ * that reflects the order of the changes.
+ *
+ * Elements are stored in a persistent vector. Snapshots (see
+ * {@link #snapshot()}) are taken in constant time without blocking writers,
+ * iterators operate on a snapshot of the list and don't support
+ * modification. Sublists are views that are not thread-safe themselves.
+ *
+ * In contrast to an array list, {@link #get(int)} and {@link #set(int, Object)}
+ * cost {@code O(log32 n)}, appending and removing the last element cost
+ * amortized {@code O(1)}. Inserting or removing at index {@code i} shifts the
+ * following elements with one array copy per leaf, i.e., it costs
+ * {@code O((n - i) + (n - i) / 32 * log32 n)}.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ * @param <T> element type
+ */
+public final class ConcurrentVList<T> extends AbstractList<T> implements VList<T> {
+
+    private final StampedLock lock = new StampedLock();
+
+    private final TransientVector<T> elements;
+    private final VListImpl<T> list;
+
+    private final List<CollectionChangeListener<T, ? super VList<T>,
+            ? super VListChange<T>>> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by the write lock
+    private List<VListChangeEvent<T>> pendingEvents = new ArrayList<>();
+    private long sequenceNumber;
+    private final VListChangeListener<T> captureListener = this::capture;
+    private boolean capturing;
+
+    private VList<T> unmodifiableInstance;
+
+    private ConcurrentVList(Collection<? extends T> elements) {
+        this.elements = new TransientVector<>();
+        this.elements.addAll(elements);
+        this.list = VListImpl.newInstance(this.elements);
+    }
+
+    /**
+     * Creates a new empty concurrent list.
+     *
+     * @param <T> element type
+     * @return a new empty concurrent list
+     */
+    public static <T> ConcurrentVList<T> newInstance() {
+        return new ConcurrentVList<>(Collections.<T>emptyList());
+    }
+
+    /**
+     * Creates a new concurrent list that contains the specified elements.
+     * The elements are copied.
+     *
+     * @param <T> element type
+     * @param elements initial elements
+     * @return a new concurrent list that contains the specified elements
+     */
+    public static <T> ConcurrentVList<T> newInstance(Collection<? extends T> elements) {
+        return new ConcurrentVList<>(elements);
+    }
+
+    /**
+     * Performs the specified read operation. The operation is first performed
+     * without locking. If a write happened concurrently the operation is
+     * repeated with the read lock held.
+     *
+     * @param <R> result type
+     * @param reader read operation (must not have side effects)
+     * @return result of the read operation
+     */
+    private <R> R read(Supplier<R> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                R result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException ex) {
+                // inconsistent state caused by a concurrent write, retry below
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Performs the specified write operation with the write lock held and
+     * notifies the listeners after the lock has been released.
+     *
+     * @param <R> result type
+     * @param writer write operation
+     * @return result of the write operation
+     */
+    private <R> R write(Function<VList<T>, R> writer) {
+        R result;
+        List<VListChangeEvent<T>> events;
+
+        long stamp = lock.writeLock();
+        try {
+            result = writer.apply(list);
+            events = drainPendingEvents();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        dispatch(events);
+
+        return result;
+    }
+
+    private List<VListChangeEvent<T>> drainPendingEvents() {
+        if (pendingEvents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<VListChangeEvent<T>> events = pendingEvents;
+        pendingEvents = new ArrayList<>();
+        return events;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch(List<VListChangeEvent<T>> events) {
+        for (VListChangeEvent<T> evt : events) {
+            for (CollectionChangeListener l : listeners) {
+                l.onChange(evt);
+            }
+        }
+    }
+
+    /**
+     * Captures the events of the wrapped list (called with the write lock
+     * held).
+     */
+    @SuppressWarnings("unchecked")
+    private void capture(CollectionChangeEvent<T, VList<T>, VListChange<T>> evt) {
+        pendingEvents.add(new VListSequencedEventImpl<>(this,
+                (VListChangeEvent<T>) evt, ++sequenceNumber));
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = elements.size();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = elements.size();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public T get(int index) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                T element = elements.get(index);
+                if (lock.validate(stamp)) {
+                    return element;
+                }
+            } catch (RuntimeException ex) {
+                // inconsistent state caused by a concurrent write, retry below
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return elements.get(index);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return read(() -> elements.contains(o));
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return read(() -> elements.indexOf(o));
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return read(() -> elements.lastIndexOf(o));
+    }
+
+    @Override
+    public Object[] toArray() {
+        return read(elements::toArray);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E> E[] toArray(E[] a) {
+        Object[] snapshot = toArray();
+        if (a.length < snapshot.length) {
+            return (E[]) Arrays.copyOf(snapshot, snapshot.length, a.getClass());
+        }
+        System.arraycopy(snapshot, 0, a, 0, snapshot.length);
+        if (a.length > snapshot.length) {
+            a[snapshot.length] = null;
+        }
+        return a;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of this list. The iterator does not
+     * support modification.
+     *
+     * @return an iterator over a snapshot of this list
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return listIterator(0);
+    }
+
+    /**
+     * Returns a list iterator over a snapshot of this list. The iterator does
+     * not support modification.
+     *
+     * @return a list iterator over a snapshot of this list
+     */
+    @Override
+    public ListIterator<T> listIterator() {
+        return listIterator(0);
+    }
+
+    /**
+     * Returns a list iterator over a snapshot of this list. The iterator does
+     * not support modification.
+     *
+     * @param index index of the first element to be returned
+     * @return a list iterator over a snapshot of this list
+     */
+    @Override
+    public ListIterator<T> listIterator(int index) {
+        return snapshot().listIterator(index);
+    }
+
+    /**
+     * Returns an immutable snapshot of this list in constant time. The
+     * snapshot is taken like any other read, i.e., optimistically. It shares
+     * its nodes with this list, the next write copies the nodes it touches.
+     *
+     * @return an immutable snapshot of this list
+     */
+    @Override
+    public List<T> snapshot() {
+        return read(elements::share);
+    }
+
+    @Override
+    public boolean add(T e) {
+        return write(l -> l.add(e));
+    }
+
+    @Override
+    public void add(int index, T element) {
+        write(l -> {
+            l.add(index, element);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        List<T> copy = new ArrayList<>(c);
+        return write(l -> l.addAll(copy));
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> c) {
+        List<T> copy = new ArrayList<>(c);
+        return write(l -> l.addAll(index, copy));
+    }
+
+    @Override
+    public boolean addAll(int[] indices, Collection<? extends T> c) {
+        List<T> copy = new ArrayList<>(c);
+        return write(l -> l.addAll(indices, copy));
+    }
+
+    @Override
+    public T set(int index, T element) {
+        return write(l -> l.set(index, element));
+    }
+
+    @Override
+    public Collection<T> setAll(int index, Collection<T> elements) {
+        List<T> copy = new ArrayList<>(elements);
+        return write(l -> l.setAll(index, copy));
+    }
+
+    @Override
+    public T remove(int index) {
+        return write(l -> l.remove(index));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return write(l -> l.remove(o));
+    }
+
+    @Override
+    public boolean removeAll(int... indices) {
+        return write(l -> l.removeAll(indices));
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return write(l -> l.removeAll(c));
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return write(l -> l.retainAll(c));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        return write(l -> l.removeIf(filter));
+    }
+
+    @Override
+    public void clear() {
+        write(l -> {
+            l.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<T> operator) {
+        write(l -> {
+            l.replaceAll(operator);
+            return null;
+        });
+    }
+
+    @Override
+    public void sort(Comparator<? super T> c) {
+        write(l -> {
+            l.sort(c);
+            return null;
+        });
+    }
+
+    @Override
+    public void parallelReplaceAll(UnaryOperator<T> operator, ForkJoinPool pool) {
+        write(l -> {
+            l.parallelReplaceAll(operator, pool);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean parallelRemoveIf(Predicate<? super T> filter, ForkJoinPool pool) {
+        return write(l -> l.parallelRemoveIf(filter, pool));
+    }
+
+    @Override
+    public void parallelSort(Comparator<? super T> c, ForkJoinPool pool) {
+        write(l -> {
+            l.parallelSort(c, pool);
+            return null;
+        });
+    }
+
+    @Override
+    public void moveRange(int from, int count, int to) {
+        write(l -> {
+            l.moveRange(from, count, to);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean setContents(List<? extends T> elements) {
+        List<T> copy = new ArrayList<>(elements);
+        return write(l -> l.setContents(copy));
+    }
+
+    @Override
+    public boolean setRangeContents(int fromIndex, int toIndex, List<? extends T> elements) {
+        List<T> copy = new ArrayList<>(elements);
+        return write(l -> l.setRangeContents(fromIndex, toIndex, copy));
+    }
+
+    @Override
+    public void sortRange(int fromIndex, int toIndex, Comparator<? super T> c) {
+        write(l -> {
+            l.sortRange(fromIndex, toIndex, c);
+            return null;
+        });
+    }
+
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        return subListView(fromIndex, toIndex);
+    }
+
+    @Override
+    public VList<T> asUnmodifiable() {
+        // benign race, the view is stateless apart from its listeners
+        if (unmodifiableInstance == null) {
+            unmodifiableInstance = new UnmodifiableVList<>(this);
+        }
+        return unmodifiableInstance;
+    }
+
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        write(l -> {
+            l.setEqualityPolicy(policy);
+            return null;
+        });
+    }
+
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return read(list::getEqualityPolicy);
+    }
+
+    @Override
+    public void setEventInfo(String evtInfo) {
+        write(l -> {
+            l.setEventInfo(evtInfo);
+            return null;
+        });
+    }
+
+    @Override
+    public String getEventInfo() {
+        return read(list::getEventInfo);
+    }
+
+    @Override
+    public Subscription addChangeListener(
+            CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
+        long stamp = lock.writeLock();
+        try {
+            listeners.add(l);
+            if (!capturing) {
+                list.addChangeListener(captureListener);
+                capturing = true;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return () -> removeChangeListener(l);
+    }
+
+    @Override
+    public boolean removeChangeListener(
+            CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
+        long stamp = lock.writeLock();
+        try {
+            boolean result = listeners.remove(l);
+            if (listeners.isEmpty() && capturing) {
+                // no events are created without listeners
+                list.removeChangeListener(captureListener);
+                capturing = false;
+            }
+            return result;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
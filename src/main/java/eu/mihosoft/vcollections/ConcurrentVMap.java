@@ -0,0 +1,561 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import vjavax.observer.Subscription;
+
+/**
+ * Thread-safe observable map backed by a {@link ConcurrentHashMap}. Each
+ * modification is performed by a single atomic
+ * {@link ConcurrentHashMap#compute(Object, BiFunction)} call that captures the
+ * previous and the new value of the key. Like the backing map, this map
+ * doesn't support {@code null} keys or values.
+ *
+ * Events of the same key are delivered in the order of the modifications.
+ * Keys are distributed over a fixed number of stripes, each change is assigned
+ * a ticket of its stripe while the key is locked by the backing map. Events of
+ * a stripe are delivered in ticket order, events of different stripes are
+ * delivered independently by the writer threads. If another thread is already
+ * delivering events of the same stripe, a writer hands its event over to that
+ * thread and returns without waiting. Listeners may therefore be notified by
+ * threads other than the writer and concurrently for keys of different
+ * stripes.
+ *
+ * Bulk operations such as {@link #putAll(Map)} or {@link #clear()} are not
+ * atomic and fire one event per key. Likewise, {@link #snapshot()} copies the map and doesn't
+ * reflect a single point in time if writers are active.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class ConcurrentVMap<K, V> extends AbstractMap<K, V> implements VMap<K, V> {
+
+    private static final Object SKIPPED = new Object();
+
+    private final ConcurrentHashMap<K, V> map;
+
+    private final List<VMapChangeListener<K, V>> listeners = new CopyOnWriteArrayList<>();
+
+    private final Stripe[] stripes;
+
+    private volatile EqualityPolicy equalityPolicy = EqualityPolicy.NONE;
+    private volatile String evtInfo = "";
+
+    private Set<Entry<K, V>> entrySet;
+    private VMap<K, V> unmodifiableInstance;
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentVMap(Map<? extends K, ? extends V> entries) {
+        this.map = new ConcurrentHashMap<>(entries);
+
+        int n = Integer.highestOneBit(Math.max(1,
+                Runtime.getRuntime().availableProcessors() * 4 - 1)) << 1;
+        this.stripes = new ConcurrentVMap.Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Creates a new empty concurrent map.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @return a new empty concurrent map
+     */
+    public static <K, V> ConcurrentVMap<K, V> newInstance() {
+        return new ConcurrentVMap<>(Collections.<K, V>emptyMap());
+    }
+
+    /**
+     * Creates a new concurrent map that contains the entries of the specified
+     * map. The entries are copied.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param entries initial entries
+     * @return a new concurrent map that contains the specified entries
+     */
+    public static <K, V> ConcurrentVMap<K, V> newInstance(Map<? extends K, ? extends V> entries) {
+        return new ConcurrentVMap<>(entries);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return map.containsValue(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return map.getOrDefault(key, defaultValue);
+    }
+
+    // Each modification calls compute() exactly once. The remapping functions
+    // below record writes via write(), i.e., while the key is locked by the
+    // backing map. The event is published after compute() has returned.
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        Change<V> c = new Change<>();
+        modify(key, c, (k, cur) -> write(c, k, cur, value));
+        return c.oldValue;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(value);
+        Change<V> c = new Change<>();
+        modify(key, c, (k, cur) -> cur != null ? keep(c, cur) : write(c, k, null, value));
+        return c.oldValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        Change<V> c = new Change<>();
+        modify((K) key, c, (k, cur) -> cur == null ? null : write(c, k, cur, null));
+        return c.oldValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        Change<V> c = new Change<>();
+        modify((K) key, c, (k, cur) -> value.equals(cur) ? write(c, k, cur, null) : cur);
+        return c.written;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        Change<V> c = new Change<>();
+        modify(key, c, (k, cur) -> cur == null ? null : write(c, k, cur, value));
+        return c.oldValue;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        Change<V> c = new Change<>();
+        modify(key, c, (k, cur) -> oldValue.equals(cur) ? write(c, k, cur, newValue) : cur);
+        return c.written;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V value = map.get(key);
+        if (value != null) {
+            return value;
+        }
+        Change<V> c = new Change<>();
+        return modify(key, c, (k, cur) -> {
+            if (cur != null) {
+                return keep(c, cur);
+            }
+            V newValue = mappingFunction.apply(k);
+            return newValue == null ? null : write(c, k, null, newValue);
+        });
+    }
+
+    @Override
+    public V computeIfPresent(K key,
+            BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        Change<V> c = new Change<>();
+        return modify(key, c, (k, cur) -> cur == null ? null
+                : write(c, k, cur, remappingFunction.apply(k, cur)));
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        Change<V> c = new Change<>();
+        return modify(key, c, (k, cur) -> {
+            V newValue = remappingFunction.apply(k, cur);
+            return cur == null && newValue == null ? null : write(c, k, cur, newValue);
+        });
+    }
+
+    @Override
+    public V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        Change<V> c = new Change<>();
+        return modify(key, c, (k, cur) -> cur == null ? write(c, k, null, value)
+                : write(c, k, cur, remappingFunction.apply(cur, value)));
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        for (K key : map.keySet()) {
+            Change<V> c = new Change<>();
+            modify(key, c, (k, cur) -> cur == null ? null
+                    : write(c, k, cur, Objects.requireNonNull(function.apply(k, cur))));
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (K key : map.keySet()) {
+            remove(key);
+        }
+    }
+
+    @Override
+    @SafeVarargs
+    public final boolean removeAll(K... keys) {
+        if (keys.length == 0) {
+            return true;
+        }
+        boolean result = false;
+        for (K key : keys) {
+            result |= remove(key) != null;
+        }
+        return result;
+    }
+
+    /**
+     * Performs a modification of the specified key and publishes the recorded
+     * change.
+     *
+     * @param key key to modify
+     * @param c change that is recorded by the remapping function
+     * @param remapping remapping function, records writes via
+     * {@link #write(Change, Object, Object, Object)}
+     * @return the value of the key after the modification
+     */
+    private V modify(K key, Change<V> c, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        V result;
+        try {
+            result = map.compute(key, remapping);
+        } catch (RuntimeException | Error ex) {
+            if (c.ticket >= 0) {
+                // the ticket has been drawn, the stripe must not stall
+                c.stripe.complete(c.ticket, SKIPPED);
+            }
+            throw ex;
+        }
+
+        if (c.ticket >= 0) {
+            c.stripe.complete(c.ticket, changeEvent(key, c));
+        }
+
+        return result;
+    }
+
+    private static <V> V keep(Change<V> c, V current) {
+        c.oldValue = current;
+        return current;
+    }
+
+    /**
+     * Records a write (called while the key is locked by the backing map).
+     *
+     * @param c change to record
+     * @param key key
+     * @param oldValue previous value ({@code null} if the key is absent)
+     * @param newValue new value ({@code null} removes the key)
+     * @return the new value
+     */
+    private V write(Change<V> c, K key, V oldValue, V newValue) {
+        c.oldValue = oldValue;
+        c.newValue = newValue;
+        c.written = true;
+
+        boolean changed = oldValue == null || newValue == null
+                || !equalityPolicy.isUnchanged(oldValue, newValue);
+
+        if (changed && !listeners.isEmpty()) {
+            c.stripe = stripes[spread(key.hashCode()) & (stripes.length - 1)];
+            c.ticket = c.stripe.nextTicket.getAndIncrement();
+        }
+
+        return newValue;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private VMapChangeEvent<K, V> changeEvent(K key, Change<V> c) {
+        if (c.oldValue == null) {
+            return VMapChangeEvent.getAddedEvent(this,
+                    Collections.singletonMap(key, c.newValue), getEventInfo());
+        } else if (c.newValue == null) {
+            return VMapChangeEvent.getRemovedEvent(this,
+                    Collections.singletonMap(key, c.oldValue), getEventInfo());
+        } else {
+            return VMapChangeEvent.getSetEvent(this,
+                    Collections.singletonMap(key, c.oldValue),
+                    Collections.singletonMap(key, c.newValue), getEventInfo());
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @Override
+    public VMap<K, V> asUnmodifiable() {
+        // benign race, the view is stateless apart from its listeners
+        if (unmodifiableInstance == null) {
+            unmodifiableInstance = new UnmodifiableVMap<>(this);
+        }
+        return unmodifiableInstance;
+    }
+
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        this.equalityPolicy = Objects.requireNonNull(policy);
+    }
+
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return this.equalityPolicy;
+    }
+
+    @Override
+    public void setEventInfo(String evtInfo) {
+        this.evtInfo = evtInfo == null ? "" : evtInfo;
+    }
+
+    @Override
+    public String getEventInfo() {
+        return this.evtInfo;
+    }
+
+    @Override
+    public Subscription addChangeListener(VMapChangeListener<K, V> l) {
+        listeners.add(l);
+        return () -> removeChangeListener(l);
+    }
+
+    @Override
+    public boolean removeChangeListener(VMapChangeListener<K, V> l) {
+        return listeners.remove(l);
+    }
+
+    /**
+     * Change of a single key recorded by a remapping function.
+     *
+     * @param <V> value type
+     */
+    private static final class Change<V> {
+
+        private V oldValue;
+        private V newValue;
+        private boolean written;
+
+        private ConcurrentVMap<?, V>.Stripe stripe;
+        private long ticket = -1;
+    }
+
+    /**
+     * Delivers the events of the keys of one stripe in ticket order.
+     */
+    private final class Stripe {
+
+        private final AtomicLong nextTicket = new AtomicLong();
+
+        // guarded by this stripe
+        private final Map<Long, Object> completed = new HashMap<>();
+        private long nowServing;
+        private boolean delivering;
+
+        /**
+         * Completes the specified ticket. The calling thread delivers all
+         * events that are ready unless another thread already does.
+         *
+         * @param ticket ticket to complete
+         * @param evt event of the ticket or {@link #SKIPPED}
+         */
+        @SuppressWarnings("unchecked")
+        void complete(long ticket, Object evt) {
+            synchronized (this) {
+                completed.put(ticket, evt);
+                if (delivering) {
+                    return;
+                }
+                delivering = true;
+            }
+
+            try {
+                while (true) {
+                    Object next;
+                    synchronized (this) {
+                        next = completed.remove(nowServing);
+                        if (next == null) {
+                            delivering = false;
+                            return;
+                        }
+                        nowServing++;
+                    }
+                    if (next != SKIPPED) {
+                        for (VMapChangeListener<K, V> l : listeners) {
+                            l.onChange((VMapChangeEvent<K, V>) next);
+                        }
+                    }
+                }
+            } catch (RuntimeException | Error ex) {
+                // remaining events are delivered by the next writer of this stripe
+                synchronized (this) {
+                    delivering = false;
+                }
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Entry set of this map. Modifications are performed by this map.
+     */
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Iterator<Entry<K, V>> it = map.entrySet().iterator();
+            return new Iterator<Entry<K, V>>() {
+
+                private Entry<K, V> last;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    Entry<K, V> e = it.next();
+                    last = new SimpleEntry<K, V>(e.getKey(), e.getValue()) {
+                        @Override
+                        public V setValue(V value) {
+                            super.setValue(value);
+                            return put(getKey(), value);
+                        }
+                    };
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    ConcurrentVMap.this.remove(last.getKey());
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.entrySet().contains(o);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return e.getKey() != null && ConcurrentVMap.this.remove(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentVMap.this.clear();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.Objects;
+
+/**
+ * Determines whether a write operation that replaces a value with another
+ * value is reported to listeners. Writes that don't change the value according
+ * to the policy are still performed but don't fire change events.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public enum EqualityPolicy {
+
+    /**
+     * Every write is reported, even if the new value equals the old value.
+     */
+    NONE {
+        @Override
+        public boolean isUnchanged(Object oldValue, Object newValue) {
+            return false;
+        }
+    },
+
+    /**
+     * Writes are ignored if the new value is the same instance as the old
+     * value.
+     */
+    IDENTITY {
+        @Override
+        public boolean isUnchanged(Object oldValue, Object newValue) {
+            return oldValue == newValue;
+        }
+    },
+
+    /**
+     * Writes are ignored if the new value is equal to the old value (see
+     * {@link Object#equals(java.lang.Object)}).
+     */
+    EQUALS {
+        @Override
+        public boolean isUnchanged(Object oldValue, Object newValue) {
+            return Objects.equals(oldValue, newValue);
+        }
+    };
+
+    /**
+     * Indicates whether replacing the specified old value with the specified
+     * new value is a no-op according to this policy.
+     *
+     * @param oldValue old value
+     * @param newValue new value
+     * @return {@code true} if the write doesn't change the value;
+     * {@code false} otherwise
+     */
+    public abstract boolean isUnchanged(Object oldValue, Object newValue);
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+/**
+ * Fenwick tree (binary indexed tree) of segment sizes. It allows to compute
+ * segment offsets and to locate the segment of a given position in
+ * {@code O(log n)}.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class FenwickTree {
+
+    private final int[] sizes;
+    private final int[] tree;
+    private final int numSegments;
+    private int total;
+
+    /**
+     * Creates a new tree for the specified segment sizes.
+     *
+     * @param sizes segment sizes
+     */
+    FenwickTree(int[] sizes) {
+        this.sizes = sizes.clone();
+        this.numSegments = sizes.length;
+        this.tree = new int[numSegments + 1];
+        this.total = 0;
+
+        // linear time construction
+        for (int i = 0; i < numSegments; i++) {
+            int node = i + 1;
+            tree[node] += sizes[i];
+            total += sizes[i];
+            int parent = node + (node & -node);
+            if (parent <= numSegments) {
+                tree[parent] += tree[node];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of segments.
+     *
+     * @return the number of segments
+     */
+    int numSegments() {
+        return numSegments;
+    }
+
+    /**
+     * Returns the sum of all segment sizes.
+     *
+     * @return the sum of all segment sizes
+     */
+    int total() {
+        return total;
+    }
+
+    /**
+     * Returns the size of the specified segment.
+     *
+     * @param segment segment index
+     * @return the size of the specified segment
+     */
+    int size(int segment) {
+        return sizes[segment];
+    }
+
+    /**
+     * Sets the size of the specified segment.
+     *
+     * @param segment segment index
+     * @param size new size
+     */
+    void setSize(int segment, int size) {
+        int delta = size - sizes[segment];
+
+        if (delta == 0) {
+            return;
+        }
+
+        sizes[segment] = size;
+        total += delta;
+
+        for (int node = segment + 1; node <= numSegments; node += node & -node) {
+            tree[node] += delta;
+        }
+    }
+
+    /**
+     * Returns the offset of the specified segment, i.e., the sum of the sizes
+     * of all preceding segments.
+     *
+     * @param segment segment index
+     * @return the offset of the specified segment
+     */
+    int offset(int segment) {
+        int sum = 0;
+        for (int node = segment; node > 0; node -= node & -node) {
+            sum += tree[node];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the index of the non-empty segment that contains the specified
+     * position.
+     *
+     * @param position position ({@code 0 <= position < total()})
+     * @return the index of the segment that contains the specified position
+     */
+    int segmentOf(int position) {
+        int node = 0;
+        int remaining = position;
+
+        for (int step = Integer.highestOneBit(Math.max(1, numSegments)); step > 0; step >>= 1) {
+            int next = node + step;
+            if (next <= numSegments && tree[next] <= remaining) {
+                node = next;
+                remaining -= tree[next];
+            }
+        }
+
+        return node;
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.function.Predicate;
+
+/**
+ * Balanced tree (treap) of values that are addressed by their index. Values
+ * are inserted at a given index and removed via their node. The index of a
+ * node is computed in {@code O(log n)}, i.e., nodes keep their identity while
+ * the indices of the following nodes shift.
+ *
+ * <p>
+ * Each node has a weight, e.g., the size of a segment. Like
+ * {@link FenwickTree} the tree computes the offset of a node and locates the
+ * node of a given position in {@code O(log n)}, but it also supports the
+ * insertion and removal of nodes in {@code O(log n)}.</p>
+ *
+ * @param <E> value type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class IndexedTree<E> {
+
+    private Node<E> root;
+    private int seed = 0x2545F491;
+
+    /**
+     * Node of an indexed tree.
+     *
+     * @param <E> value type
+     */
+    static final class Node<E> {
+
+        private final E value;
+        private final int priority;
+
+        private Node<E> left;
+        private Node<E> right;
+        private Node<E> parent;
+        private int size = 1;
+        private int weight;
+        private int sum;
+
+        private Node(E value, int priority, int weight) {
+            this.value = value;
+            this.priority = priority;
+            this.weight = weight;
+            this.sum = weight;
+        }
+
+        /**
+         * Returns the value of this node.
+         *
+         * @return the value of this node
+         */
+        E value() {
+            return value;
+        }
+
+        /**
+         * Returns the weight of this node.
+         *
+         * @return the weight of this node
+         */
+        int weight() {
+            return weight;
+        }
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return the number of nodes
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Indicates whether this tree is empty.
+     *
+     * @return {@code true} if this tree is empty; {@code false} otherwise
+     */
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns the sum of all weights.
+     *
+     * @return the sum of all weights
+     */
+    int total() {
+        return sum(root);
+    }
+
+    /**
+     * Removes all nodes.
+     */
+    void clear() {
+        root = null;
+    }
+
+    /**
+     * Returns the node at the specified index.
+     *
+     * @param index index ({@code 0 <= index < size()})
+     * @return the node at the specified index
+     */
+    Node<E> get(int index) {
+        Node<E> node = root;
+        while (true) {
+            int numLeft = size(node.left);
+            if (index < numLeft) {
+                node = node.left;
+            } else if (index > numLeft) {
+                index -= numLeft + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the specified node.
+     *
+     * @param node node that is contained in a tree
+     * @return the index of the specified node
+     */
+    static int indexOf(Node<?> node) {
+        int index = size(node.left);
+        for (Node<?> n = node; n.parent != null; n = n.parent) {
+            if (n == n.parent.right) {
+                index += size(n.parent.left) + 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the offset of the specified node, i.e., the sum of the weights
+     * of all preceding nodes.
+     *
+     * @param node node that is contained in a tree
+     * @return the offset of the specified node
+     */
+    static int offset(Node<?> node) {
+        int offset = sum(node.left);
+        for (Node<?> n = node; n.parent != null; n = n.parent) {
+            if (n == n.parent.right) {
+                offset += sum(n.parent.left) + n.parent.weight;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the node that contains the specified position, i.e., the node
+     * with {@code offset(node) <= position < offset(node) + node.weight()}.
+     *
+     * @param position position ({@code 0 <= position < total()})
+     * @return the node that contains the specified position
+     */
+    Node<E> nodeAt(int position) {
+        Node<E> node = root;
+        while (true) {
+            int leftSum = sum(node.left);
+            if (position < leftSum) {
+                node = node.left;
+            } else if (position < leftSum + node.weight) {
+                return node;
+            } else {
+                position -= leftSum + node.weight;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Sets the weight of the specified node.
+     *
+     * @param node node that is contained in this tree
+     * @param weight new weight
+     */
+    void setWeight(Node<E> node, int weight) {
+        int delta = weight - node.weight;
+        node.weight = weight;
+        for (Node<E> n = node; n != null; n = n.parent) {
+            n.sum += delta;
+        }
+    }
+
+    /**
+     * Returns the number of leading values that match the specified
+     * predicate. The predicate must not match any value after the first value
+     * that doesn't match.
+     *
+     * @param precedes predicate that matches the leading values
+     * @return the number of leading values that match the specified predicate
+     */
+    int count(Predicate<? super E> precedes) {
+        int count = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (precedes.test(node.value)) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Inserts the specified value at the specified index.
+     *
+     * @param index index ({@code 0 <= index <= size()})
+     * @param value value to insert
+     * @return the node of the inserted value
+     */
+    Node<E> insert(int index, E value) {
+        return insert(index, value, 0);
+    }
+
+    /**
+     * Inserts the specified value with the specified weight at the specified
+     * index.
+     *
+     * @param index index ({@code 0 <= index <= size()})
+     * @param value value to insert
+     * @param weight weight of the value
+     * @return the node of the inserted value
+     */
+    Node<E> insert(int index, E value, int weight) {
+        Node<E> node = new Node<>(value, nextPriority(), weight);
+
+        if (root == null) {
+            root = node;
+            return node;
+        }
+
+        Node<E> parent = root;
+        while (true) {
+            parent.size++;
+            parent.sum += weight;
+            int numLeft = size(parent.left);
+            if (index <= numLeft) {
+                if (parent.left == null) {
+                    parent.left = node;
+                    break;
+                }
+                parent = parent.left;
+            } else {
+                index -= numLeft + 1;
+                if (parent.right == null) {
+                    parent.right = node;
+                    break;
+                }
+                parent = parent.right;
+            }
+        }
+
+        node.parent = parent;
+
+        while (node.parent != null && node.priority > node.parent.priority) {
+            rotateUp(node);
+        }
+
+        return node;
+    }
+
+    /**
+     * Removes the specified node from this tree.
+     *
+     * @param node node to remove
+     */
+    void remove(Node<E> node) {
+        // rotate the node down until it has at most one child
+        while (node.left != null && node.right != null) {
+            rotateUp(node.left.priority > node.right.priority ? node.left : node.right);
+        }
+
+        Node<E> child = node.left != null ? node.left : node.right;
+        Node<E> parent = node.parent;
+
+        if (child != null) {
+            child.parent = parent;
+        }
+
+        if (parent == null) {
+            root = child;
+        } else if (parent.left == node) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        for (Node<E> n = parent; n != null; n = n.parent) {
+            n.size--;
+            n.sum -= node.weight;
+        }
+
+        node.left = null;
+        node.right = null;
+        node.parent = null;
+        node.size = 1;
+        node.sum = node.weight;
+    }
+
+    private void rotateUp(Node<E> node) {
+        Node<E> parent = node.parent;
+        Node<E> grandParent = parent.parent;
+
+        if (node == parent.left) {
+            parent.left = node.right;
+            if (node.right != null) {
+                node.right.parent = parent;
+            }
+            node.right = parent;
+        } else {
+            parent.right = node.left;
+            if (node.left != null) {
+                node.left.parent = parent;
+            }
+            node.left = parent;
+        }
+
+        parent.parent = node;
+        node.parent = grandParent;
+
+        if (grandParent == null) {
+            root = node;
+        } else if (grandParent.left == parent) {
+            grandParent.left = node;
+        } else {
+            grandParent.right = node;
+        }
+
+        parent.size = size(parent.left) + size(parent.right) + 1;
+        parent.sum = sum(parent.left) + sum(parent.right) + parent.weight;
+        node.size = size(node.left) + size(node.right) + 1;
+        node.sum = sum(node.left) + sum(node.right) + node.weight;
+    }
+
+    private int nextPriority() {
+        // xorshift, deterministic and good enough to balance the tree
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int sum(Node<?> node) {
+        return node == null ? 0 : node.sum;
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Difference of two lists. The difference consists of the indices of the
+ * elements to remove from the first list and the indices of the elements to
+ * insert from the second list. Removing and inserting these elements (in this
+ * order) transforms the first list into the second list.
+ *
+ * The difference is computed with Myers' algorithm after stripping the common
+ * prefix and suffix. For large ranges, elements that occur exactly once in
+ * both lists are used as anchors (patience diff) and only the gaps between
+ * the anchors are compared with Myers' algorithm. Ranges whose edit distance
+ * exceeds {@link #MAX_EDIT_DISTANCE} are replaced as a whole.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class ListDiff {
+
+    /**
+     * Ranges with more elements (both lists combined) are split at unique
+     * anchor elements before they are compared with Myers' algorithm.
+     */
+    private static final int ANCHOR_THRESHOLD = 64;
+
+    /**
+     * Maximum edit distance computed with Myers' algorithm. Bounds the
+     * memory required to trace the edit path.
+     */
+    private static final int MAX_EDIT_DISTANCE = 1024;
+
+    private final int[] removedIndices;
+    private final int[] addedIndices;
+
+    private ListDiff(int[] removedIndices, int[] addedIndices) {
+        this.removedIndices = removedIndices;
+        this.addedIndices = addedIndices;
+    }
+
+    /**
+     * Returns the sorted indices of the elements to remove from the first
+     * list.
+     *
+     * @return the indices of the elements to remove (refer to the first list)
+     */
+    int[] removedIndices() {
+        return removedIndices;
+    }
+
+    /**
+     * Returns the sorted indices of the elements to insert from the second
+     * list.
+     *
+     * @return the indices of the elements to insert (refer to the second list)
+     */
+    int[] addedIndices() {
+        return addedIndices;
+    }
+
+    /**
+     * Indicates whether the compared lists are equal.
+     *
+     * @return {@code true} if the compared lists are equal; {@code false}
+     * otherwise
+     */
+    boolean isEmpty() {
+        return removedIndices.length == 0 && addedIndices.length == 0;
+    }
+
+    /**
+     * Computes the difference of the specified lists.
+     *
+     * @param a first list
+     * @param b second list
+     * @return the difference of the specified lists
+     */
+    static ListDiff compute(List<?> a, List<?> b) {
+        return new Matcher(a.toArray(), b.toArray()).match();
+    }
+
+    /**
+     * Transforms the specified list into the specified elements by removing
+     * and inserting the elements that differ. The removals and insertions are
+     * performed with one bulk operation each.
+     *
+     * @param <T> element type
+     * @param list list to modify
+     * @param elements the new contents of the list
+     * @return {@code true} if the list changed as a result of the call;
+     * {@code false} otherwise
+     */
+    static <T> boolean apply(VList<T> list, List<? extends T> elements) {
+        return apply(list, 0, list.size(), elements);
+    }
+
+    /**
+     * Transforms the specified range of the specified list into the specified
+     * elements by removing and inserting the elements that differ. The
+     * removals and insertions are performed with one bulk operation each.
+     *
+     * @param <T> element type
+     * @param list list to modify
+     * @param fromIndex low endpoint (inclusive) of the range
+     * @param toIndex high endpoint (exclusive) of the range
+     * @param elements the new contents of the range
+     * @return {@code true} if the list changed as a result of the call;
+     * {@code false} otherwise
+     */
+    static <T> boolean apply(VList<T> list, int fromIndex, int toIndex,
+            List<? extends T> elements) {
+        ListUtil.checkRange(fromIndex, toIndex, list.size());
+
+        Object[] range;
+        if (fromIndex == 0 && toIndex == list.size()) {
+            range = list.toArray();
+        } else {
+            range = new Object[toIndex - fromIndex];
+            for (int i = 0; i < range.length; i++) {
+                range[i] = list.get(fromIndex + i);
+            }
+        }
+
+        ListDiff diff = new Matcher(range, elements.toArray()).match();
+
+        if (diff.isEmpty()) {
+            return false;
+        }
+
+        List<T> added = new ArrayList<>(diff.addedIndices.length);
+        for (int i : diff.addedIndices) {
+            added.add(elements.get(i));
+        }
+
+        if (diff.removedIndices.length > 0) {
+            list.removeAll(shift(diff.removedIndices, fromIndex));
+        }
+        if (!added.isEmpty()) {
+            list.addAll(shift(diff.addedIndices, fromIndex), added);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the specified indices shifted by the specified offset.
+     *
+     * @param indices indices
+     * @param offset offset
+     * @return the shifted indices (the specified array if the offset is 0)
+     */
+    static int[] shift(int[] indices, int offset) {
+        if (offset == 0) {
+            return indices;
+        }
+        int[] result = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            result[i] = indices[i] + offset;
+        }
+        return result;
+    }
+
+    /**
+     * Computes a matching of the elements of two arrays.
+     */
+    private static final class Matcher {
+
+        private final Object[] a;
+        private final Object[] b;
+        private final boolean[] matchedA;
+        private final boolean[] matchedB;
+
+        private final Deque<int[]> ranges = new ArrayDeque<>();
+
+        Matcher(Object[] a, Object[] b) {
+            this.a = a;
+            this.b = b;
+            this.matchedA = new boolean[a.length];
+            this.matchedB = new boolean[b.length];
+        }
+
+        ListDiff match() {
+
+            // ranges are processed iteratively, anchoring may split a range
+            // into many gaps
+            ranges.push(new int[]{0, a.length, 0, b.length});
+
+            while (!ranges.isEmpty()) {
+                int[] range = ranges.pop();
+                matchRange(range[0], range[1], range[2], range[3]);
+            }
+
+            return new ListDiff(unmatched(matchedA), unmatched(matchedB));
+        }
+
+        private static int[] unmatched(boolean[] matched) {
+            int[] indices = new int[matched.length];
+            int n = 0;
+            for (int i = 0; i < matched.length; i++) {
+                if (!matched[i]) {
+                    indices[n++] = i;
+                }
+            }
+            return Arrays.copyOf(indices, n);
+        }
+
+        private void matchRange(int aLo, int aHi, int bLo, int bHi) {
+
+            // common prefix
+            while (aLo < aHi && bLo < bHi && Objects.equals(a[aLo], b[bLo])) {
+                matchedA[aLo++] = true;
+                matchedB[bLo++] = true;
+            }
+
+            // common suffix
+            while (aLo < aHi && bLo < bHi && Objects.equals(a[aHi - 1], b[bHi - 1])) {
+                matchedA[--aHi] = true;
+                matchedB[--bHi] = true;
+            }
+
+            if (aLo == aHi || bLo == bHi) {
+                return;
+            }
+
+            if ((aHi - aLo) + (bHi - bLo) > ANCHOR_THRESHOLD
+                    && splitAtAnchors(aLo, aHi, bLo, bHi)) {
+                return;
+            }
+
+            myers(aLo, aHi, bLo, bHi);
+        }
+
+        /**
+         * Matches the longest increasing sequence of elements that occur
+         * exactly once in both ranges and schedules the gaps between them.
+         *
+         * @return {@code true} if anchors were found; {@code false} otherwise
+         */
+        private boolean splitAtAnchors(int aLo, int aHi, int bLo, int bHi) {
+
+            // occurrences: {count in a, count in b, index in b}
+            Map<Object, int[]> occurrences = new HashMap<>();
+            for (int i = aLo; i < aHi; i++) {
+                occurrences.computeIfAbsent(a[i], k -> new int[3])[0]++;
+            }
+            for (int j = bLo; j < bHi; j++) {
+                int[] o = occurrences.get(b[j]);
+                if (o != null) {
+                    o[1]++;
+                    o[2] = j;
+                }
+            }
+
+            // anchor candidates in the order of a
+            int[] anchorsA = new int[aHi - aLo];
+            int[] anchorsB = new int[aHi - aLo];
+            int numCandidates = 0;
+            for (int i = aLo; i < aHi; i++) {
+                int[] o = occurrences.get(a[i]);
+                if (o[0] == 1 && o[1] == 1) {
+                    anchorsA[numCandidates] = i;
+                    anchorsB[numCandidates] = o[2];
+                    numCandidates++;
+                }
+            }
+
+            if (numCandidates == 0) {
+                return false;
+            }
+
+            // longest increasing subsequence of the b indices (patience sorting)
+            int[] tails = new int[numCandidates];
+            int[] predecessors = new int[numCandidates];
+            int length = 0;
+            for (int c = 0; c < numCandidates; c++) {
+                int lo = 0;
+                int hi = length;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (anchorsB[tails[mid]] < anchorsB[c]) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                predecessors[c] = lo > 0 ? tails[lo - 1] : -1;
+                tails[lo] = c;
+                if (lo == length) {
+                    length++;
+                }
+            }
+
+            // match the anchors and schedule the gaps between them
+            int nextA = aHi;
+            int nextB = bHi;
+            for (int c = tails[length - 1]; c >= 0; c = predecessors[c]) {
+                int i = anchorsA[c];
+                int j = anchorsB[c];
+                matchedA[i] = true;
+                matchedB[j] = true;
+                ranges.push(new int[]{i + 1, nextA, j + 1, nextB});
+                nextA = i;
+                nextB = j;
+            }
+            ranges.push(new int[]{aLo, nextA, bLo, nextB});
+
+            return true;
+        }
+
+        /**
+         * Matches the specified ranges with Myers' greedy algorithm. The
+         * ranges must not have a common prefix or suffix.
+         */
+        private void myers(int aLo, int aHi, int bLo, int bHi) {
+
+            int n = aHi - aLo;
+            int m = bHi - bLo;
+            int maxD = Math.min(n + m, MAX_EDIT_DISTANCE);
+
+            // v[offset + k] is the furthest x on diagonal k
+            int offset = maxD + 1;
+            int[] v = new int[2 * maxD + 3];
+
+            // trace[d] contains v[-d-1..d+1] before round d
+            List<int[]> trace = new ArrayList<>();
+
+            for (int d = 0; d <= maxD; d++) {
+                trace.add(Arrays.copyOfRange(v, offset - d - 1, offset + d + 2));
+
+                for (int k = -d; k <= d; k += 2) {
+                    int x;
+                    if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                        x = v[offset + k + 1];
+                    } else {
+                        x = v[offset + k - 1] + 1;
+                    }
+                    int y = x - k;
+                    while (x < n && y < m && Objects.equals(a[aLo + x], b[bLo + y])) {
+                        x++;
+                        y++;
+                    }
+                    v[offset + k] = x;
+
+                    if (x >= n && y >= m) {
+                        backtrack(trace, n, m, aLo, bLo);
+                        return;
+                    }
+                }
+            }
+
+            // edit distance too large, the range is replaced as a whole
+        }
+
+        private void backtrack(List<int[]> trace, int n, int m, int aLo, int bLo) {
+            int x = n;
+            int y = m;
+
+            for (int d = trace.size() - 1; d >= 0; d--) {
+                int[] v = trace.get(d);
+                // v[d + 1 + k] is the furthest x on diagonal k
+                int k = x - y;
+                int prevK;
+                if (k == -d || (k != d && v[d + 1 + k - 1] < v[d + 1 + k + 1])) {
+                    prevK = k + 1;
+                } else {
+                    prevK = k - 1;
+                }
+                int prevX = v[d + 1 + prevK];
+                int prevY = prevX - prevK;
+
+                while (x > prevX && y > prevY) {
+                    x--;
+                    y--;
+                    matchedA[aLo + x] = true;
+                    matchedB[bLo + y] = true;
+                }
+
+                x = prevX;
+                y = prevY;
+            }
+        }
+    }
+}
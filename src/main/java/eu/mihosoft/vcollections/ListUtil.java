@@ -0,0 +1,650 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Index based bulk operations on lists. The operations perform a single pass
+ * over the specified list.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class ListUtil {
+
+    private ListUtil() {
+        throw new AssertionError("Please don't instantiate me!");
+    }
+
+    /**
+     * Returns the permutation that sorts the specified indices in ascending
+     * order or {@code null} if the indices are already sorted.
+     *
+     * @param indices indices
+     * @return sorting permutation or {@code null} if the indices are already
+     * sorted
+     */
+    static int[] sortingPermutation(int[] indices) {
+        boolean sorted = true;
+        for (int i = 1; i < indices.length && sorted; i++) {
+            sorted = indices[i - 1] <= indices[i];
+        }
+
+        if (sorted) {
+            return null;
+        }
+
+        long[] keyed = new long[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            keyed[i] = ((long) indices[i] << 32) | i;
+        }
+        Arrays.sort(keyed);
+
+        int[] permutation = new int[indices.length];
+        for (int i = 0; i < keyed.length; i++) {
+            permutation[i] = (int) keyed[i];
+        }
+
+        return permutation;
+    }
+
+    /**
+     * Removes the elements at the specified indices by compacting the list in
+     * one pass. If the list can't be shrunk, it is left unchanged.
+     *
+     * @param <E> element type
+     * @param list list to modify
+     * @param sortedIndices indices of the elements to remove (ascending, no
+     * duplicates)
+     */
+    @SuppressWarnings("unchecked")
+    static <E> void removeAll(List<E> list, int[] sortedIndices) {
+        if (sortedIndices.length == 0) {
+            return;
+        }
+
+        if (sortedIndices.length == 1) {
+            list.remove(sortedIndices[0]);
+            return;
+        }
+
+        if (!(list instanceof RandomAccess)) {
+            ListIterator<E> it = list.listIterator(sortedIndices[0]);
+            int next = 0;
+            for (int index = sortedIndices[0]; next < sortedIndices.length; index++) {
+                it.next();
+                if (index == sortedIndices[next]) {
+                    it.remove();
+                    next++;
+                }
+            }
+            return;
+        }
+
+        int size = list.size();
+        int first = sortedIndices[0];
+        int next = 0;
+
+        // compact into a scratch array, the list is only modified after it
+        // has been shrunk successfully (fixed-size lists throw before)
+        Object[] kept = new Object[size - first - sortedIndices.length];
+        int numKept = 0;
+
+        for (int read = first; read < size; read++) {
+            if (next < sortedIndices.length && sortedIndices[next] == read) {
+                next++;
+            } else {
+                kept[numKept++] = list.get(read);
+            }
+        }
+
+        list.subList(first + numKept, size).clear();
+
+        for (int i = 0; i < numKept; i++) {
+            list.set(first + i, (E) kept[i]);
+        }
+    }
+
+    /**
+     * Inserts the specified elements such that element {@code i} is located at
+     * {@code sortedIndices[i]} after the operation. The list is modified in
+     * one backwards pass.
+     *
+     * @param <E> element type
+     * @param list list to modify
+     * @param sortedIndices target indices of the elements to insert (ascending,
+     * no duplicates)
+     * @param elements elements to insert
+     */
+    static <E> void insertAll(List<E> list, int[] sortedIndices, List<? extends E> elements) {
+        int numInserted = sortedIndices.length;
+
+        if (numInserted == 0) {
+            return;
+        }
+
+        int oldSize = list.size();
+
+        if (sortedIndices[0] == oldSize) {
+            // indices are contiguous at the end of the list
+            list.addAll(elements);
+            return;
+        }
+
+        if (numInserted == 1) {
+            list.add(sortedIndices[0], elements.get(0));
+            return;
+        }
+
+        if (!(list instanceof RandomAccess)) {
+            ListIterator<E> it = list.listIterator(sortedIndices[0]);
+            int next = 0;
+            for (int index = sortedIndices[0]; next < numInserted; index++) {
+                if (index == sortedIndices[next]) {
+                    it.add(elements.get(next++));
+                } else {
+                    it.next();
+                }
+            }
+            return;
+        }
+
+        // grow once, then move the elements backwards
+        list.addAll(Collections.nCopies(numInserted, null));
+
+        int read = oldSize - 1;
+        int next = numInserted - 1;
+
+        for (int write = oldSize + numInserted - 1; next >= 0; write--) {
+            if (sortedIndices[next] == write) {
+                list.set(write, elements.get(next--));
+            } else {
+                list.set(write, list.get(read--));
+            }
+        }
+    }
+
+    /**
+     * Returns the order of the specified elements according to the specified
+     * comparator, i.e., {@code elements[order[k]]} is the k-th element after
+     * sorting. The sort is stable and only moves indices, the elements are not
+     * modified.
+     *
+     * @param <E> element type
+     * @param elements elements to sort
+     * @param comparator comparator
+     * @return the sorted order of the element indices
+     */
+    static <E> int[] sortedOrder(E[] elements, Comparator<? super E> comparator) {
+        int[] order = new int[elements.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        mergeSort(order, new int[order.length], 0, order.length, elements, comparator);
+
+        return order;
+    }
+
+    private static <E> void mergeSort(int[] order, int[] tmp, int from, int to,
+            E[] elements, Comparator<? super E> comparator) {
+
+        if (to - from < 16) {
+            // insertion sort for small ranges
+            for (int i = from + 1; i < to; i++) {
+                int index = order[i];
+                int j = i;
+                while (j > from && comparator.compare(elements[order[j - 1]], elements[index]) > 0) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = index;
+            }
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+
+        mergeSort(order, tmp, from, mid, elements, comparator);
+        mergeSort(order, tmp, mid, to, elements, comparator);
+
+        merge(order, tmp, from, mid, to, elements, comparator);
+    }
+
+    /**
+     * Merges the sorted index ranges {@code [from, mid)} and
+     * {@code [mid, to)}.
+     */
+    private static <E> void merge(int[] order, int[] tmp, int from, int mid, int to,
+            E[] elements, Comparator<? super E> comparator) {
+
+        // ranges are already in order
+        if (comparator.compare(elements[order[mid - 1]], elements[order[mid]]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(order, from, tmp, from, to - from);
+
+        int left = from;
+        int right = mid;
+
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid
+                    && comparator.compare(elements[tmp[left]], elements[tmp[right]]) <= 0)) {
+                order[i] = tmp[left++];
+            } else {
+                order[i] = tmp[right++];
+            }
+        }
+    }
+
+    /**
+     * Checks that the specified range is a valid range of a list of the
+     * specified size.
+     *
+     * @param fromIndex low endpoint (inclusive) of the range
+     * @param toIndex high endpoint (exclusive) of the range
+     * @param size size of the list
+     */
+    static void checkRange(int fromIndex, int toIndex, int size) {
+        if (fromIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size);
+        }
+        if (fromIndex > toIndex) {
+            throw new IllegalArgumentException("fromIndex(" + fromIndex
+                    + ") > toIndex(" + toIndex + ")");
+        }
+    }
+
+    /**
+     * Checks that the specified range can be moved to the specified index.
+     *
+     * @param from index of the first element to move
+     * @param count number of elements to move
+     * @param to index of the first moved element after the move
+     * @param size size of the list
+     */
+    static void checkMove(int from, int count, int to, int size) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative: " + count);
+        }
+        if (from < 0 || from + count > size) {
+            throw new IndexOutOfBoundsException("From: " + from + ", Count: " + count + ", Size: " + size);
+        }
+        if (to < 0 || to + count > size) {
+            throw new IndexOutOfBoundsException("To: " + to + ", Count: " + count + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Moves the elements from {@code from} to {@code from+count-1} to the
+     * indices {@code to} to {@code to+count-1} by rotating the affected range
+     * in place. Only the elements between {@code min(from, to)} and
+     * {@code max(from, to)+count-1} are touched.
+     *
+     * @param <E> element type
+     * @param list list to modify
+     * @param from index of the first element to move
+     * @param count number of elements to move
+     * @param to index of the first moved element after the move
+     */
+    static <E> void moveRange(List<E> list, int from, int count, int to) {
+        List<E> range = list.subList(Math.min(from, to), Math.max(from, to) + count);
+        Collections.rotate(range, to < from ? count : -count);
+    }
+
+    /**
+     * Minimum number of elements per task of parallel operations.
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * Action on an index range {@code [from, to)}.
+     */
+    @FunctionalInterface
+    interface RangeAction {
+
+        void apply(int from, int to);
+    }
+
+    /**
+     * Performs the specified action on disjoint index ranges that cover
+     * {@code [0, size)}. Ranges of at least {@code grain} indices are
+     * processed in parallel by the specified pool.
+     *
+     * @param pool pool that processes the ranges
+     * @param size number of indices
+     * @param grain minimum number of indices per range
+     * @param action action to perform
+     */
+    static void parallelFor(ForkJoinPool pool, int size, int grain, RangeAction action) {
+        if (size <= grain) {
+            action.apply(0, size);
+        } else {
+            pool.invoke(new RangeTask(action, 0, size, grain));
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+
+        private final RangeAction action;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RangeTask(RangeAction action, int from, int to, int grain) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                action.apply(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(action, from, mid, grain),
+                    new RangeTask(action, mid, to, grain));
+        }
+    }
+
+    /**
+     * Returns the indices of the flags that are set in ascending order. Flags
+     * are counted and collected in parallel.
+     *
+     * @param pool pool that processes the flags
+     * @param flags flags
+     * @return indices of the flags that are set
+     */
+    static int[] parallelIndices(ForkJoinPool pool, boolean[] flags) {
+        int numChunks = (flags.length + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD;
+        int[] offsets = new int[numChunks + 1];
+
+        parallelFor(pool, numChunks, 1, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                int end = Math.min(flags.length, (c + 1) * PARALLEL_THRESHOLD);
+                int count = 0;
+                for (int i = c * PARALLEL_THRESHOLD; i < end; i++) {
+                    if (flags[i]) {
+                        count++;
+                    }
+                }
+                offsets[c + 1] = count;
+            }
+        });
+
+        for (int c = 0; c < numChunks; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+
+        int[] indices = new int[offsets[numChunks]];
+
+        parallelFor(pool, numChunks, 1, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                int end = Math.min(flags.length, (c + 1) * PARALLEL_THRESHOLD);
+                int next = offsets[c];
+                for (int i = c * PARALLEL_THRESHOLD; i < end; i++) {
+                    if (flags[i]) {
+                        indices[next++] = i;
+                    }
+                }
+            }
+        });
+
+        return indices;
+    }
+
+    /**
+     * Returns the elements at the specified indices, collected in parallel.
+     *
+     * @param pool pool that collects the elements
+     * @param elements elements
+     * @param indices indices of the elements to collect
+     * @return the elements at the specified indices
+     */
+    static Object[] parallelGather(ForkJoinPool pool, Object[] elements, int[] indices) {
+        Object[] result = new Object[indices.length];
+        parallelFor(pool, indices.length, PARALLEL_THRESHOLD, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = elements[indices[i]];
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Parallel variant of {@link #sortedOrder(Object[], Comparator)}. Ranges
+     * are sorted in parallel and merged afterwards, the sort is stable.
+     *
+     * @param <E> element type
+     * @param elements elements to sort
+     * @param comparator comparator
+     * @param pool pool that sorts the ranges
+     * @return the sorted order of the element indices
+     */
+    static <E> int[] parallelSortedOrder(E[] elements, Comparator<? super E> comparator,
+            ForkJoinPool pool) {
+        int[] order = new int[elements.length];
+        parallelFor(pool, order.length, PARALLEL_THRESHOLD, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                order[i] = i;
+            }
+        });
+
+        int[] tmp = new int[order.length];
+
+        if (order.length <= PARALLEL_THRESHOLD) {
+            mergeSort(order, tmp, 0, order.length, elements, comparator);
+        } else {
+            pool.invoke(new SortTask<>(order, tmp, 0, order.length, elements, comparator));
+        }
+
+        return order;
+    }
+
+    private static final class SortTask<E> extends RecursiveAction {
+
+        private final int[] order;
+        private final int[] tmp;
+        private final int from;
+        private final int to;
+        private final E[] elements;
+        private final Comparator<? super E> comparator;
+
+        SortTask(int[] order, int[] tmp, int from, int to, E[] elements,
+                Comparator<? super E> comparator) {
+            this.order = order;
+            this.tmp = tmp;
+            this.from = from;
+            this.to = to;
+            this.elements = elements;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                mergeSort(order, tmp, from, to, elements, comparator);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask<>(order, tmp, from, mid, elements, comparator),
+                    new SortTask<>(order, tmp, mid, to, elements, comparator));
+            merge(order, tmp, from, mid, to, elements, comparator);
+        }
+    }
+
+    /**
+     * Returns a spliterator that accesses the elements of the specified list
+     * by index. It splits in halves and reports exact sizes, i.e., the list
+     * should support fast random access. The size is read on first use.
+     *
+     * @param <E> element type
+     * @param list list
+     * @return a spliterator over the elements of the specified list
+     */
+    static <E> Spliterator<E> indexSpliterator(List<E> list) {
+        return new IndexSpliterator<>(list, 0, -1);
+    }
+
+    private static final class IndexSpliterator<E> implements Spliterator<E> {
+
+        private final List<E> list;
+        private int index;
+        // -1 until first use
+        private int fence;
+
+        IndexSpliterator(List<E> list, int origin, int fence) {
+            this.list = list;
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        private int getFence() {
+            if (fence < 0) {
+                fence = list.size();
+            }
+            return fence;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int hi = getFence();
+            int lo = index;
+            int mid = (lo + hi) >>> 1;
+            return lo >= mid ? null : new IndexSpliterator<>(list, lo, index = mid);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if (index < getFence()) {
+                action.accept(list.get(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            for (int i = index; i < hi; i++) {
+                action.accept(list.get(i));
+            }
+            index = hi;
+        }
+
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+
+    /**
+     * Returns a spliterator that maps each element of the specified
+     * spliterator on demand. Splitting is delegated to the specified
+     * spliterator.
+     *
+     * @param <V> element type of the specified spliterator
+     * @param <E> element type of the returned spliterator
+     * @param spliterator spliterator to map
+     * @param mapping element mapping
+     * @return a mapped spliterator
+     */
+    static <V, E> Spliterator<E> mappedSpliterator(Spliterator<V> spliterator,
+            Function<? super V, ? extends E> mapping) {
+        return new MappedSpliterator<>(spliterator, mapping);
+    }
+
+    private static final class MappedSpliterator<V, E> implements Spliterator<E> {
+
+        private final Spliterator<V> source;
+        private final Function<? super V, ? extends E> mapping;
+
+        MappedSpliterator(Spliterator<V> source, Function<? super V, ? extends E> mapping) {
+            this.source = source;
+            this.mapping = mapping;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            Spliterator<V> prefix = source.trySplit();
+            return prefix == null ? null : new MappedSpliterator<>(prefix, mapping);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            return source.tryAdvance(e -> action.accept(mapping.apply(e)));
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            source.forEachRemaining(e -> action.accept(mapping.apply(e)));
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            // mapped elements may be neither distinct, sorted nor non-null
+            return source.characteristics() & ~(DISTINCT | SORTED | NONNULL);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Funnels mutations of many producer threads into batched modifications of a
+ * single observable collection. Producers submit mutations to a lock-free
+ * queue and receive a future for the result of each mutation. A drain task
+ * that is executed by the specified executor applies the queued mutations in
+ * submission order to a working copy of the collection and writes the copy
+ * back with a single modification. At most one drain task runs at a time,
+ * i.e., the collection is only modified by one thread at a time and doesn't
+ * need to be thread-safe.
+ *
+ * Each drain of a {@link VList} fires one event. As long as the mutations of
+ * a drain only replace and append elements, they are recorded on top of the
+ * list and written back directly, i.e., a drain of {@code k} mutations costs
+ * {@code O(k log k)} for lists created by {@link VList#newInstance(List)}.
+ * The first mutation that inserts or removes elements before the end copies
+ * the list. Such drains are written back via
+ * {@link VList#setContents(java.util.List)}, which costs {@code O(n)} for the
+ * copy plus the difference of the old and new contents. They only break even
+ * with individual modifications of the list if the listeners are expensive or
+ * a drain contains enough removals and insertions to outweigh one copy,
+ * i.e., roughly {@code k * (n - i) >= n} for mutations at index {@code i}.
+ *
+ * Each drain of a {@link VMap} fires at most one event for maps created by
+ * {@link VMap#newInstance(Map)}, other maps fire at most one event for the
+ * removed keys and one event for the added and modified keys. Maps are always
+ * copied, i.e., a drain costs {@code O(n)}. Futures are completed after the
+ * listeners have been notified.
+ *
+ * Mutations must only modify the working copy they are applied to. A
+ * mutation that throws an exception completes its future exceptionally,
+ * changes it made to the working copy before throwing are kept. If the
+ * executor rejects a drain task, the futures of the queued mutations are
+ * completed exceptionally with the rejection.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ * @param <C> type of the working copy the mutations are applied to
+ */
+public final class MutationQueue<C> {
+
+    /**
+     * Maximum number of mutations applied by one drain. Remaining mutations
+     * are applied by the next drain.
+     */
+    static final int MAX_BATCH_SIZE = 4096;
+
+    private final ConcurrentLinkedQueue<Mutation<C, ?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final Executor executor;
+    private final Batch<C> batch;
+
+    private MutationQueue(Executor executor, Batch<C> batch) {
+        this.executor = Objects.requireNonNull(executor);
+        this.batch = batch;
+    }
+
+    /**
+     * Creates a new mutation queue for the specified list. Mutations are
+     * applied to a working copy that records replaced and appended elements
+     * and only copies the list if elements are inserted or removed before the
+     * end.
+     *
+     * @param <T> element type
+     * @param list list to modify
+     * @param executor executor that runs the drain tasks
+     * @return a new mutation queue for the specified list
+     */
+    public static <T> MutationQueue<List<T>> newInstance(VList<T> list, Executor executor) {
+        return new MutationQueue<>(executor, mutations -> {
+            Overlay<T> overlay = new Overlay<>(list);
+            mutations.accept(overlay);
+            overlay.writeBack();
+        });
+    }
+
+    /**
+     * Creates a new mutation queue for the specified map. Mutations are
+     * applied to a copy of the map. Each drain fires at most one event for
+     * maps created by {@link VMap#newInstance(Map)} and at most two events
+     * for other maps. Values that are the same instance as before are not
+     * written.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param map map to modify
+     * @param executor executor that runs the drain tasks
+     * @return a new mutation queue for the specified map
+     */
+    public static <K, V> MutationQueue<Map<K, V>> newInstance(VMap<K, V> map, Executor executor) {
+        return new MutationQueue<>(executor, mutations -> {
+            Map<K, V> copy = new LinkedHashMap<>(map);
+            mutations.accept(copy);
+            Runnable notification = VMapImpl.writeContents(map, copy);
+            if (notification != null) {
+                notification.run();
+            }
+        });
+    }
+
+    /**
+     * Submits the specified mutation. May be called from any thread.
+     *
+     * @param <R> result type
+     * @param mutation mutation to apply to the working copy
+     * @return a future that is completed with the result of the mutation
+     * after the drain that applied it has been written back
+     */
+    public <R> CompletableFuture<R> submit(Function<? super C, ? extends R> mutation) {
+        Mutation<C, R> m = new Mutation<>(Objects.requireNonNull(mutation));
+        queue.offer(m);
+        schedule();
+        return m.future;
+    }
+
+    /**
+     * Submits the specified mutation that doesn't compute a result. May be
+     * called from any thread.
+     *
+     * @param mutation mutation to apply to the working copy
+     * @return a future that is completed after the drain that applied the
+     * mutation has been written back
+     */
+    public CompletableFuture<Void> execute(Consumer<? super C> mutation) {
+        Objects.requireNonNull(mutation);
+        return submit(c -> {
+            mutation.accept(c);
+            return null;
+        });
+    }
+
+    private void schedule() {
+        while (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+                return;
+            } catch (RuntimeException ex) {
+                // the drain task has been rejected, the queued mutations are
+                // never applied
+                Mutation<C, ?> m;
+                while ((m = queue.poll()) != null) {
+                    m.future.completeExceptionally(ex);
+                }
+                scheduled.set(false);
+                // retry for mutations that have been submitted meanwhile
+            }
+        }
+    }
+
+    private void drain() {
+        List<Mutation<C, ?>> mutations = new ArrayList<>();
+        try {
+            Mutation<C, ?> m;
+            while (mutations.size() < MAX_BATCH_SIZE && (m = queue.poll()) != null) {
+                mutations.add(m);
+            }
+
+            if (!mutations.isEmpty()) {
+                batch.apply(c -> mutations.forEach(mutation -> mutation.apply(c)));
+                mutations.forEach(Mutation::complete);
+            }
+        } catch (RuntimeException | Error ex) {
+            // the batch couldn't be written back
+            mutations.forEach(m -> m.future.completeExceptionally(ex));
+            throw ex;
+        } finally {
+            scheduled.set(false);
+            // mutations that have been submitted during the drain
+            schedule();
+        }
+    }
+
+    /**
+     * Applies the mutations of a drain to a working copy and writes the copy
+     * back.
+     *
+     * @param <C> type of the working copy
+     */
+    @FunctionalInterface
+    private interface Batch<C> {
+
+        void apply(Consumer<C> mutations);
+    }
+
+    /**
+     * Queued mutation and its future.
+     */
+    private static final class Mutation<C, R> {
+
+        private final Function<? super C, ? extends R> function;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        private R result;
+        private Throwable failure;
+
+        Mutation(Function<? super C, ? extends R> function) {
+            this.function = function;
+        }
+
+        void apply(C c) {
+            try {
+                result = function.apply(c);
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+        }
+
+        void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    /**
+     * Working copy of a list that records replaced and appended elements on
+     * top of the list. Other modifications copy the list.
+     *
+     * @param <T> element type
+     */
+    private static final class Overlay<T> extends AbstractList<T> implements RandomAccess {
+
+        private final VList<T> target;
+        private final int targetSize;
+
+        private final Map<Integer, T> updates = new HashMap<>();
+        private final List<T> appended = new ArrayList<>();
+
+        private List<T> copy;
+
+        Overlay(VList<T> target) {
+            this.target = target;
+            this.targetSize = target.size();
+        }
+
+        private List<T> materialize() {
+            if (copy == null) {
+                copy = new ArrayList<>(this);
+                modCount++;
+            }
+            return copy;
+        }
+
+        void writeBack() {
+            if (copy == null && target instanceof VListImpl) {
+                int[] indices = updates.keySet().stream().mapToInt(i -> i).sorted().toArray();
+                List<T> values = new ArrayList<>(indices.length);
+                for (int i : indices) {
+                    values.add(updates.get(i));
+                }
+                Runnable notification = ((VListImpl<T>) target).applyUpdates(
+                        indices, values, appended);
+                if (notification != null) {
+                    notification.run();
+                }
+            } else {
+                target.setContents(materialize());
+            }
+        }
+
+        @Override
+        public T get(int index) {
+            if (copy != null) {
+                return copy.get(index);
+            }
+            if (index >= targetSize) {
+                return appended.get(index - targetSize);
+            }
+            if (index >= 0 && updates.containsKey(index)) {
+                return updates.get(index);
+            }
+            return target.get(index);
+        }
+
+        @Override
+        public int size() {
+            return copy != null ? copy.size() : targetSize + appended.size();
+        }
+
+        @Override
+        public T set(int index, T element) {
+            if (copy != null) {
+                return copy.set(index, element);
+            }
+            T previous = get(index);
+            if (index < targetSize) {
+                updates.put(index, element);
+            } else {
+                appended.set(index - targetSize, element);
+            }
+            return previous;
+        }
+
+        @Override
+        public void add(int index, T element) {
+            modCount++;
+            if (copy == null && index == size()) {
+                appended.add(element);
+            } else {
+                materialize().add(index, element);
+            }
+        }
+
+        @Override
+        public T remove(int index) {
+            modCount++;
+            return materialize().remove(index);
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            modCount++;
+            materialize().subList(fromIndex, toIndex).clear();
+        }
+    }
+}
@@ -0,0 +1,816 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable map stored in a hash array mapped trie (HAMT). Each node
+ * consumes five bits of the key hash and stores its entries and child nodes
+ * in an array that is indexed by a 32 bit bitmap. Keys with equal hashes
+ * share a collision node. Instances are created by
+ * {@link TransientHashMap#snapshot()} and share their nodes with the map they
+ * have been taken from. Since all state is reachable from final fields,
+ * instances are safe to read from any thread.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    static final Object NOT_FOUND = new Object();
+
+    private final Node root;
+    private final int size;
+    private final boolean hasNull;
+    private final V nullValue;
+
+    private Set<Entry<K, V>> entrySet;
+
+    PersistentHashMap(Node root, int size, boolean hasNull, V nullValue) {
+        this.root = root;
+        this.size = size;
+        this.hasNull = hasNull;
+        this.nullValue = nullValue;
+    }
+
+    static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    static Object find(Node root, boolean hasNull, Object nullValue, Object key) {
+        if (key == null) {
+            return hasNull ? nullValue : NOT_FOUND;
+        }
+        return root == null ? NOT_FOUND : root.find(0, hash(key), key);
+    }
+
+    /**
+     * Returns a new mutable map that initially contains the entries of this
+     * map and shares its nodes with this map. Nodes are copied when they are
+     * modified for the first time.
+     *
+     * @return a new mutable map that contains the entries of this map
+     */
+    TransientHashMap<K, V> asTransient() {
+        return new TransientHashMap<>(root, size, hasNull, nullValue);
+    }
+
+    /**
+     * Indicates whether the specified map has been derived from this map
+     * without changes, i.e., whether both maps share the same trie.
+     *
+     * @param other map to compare
+     * @return {@code true} if both maps share the same trie; {@code false}
+     * otherwise
+     */
+    boolean isSameVersion(PersistentHashMap<K, V> other) {
+        return root == other.root && hasNull == other.hasNull && nullValue == other.nullValue;
+    }
+
+    /**
+     * Computes the differences between two versions of a map. Subtrees that
+     * are shared by both versions are skipped, i.e., the costs depend on the
+     * number of modified nodes rather than on the size of the maps. Values
+     * are compared by identity. The previous values of removed and modified
+     * keys are put into {@code removed}, the new values of added and modified
+     * keys are put into {@code added}.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param before previous version
+     * @param after current version
+     * @param removed map that receives the removed entries
+     * @param added map that receives the added entries
+     */
+    static <K, V> void diff(PersistentHashMap<K, V> before, PersistentHashMap<K, V> after,
+            Map<K, V> removed, Map<K, V> added) {
+        if (before.hasNull && (!after.hasNull || before.nullValue != after.nullValue)) {
+            removed.put(null, before.nullValue);
+        }
+        if (after.hasNull && (!before.hasNull || before.nullValue != after.nullValue)) {
+            added.put(null, after.nullValue);
+        }
+        diffNodes(before.root, after.root, removed, added);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void diffNodes(Node a, Node b, Map removed, Map added) {
+        if (a == b) {
+            return;
+        }
+
+        if (!(a instanceof BitmapNode) || !(b instanceof BitmapNode)) {
+            // collision nodes or a missing node
+            diffSlots(null, a, null, b, removed, added);
+            return;
+        }
+
+        BitmapNode nodeA = (BitmapNode) a;
+        BitmapNode nodeB = (BitmapNode) b;
+        int bits = nodeA.bitmap | nodeB.bitmap;
+
+        while (bits != 0) {
+            int bit = bits & -bits;
+            bits ^= bit;
+
+            Object keyA = null;
+            Object valueA = null;
+            Object keyB = null;
+            Object valueB = null;
+
+            if ((nodeA.bitmap & bit) != 0) {
+                int i = 2 * nodeA.index(bit);
+                keyA = nodeA.array[i];
+                valueA = nodeA.array[i + 1];
+            }
+            if ((nodeB.bitmap & bit) != 0) {
+                int i = 2 * nodeB.index(bit);
+                keyB = nodeB.array[i];
+                valueB = nodeB.array[i + 1];
+            }
+
+            if (keyA == null && keyB == null) {
+                diffNodes((Node) valueA, (Node) valueB, removed, added);
+            } else if (keyA != null && keyB != null && keyA.equals(keyB)) {
+                if (valueA != valueB) {
+                    removed.put(keyA, valueA);
+                    added.put(keyB, valueB);
+                }
+            } else {
+                diffSlots(keyA, valueA, keyB, valueB, removed, added);
+            }
+        }
+    }
+
+    /**
+     * Compares the entries of two slots. A slot is either a key-value pair, a
+     * node ({@code key == null}) or empty ({@code key == null} and
+     * {@code value == null}).
+     */
+    @SuppressWarnings("unchecked")
+    private static void diffSlots(Object keyA, Object valueA, Object keyB, Object valueB,
+            Map removed, Map added) {
+        Map<Object, Object> entriesA = new HashMap<>();
+        if (keyA != null) {
+            entriesA.put(keyA, valueA);
+        } else if (valueA != null) {
+            new EntryIterator<>((Node) valueA, false, null).forEachRemaining(
+                    e -> entriesA.put(e.getKey(), e.getValue()));
+        }
+
+        Iterator<Entry<Object, Object>> entriesB = keyB != null
+                ? Collections.singletonMap(keyB, valueB).entrySet().iterator()
+                : new EntryIterator<>((Node) valueB, false, null);
+
+        while (entriesB.hasNext()) {
+            Entry<Object, Object> e = entriesB.next();
+            if (entriesA.containsKey(e.getKey())) {
+                Object previous = entriesA.remove(e.getKey());
+                if (previous != e.getValue()) {
+                    removed.put(e.getKey(), previous);
+                    added.put(e.getKey(), e.getValue());
+                }
+            } else {
+                added.put(e.getKey(), e.getValue());
+            }
+        }
+
+        removed.putAll(entriesA);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(root, hasNull, nullValue, key) != NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object value = find(root, hasNull, nullValue, key);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        // benign race, the set is stateless
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root, hasNull, nullValue);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Result of a modification of the trie.
+     */
+    static final class Change {
+
+        boolean added;
+        boolean removed;
+        Object oldValue;
+    }
+
+    /**
+     * Node of the trie. A node may only be modified in place by the map that
+     * owns its edit token. Modifications return the node that replaces this
+     * node ({@code null} if the node became empty).
+     */
+    abstract static class Node {
+
+        final Object edit;
+
+        Node(Object edit) {
+            this.edit = edit;
+        }
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node put(Object edit, int shift, int hash, Object key, Object value, Change c);
+
+        abstract Node remove(Object edit, int shift, int hash, Object key, Change c);
+
+        /**
+         * Returns the entry array of this node. Pairs with a {@code null} key
+         * store a child node as value.
+         */
+        abstract Object[] array();
+    }
+
+    /**
+     * Node that stores a key-value pair or a child node for each bit that is
+     * set in the bitmap.
+     */
+    static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        private int bitmap;
+        private Object[] array;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            super(edit);
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int i = 2 * index(bit);
+            Object keyOrNull = array[i];
+            if (keyOrNull == null) {
+                return ((Node) array[i + 1]).find(shift + 5, hash, key);
+            }
+            return key.equals(keyOrNull) ? array[i + 1] : NOT_FOUND;
+        }
+
+        private BitmapNode editAndSet(Object edit, int i, Object a) {
+            BitmapNode node = this.edit == edit && edit != null
+                    ? this : new BitmapNode(edit, bitmap, array.clone());
+            node.array[i] = a;
+            return node;
+        }
+
+        @Override
+        Node put(Object edit, int shift, int hash, Object key, Object value, Change c) {
+            int bit = bit(hash, shift);
+            int i = 2 * index(bit);
+
+            if ((bitmap & bit) == 0) {
+                c.added = true;
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                if (this.edit == edit && edit != null) {
+                    this.bitmap |= bit;
+                    this.array = newArray;
+                    return this;
+                }
+                return new BitmapNode(edit, bitmap | bit, newArray);
+            }
+
+            Object keyOrNull = array[i];
+            Object valueOrNode = array[i + 1];
+
+            if (keyOrNull == null) {
+                Node child = (Node) valueOrNode;
+                Node newChild = child.put(edit, shift + 5, hash, key, value, c);
+                return newChild == child ? this : editAndSet(edit, i + 1, newChild);
+            }
+
+            if (key.equals(keyOrNull)) {
+                c.oldValue = valueOrNode;
+                return valueOrNode == value ? this : editAndSet(edit, i + 1, value);
+            }
+
+            // two keys share the bit at this level, move them to a child node
+            c.added = true;
+            Node child = createNode(edit, shift + 5, keyOrNull, valueOrNode, hash, key, value);
+            BitmapNode node = editAndSet(edit, i, null);
+            node.array[i + 1] = child;
+            return node;
+        }
+
+        private static Node createNode(Object edit, int shift, Object key1, Object value1,
+                int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(edit, hash1, new Object[]{key1, value1, key2, value2});
+            }
+            Change c = new Change();
+            return EMPTY.put(edit, shift, hash1, key1, value1, c)
+                    .put(edit, shift, hash2, key2, value2, c);
+        }
+
+        @Override
+        Node remove(Object edit, int shift, int hash, Object key, Change c) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int i = 2 * index(bit);
+            Object keyOrNull = array[i];
+            Object valueOrNode = array[i + 1];
+
+            if (keyOrNull == null) {
+                Node child = (Node) valueOrNode;
+                Node newChild = child.remove(edit, shift + 5, hash, key, c);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild != null) {
+                    return editAndSet(edit, i + 1, newChild);
+                }
+            } else if (key.equals(keyOrNull)) {
+                c.removed = true;
+                c.oldValue = valueOrNode;
+            } else {
+                return this;
+            }
+
+            // remove the pair
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            if (this.edit == edit && edit != null) {
+                this.bitmap ^= bit;
+                this.array = newArray;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap ^ bit, newArray);
+        }
+    }
+
+    /**
+     * Node that stores the key-value pairs of keys with equal hashes.
+     */
+    static final class CollisionNode extends Node {
+
+        private final int hash;
+        private Object[] array;
+
+        CollisionNode(Object edit, int hash, Object[] array) {
+            super(edit);
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+            int i = indexOf(key);
+            return i < 0 ? NOT_FOUND : array[i + 1];
+        }
+
+        private CollisionNode withArray(Object edit, Object[] newArray) {
+            if (this.edit == edit && edit != null) {
+                this.array = newArray;
+                return this;
+            }
+            return new CollisionNode(edit, hash, newArray);
+        }
+
+        @Override
+        Node put(Object edit, int shift, int hash, Object key, Object value, Change c) {
+            if (hash != this.hash) {
+                // nest this node in a bitmap node of the current level
+                return new BitmapNode(edit, BitmapNode.bit(this.hash, shift), new Object[]{null, this})
+                        .put(edit, shift, hash, key, value, c);
+            }
+
+            int i = indexOf(key);
+
+            if (i >= 0) {
+                c.oldValue = array[i + 1];
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] newArray = this.edit == edit && edit != null ? array : array.clone();
+                newArray[i + 1] = value;
+                return withArray(edit, newArray);
+            }
+
+            c.added = true;
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return withArray(edit, newArray);
+        }
+
+        @Override
+        Node remove(Object edit, int shift, int hash, Object key, Change c) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+
+            c.removed = true;
+            c.oldValue = array[i + 1];
+
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return withArray(edit, newArray);
+        }
+    }
+
+    /**
+     * Iterates over the entries of a trie with an explicit stack of entry
+     * arrays. Entry arrays are replaced rather than modified if pairs are
+     * added or removed, i.e., the iterator keeps iterating over the arrays it
+     * has already visited.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        // eight levels of bitmap nodes, one level of collision nodes
+        private final Object[][] arrays = new Object[9][];
+        private final int[] positions = new int[9];
+        private int depth = -1;
+
+        private boolean nullPending;
+        private final V nullValue;
+
+        private Entry<K, V> next;
+
+        EntryIterator(Node root, boolean hasNull, V nullValue) {
+            this.nullPending = hasNull;
+            this.nullValue = nullValue;
+            if (root != null) {
+                push(root);
+            }
+            advance();
+        }
+
+        private void push(Node node) {
+            depth++;
+            arrays[depth] = node.array();
+            positions[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            if (nullPending) {
+                nullPending = false;
+                next = new SimpleImmutableEntry<>(null, nullValue);
+                return;
+            }
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int i = positions[depth];
+                if (i >= array.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                positions[depth] = i + 2;
+                if (array[i] == null) {
+                    push((Node) array[i + 1]);
+                } else {
+                    next = new SimpleImmutableEntry<>((K) array[i], (V) array[i + 1]);
+                    return;
+                }
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> result = next;
+            advance();
+            return result;
+        }
+    }
+}
+
+/**
+ * Mutable map stored in the trie of a {@link PersistentHashMap}. Nodes that
+ * have been created by this map since the last snapshot are modified in place.
+ * {@link #snapshot()} takes an immutable snapshot in constant time,
+ * afterwards the first modification of a node copies it, i.e., subsequent
+ * modifications only copy the nodes they touch.
+ *
+ * Lookups and modifications cost {@code O(log32 n)}. Like
+ * {@link java.util.HashMap} this map permits {@code null} keys and values and
+ * is not thread-safe.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class TransientHashMap<K, V> extends AbstractMap<K, V> {
+
+    private Object edit = new Object();
+
+    private PersistentHashMap.Node root;
+    private int size;
+    private boolean hasNull;
+    private V nullValue;
+
+    private PersistentHashMap<K, V> snapshot;
+    private Set<Entry<K, V>> entrySet;
+
+    /**
+     * Creates a new empty map.
+     */
+    TransientHashMap() {
+    }
+
+    /**
+     * Creates a new map that shares the specified trie. Nodes are copied when
+     * they are modified for the first time.
+     */
+    TransientHashMap(PersistentHashMap.Node root, int size, boolean hasNull, V nullValue) {
+        this.root = root;
+        this.size = size;
+        this.hasNull = hasNull;
+        this.nullValue = nullValue;
+    }
+
+    /**
+     * Returns an immutable snapshot of this map. The snapshot shares its
+     * nodes with this map and is safe to read from any thread.
+     *
+     * @return an immutable snapshot of this map
+     */
+    PersistentHashMap<K, V> snapshot() {
+        if (snapshot == null) {
+            snapshot = new PersistentHashMap<>(root, size, hasNull, nullValue);
+            // nodes are shared with the snapshot from now on
+            edit = new Object();
+        }
+        return snapshot;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return PersistentHashMap.find(root, hasNull, nullValue, key) != PersistentHashMap.NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object value = PersistentHashMap.find(root, hasNull, nullValue, key);
+        return value == PersistentHashMap.NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        snapshot = null;
+
+        if (key == null) {
+            V previous = nullValue;
+            if (!hasNull) {
+                hasNull = true;
+                size++;
+            }
+            nullValue = value;
+            return previous;
+        }
+
+        PersistentHashMap.Change c = new PersistentHashMap.Change();
+        PersistentHashMap.Node node = root == null ? PersistentHashMap.BitmapNode.EMPTY : root;
+        root = node.put(edit, 0, PersistentHashMap.hash(key), key, value, c);
+        if (c.added) {
+            size++;
+        }
+        return (V) c.oldValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (key == null) {
+            if (!hasNull) {
+                return null;
+            }
+            snapshot = null;
+            V previous = nullValue;
+            hasNull = false;
+            nullValue = null;
+            size--;
+            return previous;
+        }
+
+        if (root == null) {
+            return null;
+        }
+
+        PersistentHashMap.Change c = new PersistentHashMap.Change();
+        PersistentHashMap.Node newRoot = root.remove(edit, 0, PersistentHashMap.hash(key), key, c);
+        if (c.removed) {
+            snapshot = null;
+            root = newRoot;
+            size--;
+        }
+        return (V) c.oldValue;
+    }
+
+    @Override
+    public void clear() {
+        snapshot = null;
+        root = null;
+        size = 0;
+        hasNull = false;
+        nullValue = null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    Iterator<Entry<K, V>> it = new PersistentHashMap.EntryIterator<>(
+                            root, hasNull, nullValue);
+                    return new Iterator<Entry<K, V>>() {
+
+                        private Entry<K, V> last;
+
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Entry<K, V> next() {
+                            Entry<K, V> e = it.next();
+                            last = new SimpleEntry<K, V>(e) {
+                                @Override
+                                public V setValue(V value) {
+                                    super.setValue(value);
+                                    return put(getKey(), value);
+                                }
+                            };
+                            return last;
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) {
+                                throw new IllegalStateException();
+                            }
+                            TransientHashMap.this.remove(last.getKey());
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    if (!(o instanceof Entry)) {
+                        return false;
+                    }
+                    Entry<?, ?> e = (Entry<?, ?>) o;
+                    Object value = PersistentHashMap.find(root, hasNull, nullValue, e.getKey());
+                    return value != PersistentHashMap.NOT_FOUND && Objects.equals(value, e.getValue());
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public void clear() {
+                    TransientHashMap.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+}
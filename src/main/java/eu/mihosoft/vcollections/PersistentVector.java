@@ -0,0 +1,466 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list stored in a 32-way trie, i.e., a persistent vector. The last
+ * (up to) 32 elements are kept in a separate tail array. Instances are created
+ * by {@link TransientVector#snapshot()} and share their nodes with the list
+ * they have been taken from. Since all state is reachable from final fields,
+ * instances are safe to read from any thread.
+ *
+ * @param <T> element type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class PersistentVector<T> extends AbstractList<T> implements RandomAccess {
+
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+
+    private final int size;
+    private final int shift;
+    private final Node root;
+    private final Object[] tail;
+
+    PersistentVector(int size, int shift, Node root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    static Object[] leaf(Node root, int shift, int index) {
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.array[(index >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index >= tailOffset(size)) {
+            return (T) tail[index & MASK];
+        }
+        return (T) leaf(root, shift, index)[index & MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        int tailOffset = tailOffset(size);
+        for (int i = 0; i < tailOffset; i += WIDTH) {
+            System.arraycopy(leaf(root, shift, i), 0, result, i, WIDTH);
+        }
+        System.arraycopy(tail, 0, result, tailOffset, size - tailOffset);
+        return result;
+    }
+
+    /**
+     * Node of the trie. Inner nodes store nodes, leaves store elements. A node
+     * may only be modified in place by the list that owns its edit token.
+     */
+    static final class Node {
+
+        final Object edit;
+        final Object[] array;
+
+        Node(Object edit) {
+            this(edit, new Object[WIDTH]);
+        }
+
+        Node(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+    }
+}
+
+/**
+ * Mutable list stored in the trie of a {@link PersistentVector}. Nodes that
+ * have been created by this list since the last snapshot are modified in
+ * place. {@link #snapshot()} takes an immutable snapshot in constant time,
+ * afterwards the first modification of a node copies it, i.e., subsequent
+ * modifications only copy the nodes they touch.
+ *
+ * Random access costs {@code O(log32 n)}, appending and removing the last
+ * element are done in amortized constant time. Like {@link java.util.ArrayList}
+ * this list is not thread-safe.
+ *
+ * @param <T> element type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class TransientVector<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int BITS = PersistentVector.BITS;
+    private static final int WIDTH = PersistentVector.WIDTH;
+    private static final int MASK = PersistentVector.MASK;
+
+    private Object edit = new Object();
+
+    private int size;
+    private int shift = BITS;
+    private PersistentVector.Node root = new PersistentVector.Node(edit);
+    private Object[] tail = new Object[WIDTH];
+
+    private PersistentVector<T> snapshot;
+
+    /**
+     * Indicates whether a snapshot taken by {@link #share()} shares the nodes
+     * of this list. The next write hands the nodes over to the snapshot.
+     */
+    private volatile boolean shared;
+
+    /**
+     * Returns an immutable snapshot of this list. The snapshot shares its
+     * nodes with this list and is safe to read from any thread.
+     *
+     * @return an immutable snapshot of this list
+     */
+    PersistentVector<T> snapshot() {
+        if (snapshot == null) {
+            snapshot = share();
+            // nodes are shared with the snapshot from now on
+            edit = new Object();
+            shared = false;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns an immutable snapshot of this list without modifying this list.
+     * Unlike {@link #snapshot()}, this method may be called by several
+     * readers concurrently as long as no write happens concurrently. The
+     * next write hands the nodes over to the snapshot, i.e., it copies the
+     * nodes it touches.
+     *
+     * @return an immutable snapshot of this list
+     */
+    PersistentVector<T> share() {
+        int tailSize = size - PersistentVector.tailOffset(size);
+        PersistentVector<T> result = new PersistentVector<>(size, shift, root,
+                Arrays.copyOf(tail, tailSize));
+        shared = true;
+        return result;
+    }
+
+    /**
+     * Prepares a write: invalidates the cached snapshot and hands the nodes
+     * over to snapshots taken by {@link #share()}.
+     */
+    private void beforeWrite() {
+        snapshot = null;
+        if (shared) {
+            edit = new Object();
+            shared = false;
+        }
+    }
+
+    private PersistentVector.Node editable(PersistentVector.Node node) {
+        return node.edit == edit ? node : new PersistentVector.Node(edit, node.array.clone());
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        checkIndex(index);
+        if (index >= PersistentVector.tailOffset(size)) {
+            return (T) tail[index & MASK];
+        }
+        return (T) PersistentVector.leaf(root, shift, index)[index & MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T set(int index, T element) {
+        checkIndex(index);
+        beforeWrite();
+
+        Object[] array = editableArray(index);
+
+        T previous = (T) array[index & MASK];
+        array[index & MASK] = element;
+        return previous;
+    }
+
+    /**
+     * Returns the array that contains the specified index for reading.
+     *
+     * @param index index
+     * @return the array that contains the specified index
+     */
+    private Object[] array(int index) {
+        if (index >= PersistentVector.tailOffset(size)) {
+            return tail;
+        }
+        return PersistentVector.leaf(root, shift, index);
+    }
+
+    /**
+     * Returns the array that contains the specified index for writing. Nodes
+     * on the path that are not owned by this list are copied.
+     *
+     * @param index index
+     * @return the array that contains the specified index
+     */
+    private Object[] editableArray(int index) {
+        if (index >= PersistentVector.tailOffset(size)) {
+            return tail;
+        }
+        root = editable(root);
+        PersistentVector.Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            int i = (index >>> level) & MASK;
+            PersistentVector.Node child = editable((PersistentVector.Node) node.array[i]);
+            node.array[i] = child;
+            node = child;
+        }
+        return node.array;
+    }
+
+    /**
+     * Moves the specified number of elements from {@code src} to
+     * {@code dst}. Elements are copied with one {@code arraycopy} per leaf
+     * segment, i.e., moving {@code count} elements costs
+     * {@code O(count + count / 32 * log32 n)}.
+     *
+     * @param src index of the first element to move
+     * @param dst index the first element is moved to
+     * @param count number of elements to move
+     */
+    private void move(int src, int dst, int count) {
+        if (dst < src) {
+            while (count > 0) {
+                int chunk = Math.min(count, WIDTH - Math.max(src & MASK, dst & MASK));
+                System.arraycopy(array(src), src & MASK, editableArray(dst), dst & MASK, chunk);
+                src += chunk;
+                dst += chunk;
+                count -= chunk;
+            }
+        } else {
+            // copy backwards, the ranges may overlap
+            while (count > 0) {
+                int chunk = Math.min(count,
+                        Math.min((src + count - 1) & MASK, (dst + count - 1) & MASK) + 1);
+                count -= chunk;
+                System.arraycopy(array(src + count), (src + count) & MASK,
+                        editableArray(dst + count), (dst + count) & MASK, chunk);
+            }
+        }
+    }
+
+    @Override
+    public boolean add(T element) {
+        beforeWrite();
+        modCount++;
+
+        if (size - PersistentVector.tailOffset(size) < WIDTH) {
+            tail[size & MASK] = element;
+            size++;
+            return true;
+        }
+
+        // the tail is full, push it into the trie
+        PersistentVector.Node tailNode = new PersistentVector.Node(edit, tail);
+        tail = new Object[WIDTH];
+        tail[0] = element;
+
+        if ((size >>> BITS) > (1 << shift)) {
+            // the trie is full, add a level
+            PersistentVector.Node newRoot = new PersistentVector.Node(edit);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(shift, tailNode);
+            root = newRoot;
+            shift += BITS;
+        } else {
+            root = pushTail(shift, root, tailNode);
+        }
+
+        size++;
+        return true;
+    }
+
+    private PersistentVector.Node pushTail(int level, PersistentVector.Node parent,
+            PersistentVector.Node tailNode) {
+        PersistentVector.Node result = editable(parent);
+        int i = ((size - 1) >>> level) & MASK;
+        if (level == BITS) {
+            result.array[i] = tailNode;
+        } else {
+            PersistentVector.Node child = (PersistentVector.Node) parent.array[i];
+            result.array[i] = child != null
+                    ? pushTail(level - BITS, child, tailNode)
+                    : newPath(level - BITS, tailNode);
+        }
+        return result;
+    }
+
+    private PersistentVector.Node newPath(int level, PersistentVector.Node node) {
+        if (level == 0) {
+            return node;
+        }
+        PersistentVector.Node result = new PersistentVector.Node(edit);
+        result.array[0] = newPath(level - BITS, node);
+        return result;
+    }
+
+    /**
+     * Removes the last element.
+     */
+    private void removeLast() {
+        beforeWrite();
+        modCount++;
+
+        int tailOffset = PersistentVector.tailOffset(size);
+
+        if (size - tailOffset > 1 || size == 1) {
+            tail[(size - 1) & MASK] = null;
+            size--;
+            return;
+        }
+
+        // the tail becomes empty, the last leaf of the trie is the new tail
+        Object[] newTail = PersistentVector.leaf(root, shift, size - 2).clone();
+        PersistentVector.Node newRoot = popTail(shift, root);
+
+        if (newRoot == null) {
+            newRoot = new PersistentVector.Node(edit);
+        }
+        if (shift > BITS && newRoot.array[1] == null) {
+            newRoot = editable((PersistentVector.Node) newRoot.array[0]);
+            shift -= BITS;
+        }
+
+        root = newRoot;
+        tail = newTail;
+        size--;
+    }
+
+    private PersistentVector.Node popTail(int level, PersistentVector.Node node) {
+        int i = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            PersistentVector.Node child = popTail(level - BITS,
+                    (PersistentVector.Node) node.array[i]);
+            if (child == null && i == 0) {
+                return null;
+            }
+            PersistentVector.Node result = editable(node);
+            result.array[i] = child;
+            return result;
+        } else if (i == 0) {
+            return null;
+        } else {
+            PersistentVector.Node result = editable(node);
+            result.array[i] = null;
+            return result;
+        }
+    }
+
+    @Override
+    public void add(int index, T element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index == size) {
+            add(element);
+            return;
+        }
+        add(null);
+        move(index, index + 1, size - 1 - index);
+        editableArray(index)[index & MASK] = element;
+    }
+
+    @Override
+    public T remove(int index) {
+        checkIndex(index);
+        beforeWrite();
+        T previous = get(index);
+        move(index + 1, index, size - 1 - index);
+        removeLast();
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        int count = toIndex - fromIndex;
+        if (count <= 0) {
+            return;
+        }
+        beforeWrite();
+        move(toIndex, fromIndex, size - toIndex);
+        for (int i = 0; i < count; i++) {
+            removeLast();
+        }
+    }
+
+    @Override
+    public void clear() {
+        beforeWrite();
+        modCount++;
+        size = 0;
+        shift = BITS;
+        root = new PersistentVector.Node(edit);
+        tail = new Object[WIDTH];
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import vjavax.observer.Subscription;
+
+/**
+ * Dispatches change events to listeners on a fixed number of worker threads.
+ * The elements of each event are split into shards by the hash code of their
+ * key. Each shard is delivered to the listener as a separate event that only
+ * contains the changes of the shard, shards of one event are processed in
+ * parallel. Each shard has a single worker thread that processes its events
+ * in the order in which they have been dispatched, i.e., the changes of a key
+ * are processed in order across events.
+ *
+ * Shard events are plain add/remove/set events. They don't preserve
+ * permutation or move information, the indices of list events are the indices
+ * of the original event. Elements of list events are keyed by a key function,
+ * entries of map events by their key.
+ *
+ * {@link #dispatch(VListChangeEvent, Function, VListChangeListener)} returns a
+ * future that is completed after all shards of the event have been
+ * processed, {@link #barrier()} returns a future that is completed after all
+ * events dispatched so far have been processed.
+ *
+ * An exception thrown by the listener while processing a shard doesn't affect
+ * the other shards of the event, they are still delivered. The future
+ * returned by {@code dispatch(..)} completes exceptionally after all shards
+ * have been processed. Listeners registered via {@code subscribe(..)} pass
+ * the exception of each failed shard to an exception handler on the worker
+ * thread of the shard. Unless specified otherwise, the handler passes it to
+ * the uncaught exception handler of the worker thread.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class ShardedDispatcher implements AutoCloseable {
+
+    private final ExecutorService[] shards;
+
+    private ShardedDispatcher(int numShards) {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("Number of shards must be positive: " + numShards);
+        }
+        this.shards = new ExecutorService[numShards];
+        for (int i = 0; i < numShards; i++) {
+            String name = "vcollections-shard-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Creates a new dispatcher with the specified number of shards. Each
+     * shard is processed by its own worker thread.
+     *
+     * @param numShards number of shards
+     * @return a new dispatcher
+     */
+    public static ShardedDispatcher newInstance(int numShards) {
+        return new ShardedDispatcher(numShards);
+    }
+
+    /**
+     * Returns the number of shards of this dispatcher.
+     *
+     * @return the number of shards
+     */
+    public int getNumShards() {
+        return shards.length;
+    }
+
+    private int shardOf(Object key) {
+        int h = Objects.hashCode(key);
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % shards.length;
+    }
+
+    private static void reportUncaught(Throwable ex) {
+        Thread t = Thread.currentThread();
+        t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+    }
+
+    /**
+     * Registers the specified listener with the specified list. Events of the
+     * list are dispatched by this dispatcher. Exceptions thrown by the
+     * listener are passed to the uncaught exception handler of the worker
+     * thread.
+     *
+     * @param <T> element type
+     * @param list list to observe
+     * @param keyFunction function that computes the key of an element
+     * @param listener listener that processes the shards
+     * @return subscription that removes the listener from the list
+     */
+    public <T> Subscription subscribe(VList<T> list, Function<? super T, ?> keyFunction,
+            VListChangeListener<T> listener) {
+        return subscribe(list, keyFunction, listener, ShardedDispatcher::reportUncaught);
+    }
+
+    /**
+     * Registers the specified listener with the specified list. Events of the
+     * list are dispatched by this dispatcher.
+     *
+     * @param <T> element type
+     * @param list list to observe
+     * @param keyFunction function that computes the key of an element
+     * @param listener listener that processes the shards
+     * @param exceptionHandler handler that is called with each exception
+     * thrown by the listener, on the worker thread of the failed shard
+     * @return subscription that removes the listener from the list
+     */
+    public <T> Subscription subscribe(VList<T> list, Function<? super T, ?> keyFunction,
+            VListChangeListener<T> listener, Consumer<? super Throwable> exceptionHandler) {
+        Objects.requireNonNull(keyFunction);
+        Objects.requireNonNull(listener);
+        Objects.requireNonNull(exceptionHandler);
+        return list.addChangeListener((VListChangeListener<T>) evt
+                -> dispatch((VListChangeEvent<T>) evt, keyFunction, listener, exceptionHandler));
+    }
+
+    /**
+     * Registers the specified listener with the specified map. Events of the
+     * map are dispatched by this dispatcher. Exceptions thrown by the
+     * listener are passed to the uncaught exception handler of the worker
+     * thread.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param map map to observe
+     * @param listener listener that processes the shards
+     * @return subscription that removes the listener from the map
+     */
+    public <K, V> Subscription subscribe(VMap<K, V> map, VMapChangeListener<K, V> listener) {
+        return subscribe(map, listener, ShardedDispatcher::reportUncaught);
+    }
+
+    /**
+     * Registers the specified listener with the specified map. Events of the
+     * map are dispatched by this dispatcher.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param map map to observe
+     * @param listener listener that processes the shards
+     * @param exceptionHandler handler that is called with each exception
+     * thrown by the listener, on the worker thread of the failed shard
+     * @return subscription that removes the listener from the map
+     */
+    public <K, V> Subscription subscribe(VMap<K, V> map, VMapChangeListener<K, V> listener,
+            Consumer<? super Throwable> exceptionHandler) {
+        Objects.requireNonNull(listener);
+        Objects.requireNonNull(exceptionHandler);
+        return map.addChangeListener(evt -> dispatch(evt, listener, exceptionHandler));
+    }
+
+    /**
+     * Splits the specified event into shards and submits them to the worker
+     * threads.
+     *
+     * @param <T> element type
+     * @param evt event to dispatch
+     * @param keyFunction function that computes the key of an element
+     * @param listener listener that processes the shards
+     * @return a future that is completed after all shards have been
+     * processed, exceptionally if the listener failed for a shard
+     */
+    public <T> CompletableFuture<Void> dispatch(VListChangeEvent<T> evt,
+            Function<? super T, ?> keyFunction, VListChangeListener<T> listener) {
+        return dispatch(evt, keyFunction, listener, null);
+    }
+
+    private <T> CompletableFuture<Void> dispatch(VListChangeEvent<T> evt,
+            Function<? super T, ?> keyFunction, VListChangeListener<T> listener,
+            Consumer<? super Throwable> exceptionHandler) {
+
+        ListShard<T>[] parts = splitList(evt.added(), keyFunction, false, null);
+        parts = splitList(evt.removed(), keyFunction, true, parts);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int s = 0; s < shards.length; s++) {
+            ListShard<T> part = parts[s];
+            if (part == null) {
+                continue;
+            }
+            VListChangeEvent<T> shardEvt = new VListChangeEventImpl<>(evt.source(),
+                    part.added.change(), part.removed.change(), evt.eventInfo());
+            futures.add(submit(s, () -> listener.onChange(shardEvt), exceptionHandler));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+    }
+
+    private CompletableFuture<Void> submit(int s, Runnable task,
+            Consumer<? super Throwable> exceptionHandler) {
+        if (exceptionHandler == null) {
+            return CompletableFuture.runAsync(task, shards[s]);
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException | Error ex) {
+                exceptionHandler.accept(ex);
+                throw ex;
+            }
+        }, shards[s]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ListShard<T>[] splitList(VListChange<T> change, Function<? super T, ?> keyFunction,
+            boolean removed, ListShard<T>[] parts) {
+        if (parts == null) {
+            parts = new ListShard[shards.length];
+        }
+        if (!change.hasChanges()) {
+            return parts;
+        }
+        int[] indices = change.indices();
+        List<T> elements = change.elements();
+        for (int i = 0; i < indices.length; i++) {
+            T e = elements.get(i);
+            int s = shardOf(keyFunction.apply(e));
+            if (parts[s] == null) {
+                parts[s] = new ListShard<>();
+            }
+            (removed ? parts[s].removed : parts[s].added).add(indices[i], e);
+        }
+        return parts;
+    }
+
+    /**
+     * Splits the specified event into shards and submits them to the worker
+     * threads.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param evt event to dispatch
+     * @param listener listener that processes the shards
+     * @return a future that is completed after all shards have been
+     * processed, exceptionally if the listener failed for a shard
+     */
+    public <K, V> CompletableFuture<Void> dispatch(VMapChangeEvent<K, V> evt,
+            VMapChangeListener<K, V> listener) {
+        return dispatch(evt, listener, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> CompletableFuture<Void> dispatch(VMapChangeEvent<K, V> evt,
+            VMapChangeListener<K, V> listener, Consumer<? super Throwable> exceptionHandler) {
+
+        Map<K, V>[] added = new Map[shards.length];
+        Map<K, V>[] removed = new Map[shards.length];
+
+        splitMap(evt.added(), added);
+        splitMap(evt.removed(), removed);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int s = 0; s < shards.length; s++) {
+            if (added[s] == null && removed[s] == null) {
+                continue;
+            }
+            VMapChangeEvent<K, V> shardEvt = new VMapChangeEventImpl<>(evt.source(),
+                    added[s] == null ? VMapChange.empty() : VMapChange.newInstance(added[s]),
+                    removed[s] == null ? VMapChange.empty() : VMapChange.newInstance(removed[s]),
+                    evt.eventInfo());
+            futures.add(submit(s, () -> listener.onChange(shardEvt), exceptionHandler));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+    }
+
+    private <K, V> void splitMap(VMapChange<K, V> change, Map<K, V>[] parts) {
+        if (!change.hasChanges()) {
+            return;
+        }
+        for (Map.Entry<K, V> e : change.entries().entrySet()) {
+            int s = shardOf(e.getKey());
+            if (parts[s] == null) {
+                parts[s] = new LinkedHashMap<>();
+            }
+            parts[s].put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Returns a future that is completed after all events that have been
+     * dispatched before this call have been processed.
+     *
+     * @return a future that is completed after all dispatched events have
+     * been processed
+     */
+    public CompletableFuture<Void> barrier() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[shards.length];
+        for (int s = 0; s < shards.length; s++) {
+            futures[s] = CompletableFuture.runAsync(() -> {
+            }, shards[s]);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Stops the worker threads after all dispatched events have been
+     * processed.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    /**
+     * Changes of one shard of a list event.
+     */
+    private static final class ListShard<T> {
+
+        private final ChangeBuilder<T> added = new ChangeBuilder<>();
+        private final ChangeBuilder<T> removed = new ChangeBuilder<>();
+    }
+
+    /**
+     * Indices and elements of a list change that are collected for a shard.
+     */
+    private static final class ChangeBuilder<T> {
+
+        private int[] indices = new int[4];
+        private final List<T> elements = new ArrayList<>();
+
+        void add(int index, T element) {
+            if (elements.size() == indices.length) {
+                indices = Arrays.copyOf(indices, indices.length * 2);
+            }
+            indices[elements.size()] = index;
+            elements.add(element);
+        }
+
+        VListChange<T> change() {
+            if (elements.isEmpty()) {
+                return VListChange.empty();
+            }
+            return VListChange.newInstance(Arrays.copyOf(indices, elements.size()), elements);
+        }
+    }
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import vjavax.observer.Subscription;
+import vjavax.observer.collection.CollectionChangeEvent;
+import vjavax.observer.collection.CollectionChangeListener;
+
+/**
+ * Observable list for a single writer thread and any number of reader
+ * threads. The elements are stored in a persistent vector. After each write
+ * the writer publishes an immutable version of the list with a volatile
+ * write. Read operations only access the published version, i.e., readers
+ * never block, retry or observe partial writes. Read operations that are
+ * composed of several calls, e.g., {@code size()} followed by
+ * {@code get(int)}, may observe different versions. Readers that need a
+ * consistent state use {@link #version()} or {@link #snapshot()}.
+ *
+ * Each version has a number that is incremented by every write that changes
+ * the list. Events carry the number of the version that contains the change
+ * as sequence number (see {@link VListChangeEvent#sequenceNumber()}), events
+ * are fired after the version has been published.
+ *
+ * All modifications, the registration of listeners and the usage of
+ * sublists must be confined to the writer thread. Listeners are notified by
+ * the writer thread.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ * @param <T> element type
+ */
+public final class SingleWriterVList<T> extends AbstractList<T> implements VList<T> {
+
+    private final TransientVector<T> elements;
+    private final VListImpl<T> list;
+
+    private volatile Version<T> published;
+
+    private final List<CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>>> listeners
+            = new CopyOnWriteArrayList<>();
+
+    // writer state
+    private List<VListChangeEvent<T>> pendingEvents = new ArrayList<>();
+    private final VListChangeListener<T> captureListener = this::capture;
+    private boolean capturing;
+
+    private VList<T> unmodifiableInstance;
+
+    private SingleWriterVList(Collection<? extends T> elements) {
+        this.elements = new TransientVector<>();
+        this.elements.addAll(elements);
+        this.list = VListImpl.newInstance(this.elements);
+        this.published = new Version<>(this.elements.snapshot(), 0);
+    }
+
+    /**
+     * Creates a new empty single-writer list.
+     *
+     * @param <T> element type
+     * @return a new empty single-writer list
+     */
+    public static <T> SingleWriterVList<T> newInstance() {
+        return new SingleWriterVList<>(Collections.<T>emptyList());
+    }
+
+    /**
+     * Creates a new single-writer list that contains the specified elements.
+     * The elements are copied.
+     *
+     * @param <T> element type
+     * @param elements initial elements
+     * @return a new single-writer list that contains the specified elements
+     */
+    public static <T> SingleWriterVList<T> newInstance(Collection<? extends T> elements) {
+        return new SingleWriterVList<>(elements);
+    }
+
+    /**
+     * Returns the published version of this list. May be called from any
+     * thread.
+     *
+     * @return the published version of this list
+     */
+    public Version<T> version() {
+        return published;
+    }
+
+    /**
+     * Returns the elements of the published version of this list. May be
+     * called from any thread.
+     *
+     * @return an immutable snapshot of this list
+     */
+    @Override
+    public List<T> snapshot() {
+        return published.elements();
+    }
+
+    /**
+     * Performs the specified write operation, publishes the new version and
+     * notifies the listeners.
+     *
+     * @param <R> result type
+     * @param writer write operation
+     * @return result of the write operation
+     */
+    private <R> R write(Function<VList<T>, R> writer) {
+        R result;
+        try {
+            result = writer.apply(list);
+        } finally {
+            publish();
+        }
+
+        dispatch();
+
+        return result;
+    }
+
+    private void publish() {
+        Version<T> current = published;
+        PersistentVector<T> next = elements.snapshot();
+        if (next != current.elements) {
+            published = new Version<>(next, current.number + 1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch() {
+        if (pendingEvents.isEmpty()) {
+            return;
+        }
+        List<VListChangeEvent<T>> events = pendingEvents;
+        pendingEvents = new ArrayList<>();
+        for (VListChangeEvent<T> evt : events) {
+            for (CollectionChangeListener l : listeners) {
+                l.onChange(evt);
+            }
+        }
+    }
+
+    /**
+     * Captures the events of the wrapped list. The events are numbered with
+     * the version that is published after the current write.
+     */
+    @SuppressWarnings("unchecked")
+    private void capture(CollectionChangeEvent<T, VList<T>, VListChange<T>> evt) {
+        pendingEvents.add(new VListSequencedEventImpl<>(this,
+                (VListChangeEvent<T>) evt, published.number + 1));
+    }
+
+    @Override
+    public int size() {
+        return published.elements.size();
+    }
+
+    @Override
+    public T get(int index) {
+        return published.elements.get(index);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return published.elements.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return published.elements.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return published.elements.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return published.elements.lastIndexOf(o);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return published.elements.toArray();
+    }
+
+    @Override
+    public <E> E[] toArray(E[] a) {
+        return published.elements.toArray(a);
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        published.elements.forEach(action);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || published.elements.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return published.elements.hashCode();
+    }
+
+    /**
+     * Returns an iterator over the published version of this list. The
+     * iterator does not support modification.
+     *
+     * @return an iterator over the published version of this list
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return listIterator(0);
+    }
+
+    /**
+     * Returns a list iterator over the published version of this list. The
+     * iterator does not support modification.
+     *
+     * @return a list iterator over the published version of this list
+     */
+    @Override
+    public ListIterator<T> listIterator() {
+        return listIterator(0);
+    }
+
+    /**
+     * Returns a list iterator over the published version of this list. The
+     * iterator does not support modification.
+     *
+     * @param index index of the first element to be returned
+     * @return a list iterator over the published version of this list
+     */
+    @Override
+    public ListIterator<T> listIterator(int index) {
+        return published.elements.listIterator(index);
+    }
+
+    @Override
+    public boolean add(T e) {
+        return write(l -> l.add(e));
+    }
+
+    @Override
+    public void add(int index, T element) {
+        write(l -> {
+            l.add(index, element);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        return write(l -> l.addAll(c));
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> c) {
+        return write(l -> l.addAll(index, c));
+    }
+
+    @Override
+    public boolean addAll(int[] indices, Collection<? extends T> c) {
+        return write(l -> l.addAll(indices, c));
+    }
+
+    @Override
+    public T set(int index, T element) {
+        return write(l -> l.set(index, element));
+    }
+
+    @Override
+    public Collection<T> setAll(int index, Collection<T> elements) {
+        return write(l -> l.setAll(index, elements));
+    }
+
+    @Override
+    public T remove(int index) {
+        return write(l -> l.remove(index));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return write(l -> l.remove(o));
+    }
+
+    @Override
+    public boolean removeAll(int... indices) {
+        return write(l -> l.removeAll(indices));
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return write(l -> l.removeAll(c));
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return write(l -> l.retainAll(c));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        return write(l -> l.removeIf(filter));
+    }
+
+    @Override
+    public void clear() {
+        write(l -> {
+            l.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<T> operator) {
+        write(l -> {
+            l.replaceAll(operator);
+            return null;
+        });
+    }
+
+    @Override
+    public void sort(Comparator<? super T> c) {
+        write(l -> {
+            l.sort(c);
+            return null;
+        });
+    }
+
+    @Override
+    public void parallelReplaceAll(UnaryOperator<T> operator, ForkJoinPool pool) {
+        write(l -> {
+            l.parallelReplaceAll(operator, pool);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean parallelRemoveIf(Predicate<? super T> filter, ForkJoinPool pool) {
+        return write(l -> l.parallelRemoveIf(filter, pool));
+    }
+
+    @Override
+    public void parallelSort(Comparator<? super T> c, ForkJoinPool pool) {
+        write(l -> {
+            l.parallelSort(c, pool);
+            return null;
+        });
+    }
+
+    @Override
+    public void moveRange(int from, int count, int to) {
+        write(l -> {
+            l.moveRange(from, count, to);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean setContents(List<? extends T> elements) {
+        return write(l -> l.setContents(elements));
+    }
+
+    @Override
+    public boolean setRangeContents(int fromIndex, int toIndex, List<? extends T> elements) {
+        return write(l -> l.setRangeContents(fromIndex, toIndex, elements));
+    }
+
+    @Override
+    public void sortRange(int fromIndex, int toIndex, Comparator<? super T> c) {
+        write(l -> {
+            l.sortRange(fromIndex, toIndex, c);
+            return null;
+        });
+    }
+
+    /**
+     * Returns an observable view of the specified range. Sublists must only
+     * be used by the writer thread.
+     *
+     * @param fromIndex low endpoint (inclusive) of the view
+     * @param toIndex high endpoint (exclusive) of the view
+     * @return a view of the specified range within this list
+     */
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        return subListView(fromIndex, toIndex);
+    }
+
+    @Override
+    public VList<T> asUnmodifiable() {
+        if (unmodifiableInstance == null) {
+            unmodifiableInstance = new UnmodifiableVList<>(this);
+        }
+        return unmodifiableInstance;
+    }
+
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        list.setEqualityPolicy(policy);
+    }
+
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return list.getEqualityPolicy();
+    }
+
+    @Override
+    public void setEventInfo(String evtInfo) {
+        list.setEventInfo(evtInfo);
+    }
+
+    @Override
+    public String getEventInfo() {
+        return list.getEventInfo();
+    }
+
+    @Override
+    public Subscription addChangeListener(CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
+        listeners.add(l);
+        if (!capturing) {
+            list.addChangeListener(captureListener);
+            capturing = true;
+        }
+        return () -> removeChangeListener(l);
+    }
+
+    @Override
+    public boolean removeChangeListener(CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
+        boolean result = listeners.remove(l);
+        if (listeners.isEmpty() && capturing) {
+            // no events are created without listeners
+            list.removeChangeListener(captureListener);
+            capturing = false;
+        }
+        return result;
+    }
+
+    /**
+     * Published version of a {@link SingleWriterVList}.
+     *
+     * @param <T> element type
+     */
+    public static final class Version<T> {
+
+        private final PersistentVector<T> elements;
+        private final long number;
+
+        private Version(PersistentVector<T> elements, long number) {
+            this.elements = elements;
+            this.number = number;
+        }
+
+        /**
+         * Returns the elements of this version.
+         *
+         * @return an immutable list that contains the elements of this version
+         */
+        public List<T> elements() {
+            return elements;
+        }
+
+        /**
+         * Returns the number of this version. Events that contain the changes
+         * of this version carry the same number as sequence number.
+         *
+         * @return the number of this version
+         */
+        public long number() {
+            return number;
+        }
+    }
+}
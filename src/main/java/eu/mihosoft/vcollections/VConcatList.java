@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import vjavax.observer.Subscription;
+import vjavax.observer.collection.CollectionChangeEvent;
+
+/**
+ * Live concatenation of several lists. The concatenated list does not copy
+ * the elements of its segments. Positions are translated via a Fenwick tree of
+ * segment sizes, i.e., element access, modification and event translation
+ * cost {@code O(log n)} where {@code n} denotes the number of segments.
+ *
+ * <p>
+ * Each event fired by a segment is fired by this list with indices shifted by
+ * the offset of the segment. Modifications of this list are applied to the
+ * segment that contains the specified position. Call {@link #dispose()} to
+ * stop observing the segments.</p>
+ *
+ * @param <T> element type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class VConcatList<T> extends VListView<T> {
+
+    private final List<VList<T>> segments;
+    private final FenwickTree offsets;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private VConcatList<T> unmodifiableInstance;
+
+    /**
+     * Creates a new concatenation of the specified lists.
+     *
+     * @param <T> element type
+     * @param lists lists to concatenate
+     * @return a new concatenation of the specified lists
+     */
+    @SafeVarargs
+    public static <T> VConcatList<T> newInstance(VList<T>... lists) {
+        return new VConcatList<>(Arrays.asList(lists));
+    }
+
+    /**
+     * Creates a new concatenation of the specified lists.
+     *
+     * @param <T> element type
+     * @param lists lists to concatenate
+     * @return a new concatenation of the specified lists
+     */
+    public static <T> VConcatList<T> newInstance(Collection<VList<T>> lists) {
+        return new VConcatList<>(lists);
+    }
+
+    private VConcatList(Collection<VList<T>> lists) {
+        this.segments = new ArrayList<>(lists);
+
+        int[] sizes = new int[segments.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = segments.get(i).size();
+        }
+        this.offsets = new FenwickTree(sizes);
+
+        // one listener per segment: the same list may occur more than once
+        for (int i = 0; i < segments.size(); i++) {
+            final int segment = i;
+            subscriptions.add(segments.get(i).addChangeListener(
+                    (VListChangeListener<T>) evt -> segmentChanged(segment, evt)));
+        }
+    }
+
+    /**
+     * Stops observing the segments. Afterwards this list won't reflect changes
+     * of the segments anymore.
+     */
+    public void dispose() {
+        subscriptions.forEach(Subscription::unsubscribe);
+        subscriptions.clear();
+    }
+
+    /**
+     * Returns the segments of this list.
+     *
+     * @return the segments of this list (unmodifiable)
+     */
+    public List<VList<T>> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    private void segmentChanged(int segment, CollectionChangeEvent<T, VList<T>, VListChange<T>> evt) {
+
+        // offsets of a segment only depend on the preceding segments
+        int offset = offsets.offset(segment);
+
+        offsets.setSize(segment, segments.get(segment).size());
+
+        fireShiftedChangeEvent(evt, offset);
+    }
+
+    private void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return offsets.total();
+    }
+
+    @Override
+    public T get(int index) {
+        checkIndex(index, size());
+        int segment = offsets.segmentOf(index);
+        return segments.get(segment).get(index - offsets.offset(segment));
+    }
+
+    @Override
+    public T set(int index, T element) {
+        checkIndex(index, size());
+        int segment = offsets.segmentOf(index);
+        return segments.get(segment).set(index - offsets.offset(segment), element);
+    }
+
+    @Override
+    public void add(int index, T element) {
+        checkIndex(index, size() + 1);
+        if (index == size()) {
+            lastSegment().add(element);
+        } else {
+            int segment = offsets.segmentOf(index);
+            segments.get(segment).add(index - offsets.offset(segment), element);
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        return lastSegment().addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> c) {
+        checkIndex(index, size() + 1);
+        if (index == size()) {
+            return lastSegment().addAll(c);
+        } else {
+            int segment = offsets.segmentOf(index);
+            return segments.get(segment).addAll(index - offsets.offset(segment), c);
+        }
+    }
+
+    @Override
+    public T remove(int index) {
+        checkIndex(index, size());
+        int segment = offsets.segmentOf(index);
+        return segments.get(segment).remove(index - offsets.offset(segment));
+    }
+
+    @Override
+    public void moveRange(int from, int count, int to) {
+        ListUtil.checkMove(from, count, to, size());
+
+        if (count == 0 || from == to) {
+            return;
+        }
+
+        int lo = Math.min(from, to);
+        int hi = Math.max(from, to) + count;
+        int segment = offsets.segmentOf(lo);
+        int offset = offsets.offset(segment);
+
+        if (hi - offset <= offsets.size(segment)) {
+            // the affected range lies within one segment
+            segments.get(segment).moveRange(from - offset, count, to - offset);
+        } else {
+            List<T> elements = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                elements.add(remove(from));
+            }
+            addAll(to, elements);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (VList<T> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private VList<T> lastSegment() {
+        if (segments.isEmpty()) {
+            throw new UnsupportedOperationException("Cannot add elements to a concatenation without segments.");
+        }
+        return segments.get(segments.size() - 1);
+    }
+
+    @Override
+    public VList<T> asUnmodifiable() {
+        if (unmodifiableInstance == null) {
+            List<VList<T>> unmodifiableSegments = new ArrayList<>(segments.size());
+            for (VList<T> segment : segments) {
+                unmodifiableSegments.add(segment.asUnmodifiable());
+            }
+            unmodifiableInstance = new VConcatList<>(unmodifiableSegments);
+        }
+        return unmodifiableInstance;
+    }
+}
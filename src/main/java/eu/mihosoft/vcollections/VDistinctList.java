@@ -0,0 +1,407 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import vjavax.observer.collection.CollectionChangeEvent;
+
+/**
+ * Live view of the distinct elements of a list. The distinct elements are
+ * ordered by their first occurrence in the source list.
+ *
+ * <p>
+ * The view keeps the occurrences of each element in a balanced tree that is
+ * ordered like the source list. An added or removed element is located in
+ * {@code O(log^2 n)}, where {@code n} denotes the size of the source list.
+ * Events are only fired for elements that enter or leave the view or whose
+ * first occurrence moves relative to the other distinct elements. Moved
+ * elements are reported as removed and added.</p>
+ *
+ * <p>
+ * This list is a read-only view. Call {@link #dispose()} to stop observing the
+ * source list.</p>
+ *
+ * @param <T> element type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class VDistinctList<T> extends VListView<T> {
+
+    private final VList<T> source;
+
+    private final Map<T, Entry<T>> entries = new HashMap<>();
+
+    // occurrences in source order
+    private final IndexedTree<Occurrence<T>> slots = new IndexedTree<>();
+    // entries ordered by first occurrence
+    private final IndexedTree<Entry<T>> view = new IndexedTree<>();
+    private final List<T> distinct = new ArrayList<>();
+
+    private final VListChangeListener<T> sourceListener = this::sourceChanged;
+
+    /**
+     * Creates a new distinct view of the specified list.
+     *
+     * @param <T> element type
+     * @param source source list
+     * @return a new distinct view of the specified list
+     */
+    public static <T> VDistinctList<T> newInstance(VList<T> source) {
+        return new VDistinctList<>(source);
+    }
+
+    private VDistinctList(VList<T> source) {
+        this.source = source;
+
+        for (T e : source) {
+            Entry<T> entry = entries.computeIfAbsent(e, Entry::new);
+            insertOccurrence(slots.size(), entry);
+            if (entry.viewNode == null) {
+                entry.viewNode = view.insert(view.size(), entry);
+                distinct.add(e);
+            }
+        }
+
+        source.addChangeListener(sourceListener);
+    }
+
+    /**
+     * Stops observing the source list. Afterwards this list won't change
+     * anymore.
+     */
+    public void dispose() {
+        source.removeChangeListener(sourceListener);
+    }
+
+    /**
+     * Returns the number of occurrences of the specified element in the source
+     * list.
+     *
+     * @param o element
+     * @return the number of occurrences of the specified element
+     */
+    public int count(Object o) {
+        Entry<T> entry = entries.get(o);
+        return entry == null ? 0 : entry.occurrences.size();
+    }
+
+    private void insertOccurrence(int index, Entry<T> entry) {
+        Occurrence<T> occurrence = new Occurrence<>(entry);
+        occurrence.source = slots.insert(index, occurrence);
+
+        int position = index == slots.size() - 1 ? entry.occurrences.size()
+                : entry.occurrences.count(o -> IndexedTree.indexOf(o.source) < index);
+        occurrence.node = entry.occurrences.insert(position, occurrence);
+    }
+
+    private void sourceChanged(CollectionChangeEvent<T, VList<T>, VListChange<T>> evt) {
+
+        if (evt instanceof VListChangeEvent && ((VListChangeEvent<T>) evt).wasPermutated()) {
+            applyPermutation(evt.eventInfo());
+            return;
+        }
+
+        // first occurrence of each affected entry before the change
+        Map<Entry<T>, Occurrence<T>> touched = new LinkedHashMap<>();
+
+        if (evt.removed().hasChanges()) {
+            int[] sortedIndices = evt.removed().indices().clone();
+            Arrays.sort(sortedIndices);
+
+            List<Occurrence<T>> removed = new ArrayList<>(sortedIndices.length);
+            for (int index : sortedIndices) {
+                Occurrence<T> occurrence = slots.get(index).value();
+                touched.putIfAbsent(occurrence.entry, occurrence.entry.first());
+                removed.add(occurrence);
+            }
+
+            for (Occurrence<T> occurrence : removed) {
+                slots.remove(occurrence.source);
+                occurrence.entry.occurrences.remove(occurrence.node);
+            }
+        }
+
+        if (evt.added().hasChanges()) {
+            int[] indices = evt.added().indices();
+            int[] permutation = ListUtil.sortingPermutation(indices);
+
+            // insert in ascending order, i.e., each index is final
+            for (int i = 0; i < indices.length; i++) {
+                int j = permutation == null ? i : permutation[i];
+                Entry<T> entry = entries.computeIfAbsent(
+                        evt.added().elements().get(j), Entry::new);
+                if (!touched.containsKey(entry)) {
+                    touched.put(entry, entry.first());
+                }
+                insertOccurrence(indices[j], entry);
+            }
+        }
+
+        applyFirstOccurrences(touched, evt.eventInfo());
+    }
+
+    /**
+     * Updates the view for the entries whose first occurrence changed.
+     *
+     * @param touched affected entries and their first occurrence before the
+     * change
+     * @param evtInfo event info
+     */
+    private void applyFirstOccurrences(Map<Entry<T>, Occurrence<T>> touched, String evtInfo) {
+
+        List<Entry<T>> leaving = new ArrayList<>();
+        List<Entry<T>> entering = new ArrayList<>();
+
+        for (Map.Entry<Entry<T>, Occurrence<T>> e : touched.entrySet()) {
+            Entry<T> entry = e.getKey();
+            if (entry.first() == e.getValue()) {
+                continue;
+            }
+            if (entry.viewNode != null) {
+                entry.oldIndex = IndexedTree.indexOf(entry.viewNode);
+                leaving.add(entry);
+            }
+            if (!entry.occurrences.isEmpty()) {
+                entry.firstIndex = IndexedTree.indexOf(entry.first().source);
+                entering.add(entry);
+            }
+        }
+
+        if (leaving.isEmpty() && entering.isEmpty()) {
+            return;
+        }
+
+        leaving.sort(Comparator.comparingInt(entry -> entry.oldIndex));
+        entering.sort(Comparator.comparingInt(entry -> entry.firstIndex));
+
+        // the view only contains entries with unchanged first occurrences,
+        // they keep their relative order
+        for (int i = 0; i < leaving.size(); i++) {
+            Entry<T> entry = leaving.get(i);
+            view.remove(entry.viewNode);
+            entry.viewNode = null;
+            entry.gap = entry.oldIndex - i;
+            entry.kept = false;
+        }
+
+        // entries that stay between the same unchanged entries in the same
+        // order are not reported
+        int lastKept = -1;
+        for (Entry<T> entry : entering) {
+            int gap = viewPosition(entry.firstIndex);
+            if (entry.oldIndex >= 0 && entry.gap == gap && entry.oldIndex > lastKept) {
+                entry.kept = true;
+                lastKept = entry.oldIndex;
+            }
+        }
+
+        List<Integer> removedIndices = new ArrayList<>();
+        List<T> removedElements = new ArrayList<>();
+
+        for (Entry<T> entry : leaving) {
+            if (!entry.kept) {
+                removedIndices.add(entry.oldIndex);
+                removedElements.add(entry.element);
+            }
+            if (entry.occurrences.isEmpty()) {
+                entries.remove(entry.element);
+            }
+        }
+
+        List<Integer> addedIndices = new ArrayList<>();
+        List<T> addedElements = new ArrayList<>();
+
+        for (Entry<T> entry : entering) {
+            int position = viewPosition(entry.firstIndex);
+            entry.viewNode = view.insert(position, entry);
+            if (!entry.kept) {
+                addedIndices.add(position);
+                addedElements.add(entry.element);
+            }
+        }
+
+        for (Entry<T> entry : leaving) {
+            entry.oldIndex = -1;
+        }
+        for (Entry<T> entry : entering) {
+            entry.kept = false;
+        }
+
+        if (removedIndices.isEmpty() && addedIndices.isEmpty()) {
+            return;
+        }
+
+        int[] removed = toArray(removedIndices);
+        int[] added = toArray(addedIndices);
+
+        ListUtil.removeAll(distinct, removed);
+        ListUtil.insertAll(distinct, added, addedElements);
+
+        fireChangeEvent(new VListChangeEventImpl<>(this,
+                added.length > 0 ? VListChange.newInstance(added, addedElements)
+                : VListChange.empty(),
+                removed.length > 0 ? VListChange.newInstance(removed, removedElements)
+                : VListChange.empty(),
+                evtInfo));
+    }
+
+    /**
+     * Returns the number of entries in the view whose first occurrence
+     * precedes the specified index of the source list.
+     *
+     * @param index index of the source list
+     * @return the number of entries whose first occurrence precedes the index
+     */
+    private int viewPosition(int index) {
+        return view.count(entry -> IndexedTree.indexOf(entry.first().source) < index);
+    }
+
+    /**
+     * Rebuilds the occurrences after a permutation of the source list. The
+     * distinct elements don't change, a new order of their first occurrences
+     * is fired as permutation.
+     *
+     * @param evtInfo event info
+     */
+    @SuppressWarnings("unchecked")
+    private void applyPermutation(String evtInfo) {
+
+        slots.clear();
+        for (Entry<T> entry : entries.values()) {
+            entry.occurrences.clear();
+        }
+
+        for (T e : source) {
+            insertOccurrence(slots.size(), entries.get(e));
+        }
+
+        Object[] elementsBefore = distinct.toArray();
+        List<Entry<T>> entriesBefore = new ArrayList<>(elementsBefore.length);
+        for (Object e : elementsBefore) {
+            entriesBefore.add(entries.get(e));
+        }
+
+        List<Entry<T>> order = new ArrayList<>(entriesBefore);
+        for (Entry<T> entry : order) {
+            entry.firstIndex = IndexedTree.indexOf(entry.first().source);
+        }
+        order.sort(Comparator.comparingInt(entry -> entry.firstIndex));
+
+        view.clear();
+        distinct.clear();
+        for (Entry<T> entry : order) {
+            entry.viewNode = view.insert(view.size(), entry);
+            distinct.add(entry.element);
+        }
+
+        int[] permutation = new int[elementsBefore.length];
+        boolean changed = false;
+        for (int i = 0; i < permutation.length; i++) {
+            permutation[i] = IndexedTree.indexOf(entriesBefore.get(i).viewNode);
+            changed |= permutation[i] != i;
+        }
+
+        if (changed) {
+            fireChangeEvent(VListChangeEvent.getPermutationEvent(this, permutation,
+                    (List<T>) Arrays.asList(elementsBefore), evtInfo));
+        }
+    }
+
+    private static int[] toArray(List<Integer> indices) {
+        return indices.stream().mapToInt(i -> i).toArray();
+    }
+
+    @Override
+    public int size() {
+        return distinct.size();
+    }
+
+    @Override
+    public T get(int index) {
+        return distinct.get(index);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return entries.containsKey(o);
+    }
+
+    /**
+     * Distinct element and its occurrences.
+     *
+     * @param <T> element type
+     */
+    private static final class Entry<T> {
+
+        private final T element;
+        private final IndexedTree<Occurrence<T>> occurrences = new IndexedTree<>();
+        private IndexedTree.Node<Entry<T>> viewNode;
+
+        // state of one update of the view
+        private int oldIndex = -1;
+        private int firstIndex;
+        private int gap;
+        private boolean kept;
+
+        Entry(T element) {
+            this.element = element;
+        }
+
+        Occurrence<T> first() {
+            return occurrences.isEmpty() ? null : occurrences.get(0).value();
+        }
+    }
+
+    /**
+     * Occurrence of an element in the source list.
+     *
+     * @param <T> element type
+     */
+    private static final class Occurrence<T> {
+
+        private final Entry<T> entry;
+        private IndexedTree.Node<Occurrence<T>> source;
+        private IndexedTree.Node<Occurrence<T>> node;
+
+        Occurrence(Entry<T> entry) {
+            this.entry = entry;
+        }
+    }
+}
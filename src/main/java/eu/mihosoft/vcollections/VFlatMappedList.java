@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import vjavax.observer.Subscription;
+import vjavax.observer.collection.CollectionChangeEvent;
+
+/**
+ * Live flattened view of nested lists. Each element of the source list is
+ * mapped to an inner list. This list contains the elements of all inner lists
+ * in the order of the source list.
+ *
+ * <p>
+ * The view observes the source list and every inner list. Changes of an inner
+ * list are fired with indices shifted by the offset of the inner list, which
+ * is computed in {@code O(log n)} where {@code n} denotes the number of inner
+ * lists. The flattened elements are never copied. Changes of the source list
+ * are fired as one event that contains the elements of the removed and added
+ * inner lists. The offsets are updated in {@code O(log n)} per removed or
+ * added inner list.</p>
+ *
+ * <p>
+ * This list is a read-only view. Call {@link #dispose()} to stop observing the
+ * source list and the inner lists.</p>
+ *
+ * @param <P> element type of the source list
+ * @param <T> element type of this list
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class VFlatMappedList<P, T> extends VListView<T> {
+
+    private final VList<P> source;
+    private final Function<? super P, ? extends VList<T>> mapper;
+
+    // inner lists weighted by their size
+    private final IndexedTree<Segment<T>> segments = new IndexedTree<>();
+
+    private final VListChangeListener<P> sourceListener = this::sourceChanged;
+
+    /**
+     * Creates a new flattened view of the specified list.
+     *
+     * @param <P> element type of the source list
+     * @param <T> element type of the flattened list
+     * @param source source list
+     * @param mapper function that returns the inner list of an element of the
+     * source list
+     * @return a new flattened view of the specified list
+     */
+    public static <P, T> VFlatMappedList<P, T> newInstance(VList<P> source,
+            Function<? super P, ? extends VList<T>> mapper) {
+        return new VFlatMappedList<>(source, mapper);
+    }
+
+    private VFlatMappedList(VList<P> source, Function<? super P, ? extends VList<T>> mapper) {
+        this.source = source;
+        this.mapper = mapper;
+
+        for (P parent : source) {
+            insertSegment(segments.size(), newSegment(parent));
+        }
+
+        source.addChangeListener(sourceListener);
+    }
+
+    /**
+     * Stops observing the source list and the inner lists. Afterwards this
+     * list won't change anymore.
+     */
+    public void dispose() {
+        source.removeChangeListener(sourceListener);
+        for (int i = 0; i < segments.size(); i++) {
+            segments.get(i).value().subscription.unsubscribe();
+        }
+    }
+
+    private Segment<T> newSegment(P parent) {
+        VList<T> list = Objects.requireNonNull(mapper.apply(parent),
+                "Inner list must not be null");
+
+        Segment<T> segment = new Segment<>(list);
+        segment.subscription = list.addChangeListener(
+                (VListChangeListener<T>) evt -> segmentChanged(segment, evt));
+
+        return segment;
+    }
+
+    private void insertSegment(int index, Segment<T> segment) {
+        segment.node = segments.insert(index, segment, segment.list.size());
+    }
+
+    private void segmentChanged(Segment<T> segment, CollectionChangeEvent<T, VList<T>, VListChange<T>> evt) {
+
+        // offsets of a segment only depend on the preceding segments
+        int offset = IndexedTree.offset(segment.node);
+
+        segments.setWeight(segment.node, segment.list.size());
+
+        fireShiftedChangeEvent(evt, offset);
+    }
+
+    private void sourceChanged(CollectionChangeEvent<P, VList<P>, VListChange<P>> evt) {
+
+        int[] removedIndices = null;
+        List<T> removedElements = null;
+
+        if (evt.removed().hasChanges()) {
+            int[] sortedIndices = evt.removed().indices().clone();
+            Arrays.sort(sortedIndices);
+
+            // indices of removed segments refer to the offsets before the change
+            List<Segment<T>> removedSegments = new ArrayList<>(sortedIndices.length);
+            int numRemoved = 0;
+            for (int s : sortedIndices) {
+                Segment<T> segment = segments.get(s).value();
+                removedSegments.add(segment);
+                numRemoved += segment.node.weight();
+            }
+
+            removedIndices = new int[numRemoved];
+            removedElements = new ArrayList<>(numRemoved);
+
+            int i = 0;
+            for (Segment<T> segment : removedSegments) {
+                segment.subscription.unsubscribe();
+                int offset = IndexedTree.offset(segment.node);
+                for (int j = 0; j < segment.node.weight(); j++) {
+                    removedIndices[i++] = offset + j;
+                }
+                removedElements.addAll(segment.list);
+            }
+
+            for (Segment<T> segment : removedSegments) {
+                segments.remove(segment.node);
+            }
+        }
+
+        List<Segment<T>> addedSegments = null;
+
+        if (evt.added().hasChanges()) {
+            int[] indices = evt.added().indices();
+            int[] permutation = ListUtil.sortingPermutation(indices);
+
+            addedSegments = new ArrayList<>(indices.length);
+
+            // insert in ascending order, i.e., each index is final
+            for (int i = 0; i < indices.length; i++) {
+                int j = permutation == null ? i : permutation[i];
+                Segment<T> segment = newSegment(evt.added().elements().get(j));
+                insertSegment(indices[j], segment);
+                addedSegments.add(segment);
+            }
+        }
+
+        int[] addedIndices = null;
+        List<T> addedElements = null;
+
+        if (addedSegments != null) {
+            int numAdded = 0;
+            for (Segment<T> segment : addedSegments) {
+                numAdded += segment.list.size();
+            }
+
+            addedIndices = new int[numAdded];
+            addedElements = new ArrayList<>(numAdded);
+
+            int i = 0;
+            for (Segment<T> segment : addedSegments) {
+                int offset = IndexedTree.offset(segment.node);
+                for (int j = 0; j < segment.list.size(); j++) {
+                    addedIndices[i++] = offset + j;
+                }
+                addedElements.addAll(segment.list);
+            }
+        }
+
+        boolean wasRemoved = removedIndices != null && removedIndices.length > 0;
+        boolean wasAdded = addedIndices != null && addedIndices.length > 0;
+
+        if (wasRemoved || wasAdded) {
+            fireChangeEvent(new VListChangeEventImpl<>(this,
+                    wasAdded ? VListChange.newInstance(addedIndices, addedElements)
+                    : VListChange.empty(),
+                    wasRemoved ? VListChange.newInstance(removedIndices, removedElements)
+                    : VListChange.empty(),
+                    evt.eventInfo()));
+        }
+    }
+
+    @Override
+    public int size() {
+        return segments.total();
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        IndexedTree.Node<Segment<T>> node = segments.nodeAt(index);
+        return node.value().list.get(index - IndexedTree.offset(node));
+    }
+
+    /**
+     * Inner list of one element of the source list.
+     *
+     * @param <T> element type
+     */
+    private static final class Segment<T> {
+
+        private final VList<T> list;
+        private IndexedTree.Node<Segment<T>> node;
+        private Subscription subscription;
+
+        Segment(VList<T> list) {
+            this.list = list;
+        }
+    }
+}
@@ -0,0 +1,641 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import vjavax.observer.collection.CollectionChangeEvent;
+
+/**
+ * Live grouping of a list. Each element of the source list is assigned to the
+ * group identified by its classifier key. The map and the group lists are
+ * updated incrementally from the change events of the source list.
+ *
+ * <p>
+ * For every event of the source list, each affected group list fires one
+ * event that contains the removed and added group members. Groups that are
+ * created or become empty are reported via one map event. Group lists are
+ * ordered like the source list, groups are ordered by creation. The position
+ * of an added or removed element inside its group is located in
+ * {@code O(log^2 n)} where {@code n} denotes the size of the source list.</p>
+ *
+ * <p>
+ * The map and its group lists are read-only views. Call {@link #dispose()} to
+ * stop observing the source list.</p>
+ *
+ * @param <K> key type
+ * @param <T> element type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class VGroupedMap<K, T> extends VMapView<K, VList<T>> {
+
+    private final VList<T> source;
+    private final Function<? super T, ? extends K> classifier;
+
+    private final Map<K, Group<T>> groups = new LinkedHashMap<>();
+    private final Map<K, VList<T>> unmodifiableGroups = Collections.unmodifiableMap(groups);
+
+    // group key of each element in the source list
+    private final IndexedTree<Slot<K>> slots = new IndexedTree<>();
+
+    private final List<AggregatedMap<K, T, ?>> aggregations = new ArrayList<>();
+
+    private final VListChangeListener<T> sourceListener = this::sourceChanged;
+
+    /**
+     * Incremental aggregation of group members. In contrast to
+     * {@link java.util.stream.Collector} an aggregator also supports the
+     * removal of elements.
+     *
+     * @param <T> element type
+     * @param <R> result type
+     */
+    public interface Aggregator<T, R> {
+
+        /**
+         * Returns the result of an empty group.
+         *
+         * @return the result of an empty group
+         */
+        R identity();
+
+        /**
+         * Returns the result after adding the specified element.
+         *
+         * @param result current result
+         * @param element element that has been added to the group
+         * @return the new result
+         */
+        R add(R result, T element);
+
+        /**
+         * Returns the result after removing the specified element.
+         *
+         * @param result current result
+         * @param element element that has been removed from the group
+         * @return the new result
+         */
+        R remove(R result, T element);
+    }
+
+    /**
+     * Creates a new live grouping of the specified list.
+     *
+     * @param <K> key type
+     * @param <T> element type
+     * @param source list to group
+     * @param classifier function that computes the group key of an element
+     * @return a new live grouping of the specified list
+     */
+    public static <K, T> VGroupedMap<K, T> newInstance(VList<T> source,
+            Function<? super T, ? extends K> classifier) {
+        return new VGroupedMap<>(source, classifier);
+    }
+
+    private VGroupedMap(VList<T> source, Function<? super T, ? extends K> classifier) {
+        this.source = source;
+        this.classifier = classifier;
+
+        for (T e : source) {
+            K key = classifier.apply(e);
+            Group<T> group = groups.computeIfAbsent(key, k -> new Group<>());
+            insertSlot(slots.size(), key, group);
+            group.elements.add(e);
+        }
+
+        source.addChangeListener(sourceListener);
+    }
+
+    /**
+     * Stops observing the source list. Afterwards this map and its groups
+     * won't change anymore.
+     */
+    public void dispose() {
+        source.removeChangeListener(sourceListener);
+    }
+
+    /**
+     * Returns a live map that contains the aggregated result of each group.
+     * The results are updated incrementally, i.e., only the added and removed
+     * group members are passed to the specified aggregator.
+     *
+     * @param <R> result type
+     * @param aggregator aggregator
+     * @return a live map that contains the aggregated result of each group
+     */
+    public <R> VMap<K, R> aggregate(Aggregator<? super T, R> aggregator) {
+        AggregatedMap<K, T, R> aggregation = new AggregatedMap<>(aggregator);
+
+        groups.forEach((k, g) -> aggregation.values.put(k, aggregation.aggregate(
+                aggregator.identity(), Collections.emptyList(), g.elements)));
+
+        aggregations.add(aggregation);
+
+        return aggregation;
+    }
+
+    /**
+     * Returns a live map that contains the number of elements of each group.
+     *
+     * @return a live map that contains the number of elements of each group
+     */
+    public VMap<K, Long> counting() {
+        return aggregate(new Aggregator<T, Long>() {
+            @Override
+            public Long identity() {
+                return 0L;
+            }
+
+            @Override
+            public Long add(Long result, T element) {
+                return result + 1;
+            }
+
+            @Override
+            public Long remove(Long result, T element) {
+                return result - 1;
+            }
+        });
+    }
+
+    /**
+     * Returns a live map that contains the sum of the specified function over
+     * the elements of each group.
+     *
+     * @param mapper function to sum
+     * @return a live map that contains the sum of each group
+     */
+    public VMap<K, Long> summingLong(ToLongFunction<? super T> mapper) {
+        return aggregate(new Aggregator<T, Long>() {
+            @Override
+            public Long identity() {
+                return 0L;
+            }
+
+            @Override
+            public Long add(Long result, T element) {
+                return result + mapper.applyAsLong(element);
+            }
+
+            @Override
+            public Long remove(Long result, T element) {
+                return result - mapper.applyAsLong(element);
+            }
+        });
+    }
+
+    /**
+     * Returns a live map that contains the sum of the specified function over
+     * the elements of each group.
+     *
+     * @param mapper function to sum
+     * @return a live map that contains the sum of each group
+     */
+    public VMap<K, Double> summingDouble(ToDoubleFunction<? super T> mapper) {
+        return aggregate(new Aggregator<T, Double>() {
+            @Override
+            public Double identity() {
+                return 0.0;
+            }
+
+            @Override
+            public Double add(Double result, T element) {
+                return result + mapper.applyAsDouble(element);
+            }
+
+            @Override
+            public Double remove(Double result, T element) {
+                return result - mapper.applyAsDouble(element);
+            }
+        });
+    }
+
+    @Override
+    public int size() {
+        return groups.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return groups.containsKey(key);
+    }
+
+    @Override
+    public VList<T> get(Object key) {
+        return groups.get(key);
+    }
+
+    @Override
+    public Set<Entry<K, VList<T>>> entrySet() {
+        return unmodifiableGroups.entrySet();
+    }
+
+    private void sourceChanged(CollectionChangeEvent<T, VList<T>, VListChange<T>> evt) {
+
+        if (evt instanceof VListChangeEvent && ((VListChangeEvent<T>) evt).wasPermutated()) {
+            applyPermutation(((VListChangeEvent<T>) evt).permutation(), evt.eventInfo());
+            return;
+        }
+
+        Map<K, GroupChange<T>> changes = new LinkedHashMap<>();
+        Map<K, VList<T>> createdGroups = new LinkedHashMap<>();
+        Map<K, VList<T>> removedGroups = new LinkedHashMap<>();
+
+        if (evt.removed().hasChanges()) {
+            applyRemoved(evt.removed().indices(), changes);
+        }
+
+        if (evt.added().hasChanges()) {
+            applyAdded(evt.added().indices(), evt.added().elements(), changes, createdGroups);
+        }
+
+        for (Map.Entry<K, GroupChange<T>> change : changes.entrySet()) {
+            K key = change.getKey();
+            Group<T> group = groups.get(key);
+            if (group.elements.isEmpty()) {
+                groups.remove(key);
+                removedGroups.put(key, group);
+            }
+        }
+
+        // all state is up to date, notify listeners
+        for (Map.Entry<K, GroupChange<T>> change : changes.entrySet()) {
+            if (!createdGroups.containsKey(change.getKey())) {
+                change.getValue().fire(evt.eventInfo());
+            }
+        }
+
+        if (!createdGroups.isEmpty() || !removedGroups.isEmpty()) {
+            fireChangeEvent(new VMapChangeEventImpl<>(this,
+                    createdGroups.isEmpty() ? VMapChange.empty() : VMapChange.newInstance(createdGroups),
+                    removedGroups.isEmpty() ? VMapChange.empty() : VMapChange.newInstance(removedGroups),
+                    evt.eventInfo()));
+        }
+
+        for (AggregatedMap<K, T, ?> aggregation : aggregations) {
+            aggregation.update(changes, removedGroups.keySet(), evt.eventInfo());
+        }
+    }
+
+    /**
+     * Applies a permutation of the source list. Group membership does not
+     * change, each group fires the permutation of its own elements.
+     *
+     * @param permutation permutation of the source list
+     * @param evtInfo event info
+     */
+    @SuppressWarnings("unchecked")
+    private void applyPermutation(int[] permutation, String evtInfo) {
+
+        List<K> keysBefore = new ArrayList<>(permutation.length);
+        for (int i = 0; i < permutation.length; i++) {
+            keysBefore.add(slots.get(i).value().key);
+        }
+
+        List<K> keysAfter = new ArrayList<>(keysBefore);
+        for (int i = 0; i < permutation.length; i++) {
+            keysAfter.set(permutation[i], keysBefore.get(i));
+        }
+
+        int[] positionsBefore = groupPositions(keysBefore);
+        int[] positionsAfter = groupPositions(keysAfter);
+
+        // membership doesn't change, rebuild the slots in the new order
+        slots.clear();
+        for (Group<T> group : groups.values()) {
+            group.members.clear();
+        }
+        for (K key : keysAfter) {
+            insertSlot(slots.size(), key, groups.get(key));
+        }
+
+        Map<K, int[]> groupPermutations = new HashMap<>();
+        for (int i = 0; i < permutation.length; i++) {
+            K key = keysBefore.get(i);
+            groupPermutations.computeIfAbsent(key, k -> new int[groups.get(k).size()])
+                    [positionsBefore[i]] = positionsAfter[permutation[i]];
+        }
+
+        for (Map.Entry<K, int[]> entry : groupPermutations.entrySet()) {
+            int[] groupPermutation = entry.getValue();
+
+            boolean changed = false;
+            for (int i = 0; i < groupPermutation.length && !changed; i++) {
+                changed = groupPermutation[i] != i;
+            }
+
+            if (!changed) {
+                continue;
+            }
+
+            Group<T> group = groups.get(entry.getKey());
+            Object[] elementsBefore = group.elements.toArray();
+            for (int i = 0; i < groupPermutation.length; i++) {
+                group.elements.set(groupPermutation[i], (T) elementsBefore[i]);
+            }
+
+            group.fireChangeEvent(VListChangeEvent.getPermutationEvent(group,
+                    groupPermutation, (List<T>) Arrays.asList(elementsBefore), evtInfo));
+        }
+    }
+
+    /**
+     * Returns the position of each source element inside its group.
+     *
+     * @param keys group keys of the source elements
+     * @return the position of each source element inside its group
+     */
+    private static <K> int[] groupPositions(List<K> keys) {
+        Map<K, int[]> counters = new HashMap<>();
+        int[] positions = new int[keys.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = counters.computeIfAbsent(keys.get(i), k -> new int[1])[0]++;
+        }
+        return positions;
+    }
+
+    /**
+     * Inserts a slot for an element of the specified group into the slots of
+     * the source list.
+     *
+     * @param index index of the element in the source list
+     * @param key group key of the element
+     * @param group group of the element
+     * @return the position of the element inside its group
+     */
+    private int insertSlot(int index, K key, Group<T> group) {
+        Slot<K> slot = new Slot<>(key, group.members);
+        slot.source = slots.insert(index, slot);
+
+        int position = index == slots.size() - 1 ? group.members.size()
+                : group.members.count(s -> IndexedTree.indexOf(s.source) < index);
+        slot.member = group.members.insert(position, slot);
+
+        return position;
+    }
+
+    private void applyRemoved(int[] indices, Map<K, GroupChange<T>> changes) {
+        int[] sortedIndices = indices.clone();
+        Arrays.sort(sortedIndices);
+
+        // determine the position of each removed element inside its group
+        List<Slot<K>> removed = new ArrayList<>(sortedIndices.length);
+        for (int index : sortedIndices) {
+            Slot<K> slot = slots.get(index).value();
+            removed.add(slot);
+            changes.computeIfAbsent(slot.key, k -> new GroupChange<>(groups.get(k))).
+                    removedIndices.add(IndexedTree.indexOf(slot.member));
+        }
+
+        for (Slot<K> slot : removed) {
+            slots.remove(slot.source);
+            slot.members.remove(slot.member);
+        }
+
+        for (GroupChange<T> change : changes.values()) {
+            change.applyRemoved();
+        }
+    }
+
+    private void applyAdded(int[] indices, List<T> elements,
+            Map<K, GroupChange<T>> changes, Map<K, VList<T>> createdGroups) {
+
+        int[] permutation = ListUtil.sortingPermutation(indices);
+
+        // insert in ascending order, i.e., each position is final
+        for (int i = 0; i < indices.length; i++) {
+            int j = permutation == null ? i : permutation[i];
+            T e = elements.get(j);
+            K key = classifier.apply(e);
+            GroupChange<T> change = changes.computeIfAbsent(key, k -> {
+                Group<T> group = groups.get(k);
+                if (group == null) {
+                    group = new Group<>();
+                    groups.put(k, group);
+                    createdGroups.put(k, group);
+                }
+                return new GroupChange<>(group);
+            });
+            change.addedIndices.add(insertSlot(indices[j], key, change.group));
+            change.addedElements.add(e);
+        }
+
+        for (GroupChange<T> change : changes.values()) {
+            change.applyAdded();
+        }
+    }
+
+    /**
+     * Element of the source list.
+     *
+     * @param <K> key type
+     */
+    private static final class Slot<K> {
+
+        private final K key;
+        private final IndexedTree<Slot<?>> members;
+        private IndexedTree.Node<Slot<K>> source;
+        private IndexedTree.Node<Slot<?>> member;
+
+        Slot(K key, IndexedTree<Slot<?>> members) {
+            this.key = key;
+            this.members = members;
+        }
+    }
+
+    /**
+     * Group list.
+     *
+     * @param <T> element type
+     */
+    private static final class Group<T> extends VListView<T> {
+
+        private final List<T> elements = new ArrayList<>();
+
+        // slots of the group members, ordered like the source list
+        private final IndexedTree<Slot<?>> members = new IndexedTree<>();
+
+        @Override
+        public T get(int index) {
+            return elements.get(index);
+        }
+
+        @Override
+        public int size() {
+            return elements.size();
+        }
+    }
+
+    /**
+     * Changes of one group caused by a single event of the source list.
+     *
+     * @param <T> element type
+     */
+    private static final class GroupChange<T> {
+
+        private final Group<T> group;
+
+        private final List<Integer> removedIndices = new ArrayList<>();
+        private final List<T> removedElements = new ArrayList<>();
+        private final List<Integer> addedIndices = new ArrayList<>();
+        private final List<T> addedElements = new ArrayList<>();
+
+        GroupChange(Group<T> group) {
+            this.group = group;
+        }
+
+        void applyRemoved() {
+            int[] indices = toArray(removedIndices);
+            for (int i : indices) {
+                removedElements.add(group.elements.get(i));
+            }
+            ListUtil.removeAll(group.elements, indices);
+        }
+
+        void applyAdded() {
+            ListUtil.insertAll(group.elements, toArray(addedIndices), addedElements);
+        }
+
+        void fire(String evtInfo) {
+            group.fireChangeEvent(new VListChangeEventImpl<>(group,
+                    addedIndices.isEmpty() ? VListChange.empty()
+                    : VListChange.newInstance(toArray(addedIndices), addedElements),
+                    removedIndices.isEmpty() ? VListChange.empty()
+                    : VListChange.newInstance(toArray(removedIndices), removedElements),
+                    evtInfo));
+        }
+
+        private static int[] toArray(List<Integer> indices) {
+            return indices.stream().mapToInt(i -> i).toArray();
+        }
+    }
+
+    /**
+     * Live map of aggregated group results.
+     *
+     * @param <K> key type
+     * @param <T> element type
+     * @param <R> result type
+     */
+    private static final class AggregatedMap<K, T, R> extends VMapView<K, R> {
+
+        private final Aggregator<? super T, R> aggregator;
+        private final Map<K, R> values = new LinkedHashMap<>();
+        private final Map<K, R> unmodifiableValues = Collections.unmodifiableMap(values);
+
+        AggregatedMap(Aggregator<? super T, R> aggregator) {
+            this.aggregator = aggregator;
+        }
+
+        R aggregate(R result, List<T> removed, List<T> added) {
+            for (T e : removed) {
+                result = aggregator.remove(result, e);
+            }
+            for (T e : added) {
+                result = aggregator.add(result, e);
+            }
+            return result;
+        }
+
+        void update(Map<K, GroupChange<T>> changes, Set<K> removedGroups, String evtInfo) {
+
+            Map<K, R> added = new LinkedHashMap<>();
+            Map<K, R> removed = new LinkedHashMap<>();
+
+            for (Map.Entry<K, GroupChange<T>> change : changes.entrySet()) {
+                K key = change.getKey();
+                boolean existed = values.containsKey(key);
+                R previous = values.get(key);
+
+                if (removedGroups.contains(key)) {
+                    values.remove(key);
+                    removed.put(key, previous);
+                    continue;
+                }
+
+                R result = aggregate(existed ? previous : aggregator.identity(),
+                        change.getValue().removedElements, change.getValue().addedElements);
+
+                values.put(key, result);
+                added.put(key, result);
+
+                if (existed) {
+                    removed.put(key, previous);
+                }
+            }
+
+            if (!added.isEmpty() || !removed.isEmpty()) {
+                fireChangeEvent(new VMapChangeEventImpl<>(this,
+                        added.isEmpty() ? VMapChange.empty() : VMapChange.newInstance(added),
+                        removed.isEmpty() ? VMapChange.empty() : VMapChange.newInstance(removed),
+                        evtInfo));
+            }
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public R get(Object key) {
+            return values.get(key);
+        }
+
+        @Override
+        public Set<Entry<K, R>> entrySet() {
+            return unmodifiableValues.entrySet();
+        }
+    }
+}
@@ -40,13 +40,20 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import vjavax.observer.Subscription;
 import vjavax.observer.collection.CollectionChangeEvent;
@@ -73,6 +80,37 @@ public interface VList<T> extends List<T>, VListObservable<T> {
         return VListImpl.newInstance(list);
     }
 
+    /**
+     * Creates a new list that stores its elements in lists created by the
+     * specified supplier. Instead of removing all elements, {@link #clear()}
+     * detaches the current backing list, passes it to the listeners as the
+     * removed elements and installs a new empty list created by the supplier.
+     * Clearing is therefore done in constant time without copying.
+     *
+     * @param <T> element type
+     * @param backingSupplier supplier of empty backing lists
+     * @return new {@link VList} that uses the specified supplier
+     */
+    static <T> VList<T> newInstance(Supplier<? extends List<T>> backingSupplier) {
+
+        return VListImpl.newInstance(backingSupplier);
+    }
+
+    /**
+     * Creates a new empty list that is backed by a persistent vector, i.e., a
+     * 32-way trie. {@link #snapshot()} is performed in constant time, the
+     * snapshot shares its nodes with the list and subsequent modifications
+     * only copy the nodes they touch. Random access costs
+     * {@code O(log32 n)}.
+     *
+     * @param <T> element type
+     * @return new {@link VList} backed by a persistent vector
+     */
+    static <T> VList<T> newPersistentInstance() {
+
+        return VListImpl.newInstance(new TransientVector<>());
+    }
+
     /**
      * Returns an unmodifiable view of this list (see {@link java.util.Collections#unmodifiableList(java.util.List)} ).
      * 
@@ -81,7 +119,25 @@ public interface VList<T> extends List<T>, VListObservable<T> {
     VList<T> asUnmodifiable();
 
     /**
-     * Removes elements at the specified indices.
+     * Returns an observable view of the portion of this list between
+     * {@code fromIndex} (inclusive) and {@code toIndex} (exclusive). Changes
+     * of this list move and resize the view, i.e., the view keeps showing the
+     * same window of elements. Bulk operations on the view are performed as a
+     * single operation on this list. Listeners of the view are only notified
+     * about changes inside the window, indices are relative to the window.
+     *
+     * @param fromIndex low endpoint (inclusive) of the view
+     * @param toIndex high endpoint (exclusive) of the view
+     * @return a view of the specified range within this list
+     * @throws IndexOutOfBoundsException if an endpoint is out of bounds
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     */
+    default VList<T> subListView(int fromIndex, int toIndex) {
+        return new VSubList<>(this, fromIndex, toIndex);
+    }
+
+    /**
+     * Removes elements at the specified indices. The elements are removed in one pass.
      * @param indices
      * @return {@code true} if this collection changed as a result of the call; {@code false} otherwise
      */
@@ -97,13 +153,250 @@ public interface VList<T> extends List<T>, VListObservable<T> {
     Collection<T> setAll(int index, Collection<T> elements);
 
     /**
-     * Adds the specified elements at the given indices. It requires that {@code indices.length == c.size()}
-     * @param indices indices
+     * Adds the specified elements at the given indices. It requires that {@code indices.length == c.size()}.
+     * The indices refer to the list after the operation, i.e., the i-th element of {@code c} is located
+     * at {@code indices[i]} afterwards. The elements are inserted in one pass.
+     * @param indices indices (distinct)
      * @param c collection containing the elements to add
      * @return {@code true} if the collection changed as a result of the call; {@code false} otherwise
      */
     boolean addAll(int[] indices, Collection<? extends T> c);
 
+    /**
+     * Moves the element at index {@code from} to index {@code to}. The
+     * elements in between are shifted by one.
+     *
+     * @param from index of the element to move
+     * @param to index of the element after the move
+     * @see #moveRange(int, int, int)
+     */
+    default void move(int from, int to) {
+        moveRange(from, 1, to);
+    }
+
+    /**
+     * Moves the elements from {@code from} to {@code from+count-1} to the
+     * indices {@code to} to {@code to+count-1}. The elements in between are
+     * shifted by {@code count}.
+     *
+     * The default implementation removes and re-adds the moved elements
+     * which fires two events. Implementations should rotate the affected
+     * range in place and fire a single move event (see
+     * {@link VListChangeEvent#wasMoved()}).
+     *
+     * @param from index of the first element to move
+     * @param count number of elements to move
+     * @param to index of the first moved element after the move
+     * @throws IndexOutOfBoundsException if the source or target range is out
+     * of range
+     */
+    default void moveRange(int from, int count, int to) {
+        ListUtil.checkMove(from, count, to, size());
+
+        if (count == 0 || from == to) {
+            return;
+        }
+
+        List<T> elements = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            elements.add(get(i));
+        }
+        removeAll(IntStream.range(from, from + count).toArray());
+        addAll(to, elements);
+    }
+
+    /**
+     * Replaces the contents of this list with the specified elements. Only the
+     * elements that differ are removed and inserted, i.e., elements that are
+     * part of a longest common subsequence of both lists are kept. Listeners
+     * are notified with a single event that contains the removed elements
+     * (indices refer to the list before the change) and the added elements
+     * (indices refer to the list after the change). Elements are compared
+     * with {@link Object#equals(java.lang.Object)}.
+     *
+     * The default implementation fires separate events for the removed and
+     * the added elements.
+     *
+     * @param elements the new contents of this list
+     * @return {@code true} if this list changed as a result of the call;
+     * {@code false} otherwise
+     */
+    default boolean setContents(List<? extends T> elements) {
+        return ListDiff.apply(this, elements);
+    }
+
+    /**
+     * Replaces the elements from {@code fromIndex} (inclusive) to
+     * {@code toIndex} (exclusive) with the specified elements like
+     * {@link #setContents(List)}, i.e., only the elements of the range that
+     * differ are removed and inserted. Listeners are notified with a single
+     * event, indices refer to this list.
+     *
+     * The default implementation fires separate events for the removed and
+     * the added elements.
+     *
+     * @param fromIndex low endpoint (inclusive) of the range
+     * @param toIndex high endpoint (exclusive) of the range
+     * @param elements the new contents of the range
+     * @return {@code true} if this list changed as a result of the call;
+     * {@code false} otherwise
+     * @throws IndexOutOfBoundsException if the range is out of range
+     */
+    default boolean setRangeContents(int fromIndex, int toIndex, List<? extends T> elements) {
+        return ListDiff.apply(this, fromIndex, toIndex, elements);
+    }
+
+    /**
+     * Sorts the elements from {@code fromIndex} (inclusive) to
+     * {@code toIndex} (exclusive). The sort is stable. Listeners are notified
+     * with a single permutation event, elements outside of the range keep
+     * their positions.
+     *
+     * The default implementation writes the sorted range back with
+     * {@link #setAll(int, Collection)} which fires a set event.
+     *
+     * @param fromIndex low endpoint (inclusive) of the range
+     * @param toIndex high endpoint (exclusive) of the range
+     * @param comparator comparator ({@code null} for natural ordering)
+     * @throws IndexOutOfBoundsException if the range is out of range
+     */
+    default void sortRange(int fromIndex, int toIndex, Comparator<? super T> comparator) {
+        ListUtil.checkRange(fromIndex, toIndex, size());
+
+        List<T> elements = new ArrayList<>(toIndex - fromIndex);
+        for (int i = fromIndex; i < toIndex; i++) {
+            elements.add(get(i));
+        }
+
+        List<T> sorted = new ArrayList<>(elements);
+        sorted.sort(comparator);
+
+        if (!sorted.equals(elements)) {
+            setAll(fromIndex, sorted);
+        }
+    }
+
+    /**
+     * Replaces each element of this list with the result of the specified
+     * operator. The operator is applied in parallel by the common
+     * {@link ForkJoinPool}, i.e., it must be free of side effects. Listeners
+     * are notified with a single event that contains the changed elements.
+     *
+     * @param operator operator to apply to each element
+     */
+    default void parallelReplaceAll(UnaryOperator<T> operator) {
+        parallelReplaceAll(operator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Replaces each element of this list with the result of the specified
+     * operator. The operator is applied in parallel by the specified pool,
+     * i.e., it must be free of side effects. Listeners are notified with a
+     * single event that contains the changed elements.
+     *
+     * The default implementation calls {@link #replaceAll(UnaryOperator)}.
+     *
+     * @param operator operator to apply to each element
+     * @param pool pool that applies the operator
+     */
+    default void parallelReplaceAll(UnaryOperator<T> operator, ForkJoinPool pool) {
+        replaceAll(operator);
+    }
+
+    /**
+     * Removes all elements of this list that satisfy the specified predicate.
+     * The predicate is evaluated in parallel by the common
+     * {@link ForkJoinPool}, i.e., it must be free of side effects. Listeners
+     * are notified with a single event that contains the removed elements.
+     *
+     * @param filter predicate that returns {@code true} for elements to remove
+     * @return {@code true} if any elements were removed; {@code false}
+     * otherwise
+     */
+    default boolean parallelRemoveIf(Predicate<? super T> filter) {
+        return parallelRemoveIf(filter, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Removes all elements of this list that satisfy the specified predicate.
+     * The predicate is evaluated in parallel by the specified pool, i.e., it
+     * must be free of side effects. Listeners are notified with a single
+     * event that contains the removed elements.
+     *
+     * The default implementation calls {@link #removeIf(Predicate)}.
+     *
+     * @param filter predicate that returns {@code true} for elements to remove
+     * @param pool pool that evaluates the predicate
+     * @return {@code true} if any elements were removed; {@code false}
+     * otherwise
+     */
+    default boolean parallelRemoveIf(Predicate<? super T> filter, ForkJoinPool pool) {
+        return removeIf(filter);
+    }
+
+    /**
+     * Sorts this list in parallel by the common {@link ForkJoinPool}. The sort
+     * is stable. Listeners are notified with a single permutation event.
+     *
+     * @param comparator comparator ({@code null} for natural ordering)
+     */
+    default void parallelSort(Comparator<? super T> comparator) {
+        parallelSort(comparator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts this list in parallel by the specified pool. The sort is stable.
+     * Listeners are notified with a single permutation event.
+     *
+     * The default implementation calls {@link #sort(Comparator)}.
+     *
+     * @param comparator comparator ({@code null} for natural ordering)
+     * @param pool pool that sorts the list
+     */
+    default void parallelSort(Comparator<? super T> comparator, ForkJoinPool pool) {
+        sort(comparator);
+    }
+
+    /**
+     * Returns an immutable snapshot of the current contents of this list.
+     * Later modifications of this list are not reflected by the snapshot and
+     * the snapshot is safe to read from any thread. Taking the snapshot
+     * itself is a read of this list, i.e., it must not race with writers of
+     * lists that are not thread-safe.
+     *
+     * The default implementation copies this list. Lists created via
+     * {@link #newPersistentInstance()} take snapshots in constant time.
+     *
+     * @return an immutable snapshot of this list
+     */
+    default List<T> snapshot() {
+        return Collections.unmodifiableList(new ArrayList<>(this));
+    }
+
+    /**
+     * Sets the equality policy of this list. Writes that don't change an
+     * element according to the policy, e.g., {@code set(i, get(i))}, don't
+     * fire change events. The default policy is {@link EqualityPolicy#NONE}.
+     *
+     * @param policy equality policy to set
+     * @throws UnsupportedOperationException if this list doesn't support
+     * equality policies (default)
+     */
+    default void setEqualityPolicy(EqualityPolicy policy) {
+        throw new UnsupportedOperationException(
+                "Equality policies are not supported by this list.");
+    }
+
+    /**
+     * Returns the equality policy of this list. The default implementation
+     * returns {@link EqualityPolicy#NONE}.
+     *
+     * @return the equality policy of this list
+     */
+    default EqualityPolicy getEqualityPolicy() {
+        return EqualityPolicy.NONE;
+    }
+
     /**
      * Sets the event info to be used for event generation.
      * @param evtInfo event info to set
@@ -122,15 +415,24 @@ public interface VList<T> extends List<T>, VListObservable<T> {
  *
  * @author Michael Hoffer <info@michaelhoffer.de>
  */
-final class VListImpl<T> extends AbstractList<T> implements VList<T> {
+class VListImpl<T> extends AbstractList<T> implements VList<T> {
 
-    private final List<T> originalList;
+    /**
+     * Collections with more elements are copied to a hash set before they are
+     * used for element lookup in bulk operations.
+     */
+    private static final int HASH_LOOKUP_THRESHOLD = 16;
+
+    private List<T> originalList;
+    private final Supplier<? extends List<T>> backingSupplier;
 
     private VListChangeSupport<T> listChangeSupport;
     private VListImpl<T> unmodifiableInstance;
 
     private String evtInfo = "";
 
+    private EqualityPolicy equalityPolicy = EqualityPolicy.NONE;
+
     private VListChangeSupport<T> getListChangeSupport() {
 
         if (listChangeSupport == null) {
@@ -154,6 +456,16 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
         }
     }
 
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return this.equalityPolicy;
+    }
+
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        this.equalityPolicy = Objects.requireNonNull(policy);
+    }
+
     private boolean hasListeners() {
         return listChangeSupport != null;
     }
@@ -164,12 +476,37 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
         }
     }
 
-    private VListImpl(List<T> originalList) {
+    private VListImpl(List<T> originalList, Supplier<? extends List<T>> backingSupplier) {
         this.originalList = originalList;
+        this.backingSupplier = backingSupplier;
     }
 
     public static <T> VListImpl<T> newInstance(List<T> list) {
-        return new VListImpl<>(list);
+        return create(list, null);
+    }
+
+    public static <T> VListImpl<T> newInstance(Supplier<? extends List<T>> backingSupplier) {
+        Objects.requireNonNull(backingSupplier);
+        return create(newBackingList(backingSupplier), backingSupplier);
+    }
+
+    private static <T> VListImpl<T> create(List<T> list,
+            Supplier<? extends List<T>> backingSupplier) {
+        // keep the random access marker of the backing list, otherwise
+        // algorithms such as Collections.binarySearch() fall back to iterators
+        if (list instanceof RandomAccess) {
+            return new RandomAccessVListImpl<>(list, backingSupplier);
+        }
+        return new VListImpl<>(list, backingSupplier);
+    }
+
+    private static <T> List<T> newBackingList(Supplier<? extends List<T>> backingSupplier) {
+        List<T> list = Objects.requireNonNull(backingSupplier.get(),
+                "Backing supplier must not return null");
+        if (!list.isEmpty()) {
+            throw new IllegalStateException("Backing supplier must return an empty list");
+        }
+        return list;
     }
 
     @Override
@@ -192,6 +529,19 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
         return listIterator();
     }
 
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        originalList.forEach(action);
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        if (originalList instanceof RandomAccess) {
+            return ListUtil.indexSpliterator(originalList);
+        }
+        return originalList.spliterator();
+    }
+
     @Override
     public Object[] toArray() {
         return originalList.toArray();
@@ -299,56 +649,66 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
             throw new RuntimeException("The number of indices must match the number of elements to add");
         }
 
-        // only sort indices if we have listeners
-        int[] indicesSorted;
-        if(hasListeners()) {
-            indicesSorted = indices.clone();
-            Arrays.sort(indicesSorted);
-        } else {
-            indicesSorted = indices;
+        if (indices.length == 0) {
+            return false;
         }
 
-        Iterator<? extends T> it = c.iterator();
+        // sort index/element pairs by target index
+        List<T> elements = new ArrayList<>(c);
+        int[] permutation = ListUtil.sortingPermutation(indices);
+        int[] indicesSorted = indices;
 
-        boolean changed = indicesSorted.length>0;
-
-        for (int i = indicesSorted.length - 1; i > -1; i--) {
-            originalList.add(indicesSorted[i],it.next());
+        if (permutation != null) {
+            indicesSorted = new int[indices.length];
+            List<T> elementsSorted = new ArrayList<>(elements.size());
+            for (int i = 0; i < permutation.length; i++) {
+                indicesSorted[i] = indices[permutation[i]];
+                elementsSorted.add(elements.get(permutation[i]));
+            }
+            elements = elementsSorted;
         }
 
+        checkIndices(indicesSorted, size() + indicesSorted.length);
+
+        ListUtil.insertAll(originalList, indicesSorted, elements);
+
         if (hasListeners()) {
             _vmf_fireChangeEvent(VListChangeEvent.
-                    getAddedEvent(this, indices, new ArrayList<>(c),getEventInfo()));
+                    getAddedEvent(this, indicesSorted, elements, getEventInfo()));
         }
 
-        return changed;
+        return true;
     }
 
-    @Override
-    @SuppressWarnings("unchecked")
-    public boolean removeAll(Collection<?> c) {
-
-        int[] indices = null;
-
-        if (hasListeners()) {
-            c = c.stream().filter(e -> contains(e)).
-                    collect(Collectors.toList());
-
-            indices = c.stream().mapToInt(e -> indexOf(e)).toArray();
+    /**
+     * Checks that the specified indices are in range and distinct.
+     *
+     * @param indicesSorted sorted indices to check
+     * @param size size of the list the indices refer to
+     */
+    private static void checkIndices(int[] indicesSorted, int size) {
+        for (int i = 0; i < indicesSorted.length; i++) {
+            if (indicesSorted[i] < 0 || indicesSorted[i] >= size) {
+                throw new IndexOutOfBoundsException("Index: " + indicesSorted[i] + ", Size: " + size);
+            }
+            if (i > 0 && indicesSorted[i - 1] == indicesSorted[i]) {
+                throw new IllegalArgumentException("Duplicate index: " + indicesSorted[i]);
+            }
         }
+    }
 
-        boolean result = originalList.removeAll(c);
-
-        if (hasListeners()) {
+    @Override
+    public boolean removeAll(Collection<?> c) {
 
-            _vmf_fireChangeEvent(VListChangeEvent.getRemovedEvent(this, indices,
-                    new ArrayList(c),getEventInfo()
-            ));
+        Objects.requireNonNull(c);
 
+        if (!hasListeners()) {
+            return originalList.removeAll(toLookup(c));
         }
 
-        return result;
+        Collection<?> lookup = toLookup(c);
 
+        return removeMatching(lookup::contains);
     }
 
     @Override
@@ -364,17 +724,28 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
 
         List<T> previousElements = new ArrayList<>(elements.size());
 
+        // only writes that change an element are reported
+        int numChanged = 0;
+        List<T> oldElements = new ArrayList<>();
+        List<T> newElements = new ArrayList<>();
+
         int i = 0;
         while(it.hasNext()) {
-            previousElements.add(originalList.set(indices[i],it.next()));
+            T e = it.next();
+            T previous = originalList.set(indices[i], e);
+            previousElements.add(previous);
+            if (!equalityPolicy.isUnchanged(previous, e)) {
+                indices[numChanged++] = indices[i];
+                oldElements.add(previous);
+                newElements.add(e);
+            }
             i++;
         }
 
-        List<T> oldElements = new ArrayList<>(previousElements);
-
-        if (hasListeners()) {
+        if (hasListeners() && numChanged > 0) {
             _vmf_fireChangeEvent(VListChangeEvent.getSetEvent(
-                    this, indices, oldElements, new ArrayList<T>(elements), getEventInfo()
+                    this, Arrays.copyOf(indices, numChanged),
+                    oldElements, newElements, getEventInfo()
             ));
         }
 
@@ -386,18 +757,22 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
 
         if (indices.length == 0) return true;
 
-        List<T> removedElements = new ArrayList<>(indices.length);
-
         int[] indicesSorted = indices.clone();
 
         Arrays.sort(indicesSorted);
 
-        for (int i = indicesSorted.length - 1; i > -1; i--) {
-            T e = originalList.remove(indicesSorted[i]);
-            removedElements.add(e);
+        checkIndices(indicesSorted, size());
+
+        List<T> removedElements = null;
+
+        if (hasListeners()) {
+            removedElements = new ArrayList<>(indicesSorted.length);
+            for (int i : indicesSorted) {
+                removedElements.add(originalList.get(i));
+            }
         }
 
-        Collections.reverse(removedElements);
+        ListUtil.removeAll(originalList, indicesSorted);
 
         if (hasListeners()) {
             _vmf_fireChangeEvent(VListChangeEvent.getRemovedEvent(
@@ -406,38 +781,79 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
             ));
         }
 
-        return !removedElements.isEmpty();
+        return true;
     }
 
     @Override
     public boolean retainAll(Collection<?> c) {
 
-        int[] indices = null;
-        List<T> elementsToRemove = null;
+        Objects.requireNonNull(c);
 
-        if (hasListeners()) {
-            c = c.stream().filter(e -> contains(e)).collect(Collectors.toList());
+        if (!hasListeners()) {
+            return originalList.retainAll(toLookup(c));
+        }
 
-            List<Integer> indexList = c.stream().map(e -> indexOf(e)).
-                    collect(Collectors.toList());
+        Collection<?> lookup = toLookup(c);
 
-            indices = IntStream.range(0, size()).
-                    filter(i -> !indexList.contains(i)).toArray();
+        return removeMatching(e -> !lookup.contains(e));
+    }
 
-            elementsToRemove = IntStream.of(indices).boxed().
-                    map(i -> get(i)).collect(Collectors.toList());
+    /**
+     * Returns a collection with fast {@code contains()} for the specified
+     * collection. Large collections that are not sets are copied to a hash
+     * set.
+     *
+     * @param c collection
+     * @return a collection with fast {@code contains()}
+     */
+    private static Collection<?> toLookup(Collection<?> c) {
+        if (c instanceof Set || c.size() <= HASH_LOOKUP_THRESHOLD) {
+            return c;
         }
+        return new HashSet<>(c);
+    }
+
+    /**
+     * Removes all elements that match the specified filter. The elements are
+     * tested and removed in one pass each. The fired event contains the exact
+     * indices and elements that were removed.
+     *
+     * @param filter filter
+     * @return {@code true} if this list changed as a result of the call;
+     * {@code false} otherwise
+     */
+    private boolean removeMatching(Predicate<? super T> filter) {
 
-        boolean result = originalList.retainAll(c);
+        int[] indices = new int[16];
+        List<T> removed = new ArrayList<>();
 
-        if (hasListeners()) {
-            _vmf_fireChangeEvent(VListChangeEvent.getRemovedEvent(this, indices,
-                    elementsToRemove,getEventInfo()
-            ));
+        int numRemoved = 0;
+        int index = 0;
+
+        // test all elements first, the list stays unchanged if the filter fails
+        for (T e : originalList) {
+            if (filter.test(e)) {
+                if (numRemoved == indices.length) {
+                    indices = Arrays.copyOf(indices, numRemoved * 2);
+                }
+                indices[numRemoved++] = index;
+                removed.add(e);
+            }
+            index++;
         }
 
-        return result;
+        if (numRemoved == 0) {
+            return false;
+        }
+
+        indices = Arrays.copyOf(indices, numRemoved);
 
+        ListUtil.removeAll(originalList, indices);
+
+        _vmf_fireChangeEvent(VListChangeEvent.
+                getRemovedEvent(this, indices, removed, getEventInfo()));
+
+        return true;
     }
 
     @Override
@@ -448,6 +864,20 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
             return;
         }
 
+        if (backingSupplier != null) {
+            // swap the backing list, the detached list is the event payload
+            List<T> detached = originalList;
+            originalList = newBackingList(backingSupplier);
+
+            if (hasListeners()) {
+                _vmf_fireChangeEvent(new VListChangeEventImpl<>(this,
+                        VListChange.empty(),
+                        VListChange.newRangeInstance(0, Collections.unmodifiableList(detached)),
+                        getEventInfo()));
+            }
+            return;
+        }
+
         List<T> elementsBefore = null;
         int[] indices = null;
 
@@ -475,7 +905,7 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
     public T set(int index, T element) {
         T result = originalList.set(index, element);
 
-        if (hasListeners()) {
+        if (hasListeners() && !equalityPolicy.isUnchanged(result, element)) {
             _vmf_fireChangeEvent(VListChangeEvent.
                     getSetEvent(this,
                             new int[]{index},
@@ -540,7 +970,7 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
 
     @Override
     public List<T> subList(int fromIndex, int toIndex) {
-        return new VSubList<>(super.subList(fromIndex, toIndex));
+        return subListView(fromIndex, toIndex);
     }
 
     @Override
@@ -548,78 +978,437 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
 
         Objects.requireNonNull(filter);
 
-        List<T> removed = null;
-        int[] indices = null;
+        if (!hasListeners()) {
+            return originalList.removeIf(filter);
+        }
 
-        if (hasListeners()) {
-            removed = originalList.stream().filter(filter).
-                    collect(Collectors.toList());
+        return removeMatching(filter);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<T> operator) {
+
+        Objects.requireNonNull(operator);
+
+        if (!hasListeners()) {
+            originalList.replaceAll(operator);
+            return;
+        }
+
+        // compare as we go, only changed elements are reported
+        int[] indices = new int[16];
+        List<T> elementsBefore = new ArrayList<>();
+        List<T> elementsAfter = new ArrayList<>();
+        int numChanged = 0;
+        int index = 0;
 
-            indices = removed.stream().mapToInt(e -> indexOf(e)).toArray();
+        ListIterator<T> it = originalList.listIterator();
+        while (it.hasNext()) {
+            T before = it.next();
+            T after = operator.apply(before);
+            it.set(after);
+            if (!equalityPolicy.isUnchanged(before, after)) {
+                if (numChanged == indices.length) {
+                    indices = Arrays.copyOf(indices, numChanged * 2);
+                }
+                indices[numChanged++] = index;
+                elementsBefore.add(before);
+                elementsAfter.add(after);
+            }
+            index++;
         }
 
-        boolean result = originalList.removeIf(filter);
+        if (numChanged == 0) {
+            return;
+        }
 
-        if (hasListeners()) {
-            _vmf_fireChangeEvent(VListChangeEvent.
-                    getRemovedEvent(this,
-                            indices,
-                            removed,getEventInfo()));
+        _vmf_fireChangeEvent(VListChangeEvent.
+                getSetEvent(this,
+                        Arrays.copyOf(indices, numChanged),
+                        elementsBefore,
+                        elementsAfter, getEventInfo()));
+    }
+
+    @Override
+    public void sort(Comparator<? super T> comparator) {
+
+        if (!hasListeners()) {
+            originalList.sort(comparator);
+            return;
         }
 
-        return result;
+        sortRange(0, size(), comparator);
     }
 
     @Override
-    public void replaceAll(UnaryOperator<T> operator) {
+    @SuppressWarnings("unchecked")
+    public void sortRange(int fromIndex, int toIndex, Comparator<? super T> comparator) {
 
-        List<T> elementsBefore = null;
+        ListUtil.checkRange(fromIndex, toIndex, size());
 
-        if (hasListeners()) {
-            elementsBefore = new ArrayList<>(originalList);
+        if (!hasListeners()) {
+            originalList.subList(fromIndex, toIndex).sort(comparator);
+            return;
+        }
+
+        if (comparator == null) {
+            comparator = (Comparator<? super T>) Comparator.naturalOrder();
+        }
+
+        // sort an index array and fire the resulting permutation
+        T[] elements = (T[]) originalList.subList(fromIndex, toIndex).toArray();
+        int[] order = ListUtil.sortedOrder(elements, comparator);
+
+        int[] permutation = new int[order.length];
+        boolean changed = false;
+        for (int i = 0; i < order.length; i++) {
+            permutation[order[i]] = i;
+            changed |= order[i] != i;
+        }
+
+        if (!changed) {
+            return;
+        }
+
+        // equal elements may swap places without changing the list
+        boolean reported = false;
+        for (int i = 0; i < order.length && !reported; i++) {
+            reported = !equalityPolicy.isUnchanged(elements[i], elements[order[i]]);
+        }
+
+        ListIterator<T> it = originalList.listIterator(fromIndex);
+        for (int i : order) {
+            it.next();
+            it.set(elements[i]);
+        }
+
+        if (!reported) {
+            return;
+        }
+
+        _vmf_fireChangeEvent(new VListPermutationEventImpl<>(this, fromIndex, size(),
+                permutation, Arrays.asList(elements), getEventInfo()));
+    }
+
+    // Parallel bulk operations read the backing list into an array, process
+    // the array in parallel and write the result back in one pass.
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void parallelReplaceAll(UnaryOperator<T> operator, ForkJoinPool pool) {
+
+        Objects.requireNonNull(operator);
+        Objects.requireNonNull(pool);
+
+        Object[] before = originalList.toArray();
+        Object[] after = new Object[before.length];
+        boolean[] changed = hasListeners() ? new boolean[before.length] : null;
+        EqualityPolicy policy = equalityPolicy;
+
+        ListUtil.parallelFor(pool, before.length, ListUtil.PARALLEL_THRESHOLD, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                after[i] = operator.apply((T) before[i]);
+                if (changed != null) {
+                    changed[i] = !policy.isUnchanged(before[i], after[i]);
+                }
+            }
+        });
+
+        ListIterator<T> it = originalList.listIterator();
+        for (Object e : after) {
+            it.next();
+            it.set((T) e);
+        }
+
+        if (changed == null) {
+            return;
+        }
+
+        int[] indices = ListUtil.parallelIndices(pool, changed);
+
+        if (indices.length == 0) {
+            return;
         }
-        originalList.replaceAll(operator);
+
+        _vmf_fireChangeEvent(VListChangeEvent.
+                getSetEvent(this, indices,
+                        (List<T>) Arrays.asList(ListUtil.parallelGather(pool, before, indices)),
+                        (List<T>) Arrays.asList(ListUtil.parallelGather(pool, after, indices)),
+                        getEventInfo()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean parallelRemoveIf(Predicate<? super T> filter, ForkJoinPool pool) {
+
+        Objects.requireNonNull(filter);
+        Objects.requireNonNull(pool);
+
+        Object[] elements = originalList.toArray();
+        boolean[] matching = new boolean[elements.length];
+
+        ListUtil.parallelFor(pool, elements.length, ListUtil.PARALLEL_THRESHOLD, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                matching[i] = filter.test((T) elements[i]);
+            }
+        });
+
+        int[] indices = ListUtil.parallelIndices(pool, matching);
+
+        if (indices.length == 0) {
+            return false;
+        }
+
+        ListUtil.removeAll(originalList, indices);
 
         if (hasListeners()) {
-            int[] indices = IntStream.range(0, size()).toArray();
             _vmf_fireChangeEvent(VListChangeEvent.
-                    getSetEvent(this,
-                            indices,
-                            new ArrayList<T>(elementsBefore),
-                            new ArrayList<T>(originalList),getEventInfo()));
+                    getRemovedEvent(this, indices,
+                            (List<T>) Arrays.asList(ListUtil.parallelGather(pool, elements, indices)),
+                            getEventInfo()));
         }
+
+        return true;
     }
 
     @Override
-    public void sort(Comparator<? super T> comparator) {
+    @SuppressWarnings("unchecked")
+    public void parallelSort(Comparator<? super T> comparator, ForkJoinPool pool) {
 
-        if (hasListeners()) {
-            List<Integer> indicesList = new ArrayList<>();
-            List<T> changesRemoved = new ArrayList<>();
-            List<T> changesAdded = new ArrayList<>();
-            List<T> beforeSort = new ArrayList<>(originalList);
+        Objects.requireNonNull(pool);
 
-            originalList.sort(comparator);
+        if (comparator == null) {
+            comparator = (Comparator<? super T>) Comparator.naturalOrder();
+        }
+
+        T[] elements = (T[]) originalList.toArray();
+        int[] order = ListUtil.parallelSortedOrder(elements, comparator, pool);
 
-            // generate change set
-            for (int i = 0; i < size(); i++) {
-                if (!Objects.equals(beforeSort.get(i), originalList.get(i))) {
-                    indicesList.add(i);
-                    changesRemoved.add(beforeSort.get(i));
-                    changesAdded.add(originalList.get(i));
+        int[] permutation = new int[order.length];
+        AtomicBoolean changed = new AtomicBoolean();
+        AtomicBoolean reported = new AtomicBoolean();
+        EqualityPolicy policy = equalityPolicy;
+
+        ListUtil.parallelFor(pool, order.length, ListUtil.PARALLEL_THRESHOLD, (from, to) -> {
+            boolean moved = false;
+            boolean visible = false;
+            for (int i = from; i < to; i++) {
+                permutation[order[i]] = i;
+                if (order[i] != i) {
+                    moved = true;
+                    // equal elements may swap places without changing the list
+                    visible |= !policy.isUnchanged(elements[i], elements[order[i]]);
                 }
             }
+            if (moved) {
+                changed.set(true);
+            }
+            if (visible) {
+                reported.set(true);
+            }
+        });
 
-            // fire event
-            if (!changesAdded.isEmpty()) {
-                int[] indices = indicesList.stream().mapToInt(i -> i).toArray();
-                _vmf_fireChangeEvent(VListChangeEvent.getSetEvent(
-                        this, indices,
-                        changesRemoved,
-                        changesAdded,getEventInfo()));
+        if (!changed.get()) {
+            return;
+        }
+
+        ListIterator<T> it = originalList.listIterator();
+        for (int i : order) {
+            it.next();
+            it.set(elements[i]);
+        }
+
+        if (!reported.get() || !hasListeners()) {
+            return;
+        }
+
+        _vmf_fireChangeEvent(VListChangeEvent.getPermutationEvent(
+                this, permutation, Arrays.asList(elements), getEventInfo()));
+    }
+
+    @Override
+    public boolean setContents(List<? extends T> elements) {
+        return notify(applyContents(elements));
+    }
+
+    @Override
+    public boolean setRangeContents(int fromIndex, int toIndex, List<? extends T> elements) {
+        return notify(applyContents(fromIndex, toIndex, elements));
+    }
+
+    private static boolean notify(Runnable notification) {
+        if (notification == null) {
+            return false;
+        }
+
+        notification.run();
+
+        return true;
+    }
+
+    /**
+     * Replaces the contents of this list like {@link #setContents(List)} but
+     * leaves the notification of the listeners to the caller, e.g., to notify
+     * them after several collections have been changed.
+     *
+     * @param elements new contents
+     * @return an action that notifies the listeners or {@code null} if the
+     * contents didn't change
+     */
+    Runnable applyContents(List<? extends T> elements) {
+
+        Objects.requireNonNull(elements);
+
+        if (!hasListeners()) {
+            if (originalList.equals(elements)) {
+                return null;
             }
-        } else {
-            originalList.sort(comparator);
+            List<T> copy = new ArrayList<>(elements);
+            originalList.clear();
+            originalList.addAll(copy);
+            return () -> {};
+        }
+
+        return applyContents(0, size(), elements);
+    }
+
+    /**
+     * Replaces the elements at the specified indices and appends the specified
+     * elements. Leaves the notification of the listeners to the caller. All
+     * changes are reported by one event, replaced elements that are unchanged
+     * according to the equality policy are not reported.
+     *
+     * @param indices indices of the elements to replace (ascending, no
+     * duplicates)
+     * @param values new values of the elements to replace
+     * @param appended elements to append
+     * @return an action that notifies the listeners or {@code null} if there
+     * is nothing to report
+     */
+    Runnable applyUpdates(int[] indices, List<? extends T> values, List<? extends T> appended) {
+
+        if (!hasListeners()) {
+            for (int i = 0; i < indices.length; i++) {
+                originalList.set(indices[i], values.get(i));
+            }
+            originalList.addAll(appended);
+            return null;
+        }
+
+        int size = originalList.size();
+
+        int numChanged = 0;
+        int[] changedIndices = new int[indices.length];
+        List<T> removed = new ArrayList<>(indices.length);
+        List<T> added = new ArrayList<>(indices.length + appended.size());
+
+        for (int i = 0; i < indices.length; i++) {
+            T value = values.get(i);
+            T previous = originalList.set(indices[i], value);
+            if (!equalityPolicy.isUnchanged(previous, value)) {
+                changedIndices[numChanged++] = indices[i];
+                removed.add(previous);
+                added.add(value);
+            }
+        }
+
+        originalList.addAll(appended);
+        added.addAll(appended);
+
+        if (added.isEmpty()) {
+            return null;
+        }
+
+        int[] addedIndices = Arrays.copyOf(changedIndices, numChanged + appended.size());
+        for (int i = 0; i < appended.size(); i++) {
+            addedIndices[numChanged + i] = size + i;
+        }
+
+        VListChangeEvent<T> evt = new VListChangeEventImpl<>(this,
+                VListChange.newInstance(addedIndices, added),
+                removed.isEmpty() ? VListChange.empty()
+                : VListChange.newInstance(Arrays.copyOf(changedIndices, numChanged), removed),
+                getEventInfo());
+
+        return () -> _vmf_fireChangeEvent(evt);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Runnable applyContents(int fromIndex, int toIndex, List<? extends T> elements) {
+
+        Objects.requireNonNull(elements);
+        ListUtil.checkRange(fromIndex, toIndex, size());
+
+        List<T> range = originalList.subList(fromIndex, toIndex);
+
+        if (!hasListeners()) {
+            if (range.equals(elements)) {
+                return null;
+            }
+            List<T> copy = new ArrayList<>(elements);
+            range.clear();
+            range.addAll(copy);
+            return () -> {};
+        }
+
+        Object[] elementsAfter = elements.toArray();
+
+        ListDiff diff = ListDiff.compute(range, Arrays.asList(elementsAfter));
+
+        if (diff.isEmpty()) {
+            return null;
+        }
+
+        int[] removedIndices = diff.removedIndices();
+        int[] addedIndices = diff.addedIndices();
+
+        List<T> removed = new ArrayList<>(removedIndices.length);
+        for (int i : removedIndices) {
+            removed.add(range.get(i));
+        }
+
+        List<T> added = new ArrayList<>(addedIndices.length);
+        for (int i : addedIndices) {
+            added.add((T) elementsAfter[i]);
+        }
+
+        removedIndices = ListDiff.shift(removedIndices, fromIndex);
+        addedIndices = ListDiff.shift(addedIndices, fromIndex);
+
+        ListUtil.removeAll(originalList, removedIndices);
+        ListUtil.insertAll(originalList, addedIndices, added);
+
+        VListChangeEvent<T> evt = new VListChangeEventImpl<>(this,
+                added.isEmpty() ? VListChange.empty()
+                : VListChange.newInstance(addedIndices, added),
+                removed.isEmpty() ? VListChange.empty()
+                : VListChange.newInstance(removedIndices, removed),
+                getEventInfo());
+
+        return () -> _vmf_fireChangeEvent(evt);
+    }
+
+    @Override
+    public void moveRange(int from, int count, int to) {
+
+        ListUtil.checkMove(from, count, to, size());
+
+        if (count == 0 || from == to) {
+            return;
+        }
+
+        List<T> rangeBefore = null;
+
+        if (hasListeners()) {
+            rangeBefore = new ArrayList<>(originalList.subList(
+                    Math.min(from, to), Math.max(from, to) + count));
+        }
+
+        ListUtil.moveRange(originalList, from, count, to);
+
+        if (hasListeners()) {
+            _vmf_fireChangeEvent(VListChangeEvent.getMoveEvent(
+                    this, from, count, to, rangeBefore, getEventInfo()));
         }
     }
 
@@ -639,10 +1428,20 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
         return result;
     }
 
+    @Override
+    public List<T> snapshot() {
+        if (originalList instanceof TransientVector) {
+            return ((TransientVector<T>) originalList).snapshot();
+        }
+        return VList.super.snapshot();
+    }
+
     @Override
     public VList<T> asUnmodifiable() {
         if(unmodifiableInstance==null) {
-            unmodifiableInstance = new VListImpl<>(Collections.unmodifiableList(originalList));
+            // the backing list of a swapping list may be replaced, read through this list
+            unmodifiableInstance = create(Collections.unmodifiableList(
+                    backingSupplier == null ? originalList : this), null);
             
             syncLists(this, unmodifiableInstance);
         }
@@ -671,6 +1470,20 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
 //
 //        return result;
 //    }
+    /**
+     * List with a random access backing list.
+     *
+     * @param <T> element type
+     */
+    private static final class RandomAccessVListImpl<T> extends VListImpl<T>
+            implements RandomAccess {
+
+        private RandomAccessVListImpl(List<T> originalList,
+                Supplier<? extends List<T>> backingSupplier) {
+            super(originalList, backingSupplier);
+        }
+    }
+
     private static class VListIterator<V> implements ListIterator<V> {
 
         private final VListImpl<V> parent;
@@ -733,7 +1546,9 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
 
             originalIterator.set(e);
 
-            if (parent.hasListeners()) {
+            if (parent.hasListeners()
+                    && !(elementBefore.size() == 1
+                    && parent.equalityPolicy.isUnchanged(lastElement, e))) {
                 parent._vmf_fireChangeEvent(
                         VListChangeEvent.getSetEvent(
                                 parent,
@@ -775,131 +1590,6 @@ final class VListImpl<T> extends AbstractList<T> implements VList<T> {
 
     ;
 
-    private static class VSubList<T> implements List<T> {
-
-        private final List<T> parent;
-
-        public VSubList(List<T> parent) {
-            this.parent = parent;
-        }
-
-        @Override
-        public int size() {
-            return parent.size();
-        }
-
-        @Override
-        public boolean isEmpty() {
-            return parent.isEmpty();
-        }
-
-        @Override
-        public boolean contains(Object o) {
-            return parent.contains(o);
-        }
-
-        @Override
-        public Iterator<T> iterator() {
-            return parent.iterator();
-        }
-
-        @Override
-        public Object[] toArray() {
-            return parent.toArray();
-        }
-
-        @Override
-        public <T> T[] toArray(T[] a) {
-            return parent.toArray(a);
-        }
-
-        @Override
-        public boolean add(T e) {
-            return parent.add(e);
-        }
-
-        @Override
-        public boolean remove(Object o) {
-            return parent.remove(o);
-        }
-
-        @Override
-        public boolean containsAll(Collection<?> c) {
-            return parent.containsAll(c);
-        }
-
-        @Override
-        public boolean addAll(Collection<? extends T> c) {
-            return parent.addAll(c);
-        }
-
-        @Override
-        public boolean addAll(int index, Collection<? extends T> c) {
-            return parent.addAll(index, c);
-        }
-
-        @Override
-        public boolean removeAll(Collection<?> c) {
-            return parent.removeAll(c);
-        }
-
-        @Override
-        public boolean retainAll(Collection<?> c) {
-            return parent.retainAll(c);
-        }
-
-        @Override
-        public void clear() {
-            parent.clear();
-        }
-
-        @Override
-        public T get(int index) {
-            return parent.get(index);
-        }
-
-        @Override
-        public T set(int index, T element) {
-            return parent.set(index, element);
-        }
-
-        @Override
-        public void add(int index, T element) {
-            parent.add(index, element);
-        }
-
-        @Override
-        public T remove(int index) {
-            return parent.remove(index);
-        }
-
-        @Override
-        public int indexOf(Object o) {
-            return parent.indexOf(o);
-        }
-
-        @Override
-        public int lastIndexOf(Object o) {
-            return parent.lastIndexOf(o);
-        }
-
-        @Override
-        public ListIterator<T> listIterator() {
-            return parent.listIterator();
-        }
-
-        @Override
-        public ListIterator<T> listIterator(int index) {
-            return parent.listIterator(index);
-        }
-
-        @Override
-        public List<T> subList(int fromIndex, int toIndex) {
-            return new VSubList<>(parent.subList(fromIndex, toIndex));
-        }
-
-    }
-
     @Override
     public boolean equals(Object o) {
         return originalList.equals(o);
@@ -74,6 +74,20 @@ public interface VListChange<T> extends ListChange<T>{
         return new VListChangeImpl<>(indices, elements);
     }
 
+    /**
+     * Creates a new list change for elements with contiguous indices starting
+     * at the specified index. The index array is only created if requested.
+     *
+     * @param <V> element type
+     * @param fromIndex index of the first changed element
+     * @param elements changed elements
+     * @return new list change object
+     */
+    static <V> VListChange<V> newRangeInstance(int fromIndex, List<V> elements) {
+        Objects.requireNonNull(elements);
+        return new VListRangeChangeImpl<>(fromIndex, elements);
+    }
+
     /**
      * Creates an empty list change object.
      *
@@ -127,3 +141,45 @@ class VListChangeImpl<T> implements VListChange<T> {
     }
 
 }
+
+/**
+ * List change of elements with contiguous indices. The index array is created
+ * on demand.
+ *
+ * @param <T> element type
+ *
+ * @author Michael Hoffer (info@michaelhoffer.de)
+ */
+class VListRangeChangeImpl<T> implements VListChange<T> {
+
+    private final int fromIndex;
+    private final List<T> elements;
+    private int[] indices;
+
+    VListRangeChangeImpl(int fromIndex, List<T> elements) {
+        this.fromIndex = fromIndex;
+        this.elements = elements;
+    }
+
+    @Override
+    public int[] indices() {
+        if (indices == null) {
+            int[] result = new int[elements.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = fromIndex + i;
+            }
+            indices = result;
+        }
+        return indices;
+    }
+
+    @Override
+    public List<T> elements() {
+        return elements;
+    }
+
+    @Override
+    public boolean hasChanges() {
+        return !elements.isEmpty();
+    }
+}
@@ -34,7 +34,10 @@
  */
 package eu.mihosoft.vcollections;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import vjavax.observer.collection.CollectionChangeEvent;
 
 /**
@@ -77,6 +80,94 @@ public interface VListChangeEvent<T> extends CollectionChangeEvent<T, VList<T>,
     @Override
     boolean wasSet();
 
+    /**
+     * Indicates whether this event describes a permutation of the elements,
+     * e.g., caused by sorting the list. For permutation events
+     * {@link #permutation()} contains the new index of each element.
+     * {@link #added()} and {@link #removed()} contain the elements whose
+     * value changed at each index. They are only computed if requested.
+     *
+     * @return {@code true} if this event describes a permutation;
+     * {@code false} otherwise
+     */
+    default boolean wasPermutated() {
+        return false;
+    }
+
+    /**
+     * Returns the permutation described by this event. The element located at
+     * index {@code i} before the change is located at index
+     * {@code permutation()[i]} after the change.
+     *
+     * @return the permutation described by this event or an empty array if
+     * this event does not describe a permutation
+     */
+    default int[] permutation() {
+        return new int[0];
+    }
+
+    /**
+     * Indicates whether this event describes a move of a contiguous range of
+     * elements, e.g., caused by {@link VList#moveRange(int, int, int)}. Move
+     * events are permutation events. Only the elements between
+     * {@code min(moveFrom(), moveTo())} and
+     * {@code max(moveFrom(), moveTo()) + moveCount()} change their index,
+     * listeners can use {@link #moveFrom()}, {@link #moveTo()} and
+     * {@link #moveCount()} instead of {@link #permutation()} to update
+     * derived state in time proportional to the move distance.
+     *
+     * @return {@code true} if this event describes a move;
+     * {@code false} otherwise
+     */
+    default boolean wasMoved() {
+        return false;
+    }
+
+    /**
+     * Returns the index of the first moved element before the change.
+     *
+     * @return the index of the first moved element before the change or
+     * {@code -1} if this event does not describe a move
+     */
+    default int moveFrom() {
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first moved element after the change.
+     *
+     * @return the index of the first moved element after the change or
+     * {@code -1} if this event does not describe a move
+     */
+    default int moveTo() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of moved elements.
+     *
+     * @return the number of moved elements or {@code 0} if this event does not
+     * describe a move
+     */
+    default int moveCount() {
+        return 0;
+    }
+
+    /**
+     * Returns the sequence number of this event. Lists that notify listeners
+     * from several threads (see {@link ConcurrentVList}) number their events
+     * in the order in which the changes were applied. Listeners can use the
+     * sequence number to order events that are delivered concurrently.
+     * Lists that publish versions (see {@link SingleWriterVList}) use the
+     * number of the version that contains the change.
+     *
+     * @return the sequence number of this event or {@code -1} if this event
+     * is not numbered
+     */
+    default long sequenceNumber() {
+        return -1;
+    }
+
     /**
      * Returns the change that contains all elements that were added during this
      * event.
@@ -224,6 +315,64 @@ public interface VListChangeEvent<T> extends CollectionChangeEvent<T, VList<T>,
                 VListChange.newInstance(indices, elementsRemoved), evtInfo);
     }
 
+    /**
+     * Returns an event that describes a permutation of the elements of the
+     * specified list, e.g., caused by a 'sort(..)' operation.
+     *
+     * @param <V> element type
+     * @param source source list
+     * @param permutation the new index of each element, i.e., the element at
+     * index {@code i} is located at index {@code permutation[i]} after the
+     * change
+     * @param elementsBefore the elements in their order before the change
+     * (not copied, must not be modified)
+     * @return an event that describes the specified permutation
+     */
+    static <V> VListChangeEvent<V> getPermutationEvent(VList<V> source,
+            int[] permutation, List<V> elementsBefore) {
+        return new VListPermutationEventImpl<>(source, permutation, elementsBefore, "");
+    }
+
+    /**
+     * Returns an event that describes a permutation of the elements of the
+     * specified list, e.g., caused by a 'sort(..)' operation.
+     *
+     * @param <V> element type
+     * @param source source list
+     * @param permutation the new index of each element, i.e., the element at
+     * index {@code i} is located at index {@code permutation[i]} after the
+     * change
+     * @param elementsBefore the elements in their order before the change
+     * (not copied, must not be modified)
+     * @param evtInfo event info (to be used by subscribers)
+     * @return an event that describes the specified permutation
+     */
+    static <V> VListChangeEvent<V> getPermutationEvent(VList<V> source,
+            int[] permutation, List<V> elementsBefore, String evtInfo) {
+        return new VListPermutationEventImpl<>(source, permutation, elementsBefore, evtInfo);
+    }
+
+    /**
+     * Returns an event that describes a move of the elements from
+     * {@code from} to {@code from+count-1} to the indices {@code to} to
+     * {@code to+count-1}, e.g., caused by a 'moveRange(..)' operation.
+     *
+     * @param <V> element type
+     * @param source source list
+     * @param from index of the first moved element before the change
+     * @param count number of moved elements
+     * @param to index of the first moved element after the change
+     * @param rangeBefore the elements from {@code min(from, to)} to
+     * {@code max(from, to)+count-1} in their order before the change (not
+     * copied, must not be modified)
+     * @param evtInfo event info (to be used by subscribers)
+     * @return an event that describes the specified move
+     */
+    static <V> VListChangeEvent<V> getMoveEvent(VList<V> source,
+            int from, int count, int to, List<V> rangeBefore, String evtInfo) {
+        return new VListMoveEventImpl<>(source, from, count, to, rangeBefore, evtInfo);
+    }
+
     /**
      * Returns a detailed string representation of this object, including
      * added and removedelements.
@@ -272,17 +421,17 @@ class VListChangeEventImpl<T> implements VListChangeEvent<T> {
 
     @Override
     public boolean wasAdded() {
-        return added.hasChanges();
+        return added().hasChanges();
     }
 
     @Override
     public boolean wasRemoved() {
-        return removed.hasChanges();
+        return removed().hasChanges();
     }
 
     @Override
     public boolean wasSet() {
-        return added.hasChanges() && removed.hasChanges();
+        return added().hasChanges() && removed().hasChanges();
     }
 
     @Override
@@ -317,6 +466,11 @@ class VListChangeEventImpl<T> implements VListChangeEvent<T> {
         sb.append("event: [#removed: ").append(numRemoved).append(", #added: ").
                 append(numAdded).append("]\n");
 
+        if (wasPermutated()) {
+            sb.append("permutation      = ").
+                    append(Arrays.toString(permutation())).append("\n");
+        }
+
         sb.append("removed-indices  = [");
         for (int i = 0; i < numRemoved; i++) {
             if (i > 0) {
@@ -357,3 +511,415 @@ class VListChangeEventImpl<T> implements VListChangeEvent<T> {
     }
 
 }
+
+/**
+ * Permutation event. The set-changes are computed lazily from the permutation
+ * and the elements before the change. The permutation may be restricted to a
+ * range of the list, e.g., caused by sorting a sublist. The elements outside
+ * of the range keep their positions.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class VListPermutationEventImpl<T> extends VListChangeEventImpl<T> {
+
+    private final int offset;
+    private final int size;
+    private final int[] rangePermutation;
+    private final List<T> rangeBefore;
+
+    private int[] permutation;
+    private VListChange<T> added;
+    private VListChange<T> removed;
+
+    VListPermutationEventImpl(VList<T> source, int[] permutation,
+            List<T> elementsBefore, String evtInfo) {
+        this(source, 0, permutation.length, permutation, elementsBefore, evtInfo);
+    }
+
+    /**
+     * Creates a permutation event of the specified range.
+     *
+     * @param source source list
+     * @param offset index of the first element of the range
+     * @param size size of the source list
+     * @param rangePermutation the new index of each element of the range,
+     * relative to the range
+     * @param rangeBefore the elements of the range in their order before the
+     * change (not copied, must not be modified)
+     * @param evtInfo event info
+     */
+    VListPermutationEventImpl(VList<T> source, int offset, int size,
+            int[] rangePermutation, List<T> rangeBefore, String evtInfo) {
+        super(source, null, null, evtInfo);
+        this.offset = offset;
+        this.size = size;
+        this.rangePermutation = rangePermutation;
+        this.rangeBefore = rangeBefore;
+    }
+
+    /**
+     * Returns the index of the first element of the permutated range.
+     *
+     * @return the index of the first element of the permutated range
+     */
+    int offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the size of the source list.
+     *
+     * @return the size of the source list
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the new index of each element of the permutated range, relative
+     * to the range.
+     *
+     * @return the permutation of the range
+     */
+    int[] rangePermutation() {
+        return rangePermutation;
+    }
+
+    /**
+     * Returns the elements of the permutated range in their order before the
+     * change.
+     *
+     * @return the elements of the permutated range in their order before the
+     * change
+     */
+    List<T> rangeBefore() {
+        return rangeBefore;
+    }
+
+    @Override
+    public boolean wasPermutated() {
+        return true;
+    }
+
+    @Override
+    public int[] permutation() {
+
+        if (permutation == null) {
+            if (offset == 0 && size == rangePermutation.length) {
+                permutation = rangePermutation;
+            } else {
+                int[] result = new int[size];
+                for (int i = 0; i < size; i++) {
+                    result[i] = i;
+                }
+                for (int i = 0; i < rangePermutation.length; i++) {
+                    result[offset + i] = offset + rangePermutation[i];
+                }
+                permutation = result;
+            }
+        }
+
+        return permutation;
+    }
+
+    @Override
+    public VListChange<T> added() {
+        computeChanges();
+        return added;
+    }
+
+    @Override
+    public VListChange<T> removed() {
+        computeChanges();
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void computeChanges() {
+
+        if (added != null) {
+            return;
+        }
+
+        int n = rangePermutation.length;
+
+        Object[] rangeAfter = new Object[n];
+        for (int i = 0; i < n; i++) {
+            rangeAfter[rangePermutation[i]] = rangeBefore.get(i);
+        }
+
+        int[] indices = new int[n];
+        int numChanged = 0;
+        for (int i = 0; i < n; i++) {
+            if (!Objects.equals(rangeBefore.get(i), rangeAfter[i])) {
+                indices[numChanged++] = i;
+            }
+        }
+
+        if (numChanged == 0) {
+            added = VListChange.empty();
+            removed = VListChange.empty();
+            return;
+        }
+
+        indices = Arrays.copyOf(indices, numChanged);
+
+        List<T> elementsRemoved = new ArrayList<>(numChanged);
+        List<T> elementsAdded = new ArrayList<>(numChanged);
+        for (int k = 0; k < numChanged; k++) {
+            int i = indices[k];
+            elementsRemoved.add(rangeBefore.get(i));
+            elementsAdded.add((T) rangeAfter[i]);
+            indices[k] = offset + i;
+        }
+
+        removed = VListChange.newInstance(indices, elementsRemoved);
+        added = VListChange.newInstance(indices, elementsAdded);
+    }
+}
+
+/**
+ * Move event. The permutation and the set-changes are computed lazily, the
+ * set-changes only depend on the elements in the affected range.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class VListMoveEventImpl<T> extends VListChangeEventImpl<T> {
+
+    private final int from;
+    private final int count;
+    private final int to;
+    private final int size;
+    private final List<T> rangeBefore;
+
+    private int[] permutation;
+    private VListChange<T> added;
+    private VListChange<T> removed;
+
+    VListMoveEventImpl(VList<T> source, int from, int count, int to,
+            List<T> rangeBefore, String evtInfo) {
+        super(source, null, null, evtInfo);
+        this.from = from;
+        this.count = count;
+        this.to = to;
+        this.size = source.size();
+        this.rangeBefore = rangeBefore;
+    }
+
+    /**
+     * Returns the elements of the affected range in their order before the
+     * change.
+     *
+     * @return the elements of the affected range in their order before the
+     * change
+     */
+    List<T> rangeBefore() {
+        return rangeBefore;
+    }
+
+    @Override
+    public boolean wasPermutated() {
+        return true;
+    }
+
+    @Override
+    public boolean wasMoved() {
+        return true;
+    }
+
+    @Override
+    public int moveFrom() {
+        return from;
+    }
+
+    @Override
+    public int moveTo() {
+        return to;
+    }
+
+    @Override
+    public int moveCount() {
+        return count;
+    }
+
+    /**
+     * Returns the position after the change of the element located at the
+     * specified position of the affected range before the change.
+     *
+     * @param i position in the affected range
+     * @return the position in the affected range after the change
+     */
+    private int target(int i) {
+        int length = rangeBefore.size();
+        int shift = to < from ? count : length - count;
+        return (i + shift) % length;
+    }
+
+    @Override
+    public int[] permutation() {
+
+        if (permutation == null) {
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = i;
+            }
+            int lo = Math.min(from, to);
+            for (int i = 0; i < rangeBefore.size(); i++) {
+                result[lo + i] = lo + target(i);
+            }
+            permutation = result;
+        }
+
+        return permutation;
+    }
+
+    @Override
+    public VListChange<T> added() {
+        computeChanges();
+        return added;
+    }
+
+    @Override
+    public VListChange<T> removed() {
+        computeChanges();
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void computeChanges() {
+
+        if (added != null) {
+            return;
+        }
+
+        int length = rangeBefore.size();
+        int lo = Math.min(from, to);
+
+        Object[] rangeAfter = new Object[length];
+        for (int i = 0; i < length; i++) {
+            rangeAfter[target(i)] = rangeBefore.get(i);
+        }
+
+        int[] indices = new int[length];
+        List<T> elementsRemoved = new ArrayList<>();
+        List<T> elementsAdded = new ArrayList<>();
+        int numChanged = 0;
+        for (int i = 0; i < length; i++) {
+            if (!Objects.equals(rangeBefore.get(i), rangeAfter[i])) {
+                indices[numChanged++] = lo + i;
+                elementsRemoved.add(rangeBefore.get(i));
+                elementsAdded.add((T) rangeAfter[i]);
+            }
+        }
+
+        if (numChanged == 0) {
+            added = VListChange.empty();
+            removed = VListChange.empty();
+            return;
+        }
+
+        indices = Arrays.copyOf(indices, numChanged);
+
+        removed = VListChange.newInstance(indices, elementsRemoved);
+        added = VListChange.newInstance(indices, elementsAdded);
+    }
+}
+
+/**
+ * Numbered event. Forwards an event of another list with a different source
+ * and a sequence number.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class VListSequencedEventImpl<T> implements VListChangeEvent<T> {
+
+    private final VList<T> source;
+    private final VListChangeEvent<T> evt;
+    private final long sequenceNumber;
+
+    VListSequencedEventImpl(VList<T> source, VListChangeEvent<T> evt, long sequenceNumber) {
+        this.source = source;
+        this.evt = evt;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    @Override
+    public long sequenceNumber() {
+        return sequenceNumber;
+    }
+
+    @Override
+    public VList<T> source() {
+        return source;
+    }
+
+    @Override
+    public String eventInfo() {
+        return evt.eventInfo();
+    }
+
+    @Override
+    public boolean wasAdded() {
+        return evt.wasAdded();
+    }
+
+    @Override
+    public boolean wasRemoved() {
+        return evt.wasRemoved();
+    }
+
+    @Override
+    public boolean wasSet() {
+        return evt.wasSet();
+    }
+
+    @Override
+    public boolean wasPermutated() {
+        return evt.wasPermutated();
+    }
+
+    @Override
+    public int[] permutation() {
+        return evt.permutation();
+    }
+
+    @Override
+    public boolean wasMoved() {
+        return evt.wasMoved();
+    }
+
+    @Override
+    public int moveFrom() {
+        return evt.moveFrom();
+    }
+
+    @Override
+    public int moveTo() {
+        return evt.moveTo();
+    }
+
+    @Override
+    public int moveCount() {
+        return evt.moveCount();
+    }
+
+    @Override
+    public VListChange<T> added() {
+        return evt.added();
+    }
+
+    @Override
+    public VListChange<T> removed() {
+        return evt.removed();
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequenceNumber + " " + evt.toString();
+    }
+
+    @Override
+    public String toStringWithDetails() {
+        return "#" + sequenceNumber + " " + evt.toStringWithDetails();
+    }
+}
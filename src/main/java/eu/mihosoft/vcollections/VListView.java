@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import vjavax.observer.Subscription;
+import vjavax.observer.collection.CollectionChangeEvent;
+import vjavax.observer.collection.CollectionChangeListener;
+
+/**
+ * Base class for read-only list views that are derived from other observable
+ * collections. Subclasses maintain their own state and fire change events via
+ * {@link #fireChangeEvent(VListChangeEvent)}. All modifying operations throw
+ * an {@link UnsupportedOperationException} unless overridden.
+ *
+ * @param <T> element type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+abstract class VListView<T> extends AbstractList<T> implements VList<T> {
+
+    private VListChangeSupport<T> listChangeSupport;
+
+    private String evtInfo = "";
+    private EqualityPolicy equalityPolicy = EqualityPolicy.NONE;
+
+    private VListChangeSupport<T> getListChangeSupport() {
+
+        if (listChangeSupport == null) {
+            listChangeSupport = new VListChangeSupport<>();
+        }
+
+        return listChangeSupport;
+    }
+
+    /**
+     * Indicates whether this view has listeners.
+     *
+     * @return {@code true} if this view has listeners; {@code false} otherwise
+     */
+    boolean hasListeners() {
+        return listChangeSupport != null && listChangeSupport.hasListeners();
+    }
+
+    /**
+     * Fires the specified event if this view has listeners.
+     *
+     * @param evt event to fire
+     */
+    void fireChangeEvent(VListChangeEvent<T> evt) {
+        if (hasListeners()) {
+            listChangeSupport.fireEvent(evt);
+        }
+    }
+
+    /**
+     * Fires the specified event with all indices shifted by the specified
+     * offset. The elements of the specified event are not copied. Moves and
+     * permutations are forwarded as moves and permutations.
+     *
+     * @param evt event to fire
+     * @param offset offset to add to the indices of the specified event
+     */
+    void fireShiftedChangeEvent(CollectionChangeEvent<T, VList<T>, VListChange<T>> evt, int offset) {
+
+        if (!hasListeners()) {
+            return;
+        }
+
+        if (evt instanceof VListMoveEventImpl) {
+            // moves stay moves, the affected range is position independent
+            VListMoveEventImpl<T> mEvt = (VListMoveEventImpl<T>) evt;
+            fireChangeEvent(VListChangeEvent.getMoveEvent(this,
+                    mEvt.moveFrom() + offset, mEvt.moveCount(), mEvt.moveTo() + offset,
+                    mEvt.rangeBefore(), evt.eventInfo()));
+            return;
+        }
+
+        if (evt instanceof VListPermutationEventImpl) {
+            // permutations stay permutations of the shifted range
+            VListPermutationEventImpl<T> pEvt = (VListPermutationEventImpl<T>) evt;
+            fireChangeEvent(new VListPermutationEventImpl<>(this, pEvt.offset() + offset, size(),
+                    pEvt.rangePermutation(), pEvt.rangeBefore(), evt.eventInfo()));
+            return;
+        }
+
+        int[] addedIndices = shift(evt.added().indices(), offset);
+        int[] removedIndices = evt.added().indices() == evt.removed().indices()
+                ? addedIndices : shift(evt.removed().indices(), offset);
+
+        fireChangeEvent(new VListChangeEventImpl<>(this,
+                evt.added().hasChanges()
+                ? VListChange.newInstance(addedIndices, evt.added().elements())
+                : VListChange.empty(),
+                evt.removed().hasChanges()
+                ? VListChange.newInstance(removedIndices, evt.removed().elements())
+                : VListChange.empty(),
+                evt.eventInfo()));
+    }
+
+    private static int[] shift(int[] indices, int offset) {
+        if (offset == 0) {
+            return indices;
+        }
+
+        int[] result = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            result[i] = indices[i] + offset;
+        }
+
+        return result;
+    }
+
+    @Override
+    public String getEventInfo() {
+        return this.evtInfo;
+    }
+
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return this.equalityPolicy;
+    }
+
+    /**
+     * Sets the equality policy. Views report the changes of their sources,
+     * the policy of a view only applies to writes that the view performs
+     * itself.
+     *
+     * @param policy equality policy to set
+     */
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        this.equalityPolicy = Objects.requireNonNull(policy);
+    }
+
+    @Override
+    public void setEventInfo(String evtInfo) {
+        if (evtInfo == null) {
+            this.evtInfo = "";
+        } else {
+            this.evtInfo = evtInfo;
+        }
+    }
+
+    @Override
+    public VList<T> asUnmodifiable() {
+        return this;
+    }
+
+    @Override
+    public boolean removeAll(int... indices) {
+        throw new UnsupportedOperationException("Cannot modify a read-only view.");
+    }
+
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        return subListView(fromIndex, toIndex);
+    }
+
+    @Override
+    public boolean setContents(List<? extends T> elements) {
+        throw new UnsupportedOperationException("Cannot modify a read-only view.");
+    }
+
+    @Override
+    public void moveRange(int from, int count, int to) {
+        throw new UnsupportedOperationException("Cannot modify a read-only view.");
+    }
+
+    @Override
+    public Collection<T> setAll(int index, Collection<T> elements) {
+        throw new UnsupportedOperationException("Cannot modify a read-only view.");
+    }
+
+    @Override
+    public boolean addAll(int[] indices, Collection<? extends T> c) {
+        throw new UnsupportedOperationException("Cannot modify a read-only view.");
+    }
+
+    @Override
+    public Subscription addChangeListener(CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
+        return getListChangeSupport().addChangeListener(l);
+    }
+
+    @Override
+    public boolean removeChangeListener(CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
+        boolean result = getListChangeSupport().removeChangeListener(l);
+
+        if (!getListChangeSupport().hasListeners()) {
+            listChangeSupport = null;
+        }
+
+        return result;
+    }
+}
@@ -34,7 +34,15 @@
  */
 package eu.mihosoft.vcollections;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import vjavax.observer.Subscription;
 import eu.mihosoft.vcollections.VMapChangeListener;
 
@@ -61,6 +69,36 @@ public interface VMap<K, V> extends Map<K, V>, VMapObservable<K, V> {
         return VMapImpl.newInstance(map);
     }
 
+    /**
+     * Creates a new map that stores its entries in maps created by the
+     * specified supplier. Instead of removing all entries, {@link #clear()}
+     * detaches the current backing map, passes it to the listeners as the
+     * removed entries and installs a new empty map created by the supplier.
+     * Clearing is therefore done in constant time without copying.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param backingSupplier supplier of empty backing maps
+     * @return new {@link VMap} that uses the specified supplier
+     */
+    static <K, V> VMap<K, V> newInstance(Supplier<? extends Map<K, V>> backingSupplier) {
+        return VMapImpl.newInstance(backingSupplier);
+    }
+
+    /**
+     * Creates a new empty map that is backed by a hash array mapped trie.
+     * {@link #snapshot()} is performed in constant time, the snapshot shares
+     * its nodes with the map and subsequent modifications only copy the nodes
+     * they touch. Lookups and modifications cost {@code O(log32 n)}.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @return new {@link VMap} backed by a hash array mapped trie
+     */
+    static <K, V> VMap<K, V> newPersistentInstance() {
+        return VMapImpl.newInstance(new TransientHashMap<>());
+    }
+
     /**
      * Returns an unmodifiable view of this map (see
      * {@link java.util.Collections#unmodifiableMap(java.util.Map)} ).
@@ -77,6 +115,46 @@ public interface VMap<K, V> extends Map<K, V>, VMapObservable<K, V> {
      */
     boolean removeAll(@SuppressWarnings("unchecked") K... keys);
 
+    /**
+     * Returns an immutable snapshot of the current entries of this map. Later
+     * modifications of this map are not reflected by the snapshot and the
+     * snapshot is safe to read from any thread. Taking the snapshot itself is
+     * a read of this map, i.e., it must not race with writers of maps that are
+     * not thread-safe.
+     *
+     * The default implementation copies this map. Maps created via
+     * {@link #newPersistentInstance()} take snapshots in constant time.
+     *
+     * @return an immutable snapshot of this map
+     */
+    default Map<K, V> snapshot() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(this));
+    }
+
+    /**
+     * Sets the equality policy of this map. Puts that don't change the value
+     * of an existing key according to the policy don't fire change events.
+     * The default policy is {@link EqualityPolicy#NONE}.
+     *
+     * @param policy equality policy to set
+     * @throws UnsupportedOperationException if this map doesn't support
+     * equality policies (default)
+     */
+    default void setEqualityPolicy(EqualityPolicy policy) {
+        throw new UnsupportedOperationException(
+                "Equality policies are not supported by this map.");
+    }
+
+    /**
+     * Returns the equality policy of this map. The default implementation
+     * returns {@link EqualityPolicy#NONE}.
+     *
+     * @return the equality policy of this map
+     */
+    default EqualityPolicy getEqualityPolicy() {
+        return EqualityPolicy.NONE;
+    }
+
     /**
      * Sets the event info to be used for event generation.
      *
@@ -97,10 +175,12 @@ public interface VMap<K, V> extends Map<K, V>, VMapObservable<K, V> {
  */
 final class VMapImpl<K, V> extends java.util.AbstractMap<K, V> implements VMap<K, V> {
 
-    private final Map<K, V> originalMap;
+    private Map<K, V> originalMap;
+    private final Supplier<? extends Map<K, V>> backingSupplier;
     private VMapChangeSupport<K, V> mapChangeSupport;
     private VMapImpl<K, V> unmodifiableInstance;
     private String evtInfo = "";
+    private EqualityPolicy equalityPolicy = EqualityPolicy.NONE;
 
     private VMapChangeSupport<K, V> getMapChangeSupport() {
         if (mapChangeSupport == null) {
@@ -115,12 +195,31 @@ final class VMapImpl<K, V> extends java.util.AbstractMap<K, V> implements VMap<K
 
     private VMapImpl(Map<K, V> originalMap) {
         this.originalMap = originalMap;
+        this.backingSupplier = null;
+    }
+
+    private VMapImpl(Supplier<? extends Map<K, V>> backingSupplier) {
+        this.backingSupplier = Objects.requireNonNull(backingSupplier);
+        this.originalMap = newBackingMap();
     }
 
     static <K, V> VMapImpl<K, V> newInstance(Map<K, V> map) {
         return new VMapImpl<>(map);
     }
 
+    static <K, V> VMapImpl<K, V> newInstance(Supplier<? extends Map<K, V>> backingSupplier) {
+        return new VMapImpl<>(backingSupplier);
+    }
+
+    private Map<K, V> newBackingMap() {
+        Map<K, V> map = Objects.requireNonNull(backingSupplier.get(),
+                "Backing supplier must not return null");
+        if (!map.isEmpty()) {
+            throw new IllegalStateException("Backing supplier must return an empty map");
+        }
+        return map;
+    }
+
     @Override
     public void setEventInfo(String evtInfo) {
         if (evtInfo == null) {
@@ -135,6 +234,16 @@ final class VMapImpl<K, V> extends java.util.AbstractMap<K, V> implements VMap<K
         return this.evtInfo;
     }
 
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return this.equalityPolicy;
+    }
+
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        this.equalityPolicy = Objects.requireNonNull(policy);
+    }
+
     private void fireChangeEvent(VMapChangeEvent<K, V> evt) {
         if (hasListeners()) {
             mapChangeSupport.fireEvent(evt);
@@ -166,35 +275,243 @@ final class VMapImpl<K, V> extends java.util.AbstractMap<K, V> implements VMap<K
         return originalMap.get(key);
     }
 
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return originalMap.getOrDefault(key, defaultValue);
+    }
+
+    // Modifications use a single operation of the original map. Whether a key
+    // was added or removed is derived from the size of the original map, this
+    // also works for keys that are mapped to null.
+
     @Override
     public V put(K key, V value) {
-        boolean hadKey = originalMap.containsKey(key);
+        if (!hasListeners()) {
+            return originalMap.put(key, value);
+        }
+
+        int sizeBefore = originalMap.size();
         V previous = originalMap.put(key, value);
 
-        if (hasListeners()) {
-            if (hadKey) {
-                fireChangeEvent(VMapChangeEvent.getSetEvent(this,
-                        java.util.Collections.singletonMap(key, previous),
-                        java.util.Collections.singletonMap(key, value), getEventInfo()));
-            } else {
-                fireChangeEvent(VMapChangeEvent.getAddedEvent(this,
-                        java.util.Collections.singletonMap(key, value), getEventInfo()));
-            }
+        if (originalMap.size() != sizeBefore) {
+            fireAdded(key, value);
+        } else {
+            fireSet(key, previous, value);
         }
         return previous;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public V remove(Object key) {
-        if (!originalMap.containsKey(key)) {
-            return null;
-        }
+        int sizeBefore = originalMap.size();
         V removed = originalMap.remove(key);
+        if (originalMap.size() != sizeBefore) {
+            fireRemoved((K) key, removed);
+        }
+        return removed;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object key, Object value) {
+        boolean result = originalMap.remove(key, value);
+        if (result) {
+            fireRemoved((K) key, (V) value);
+        }
+        return result;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int sizeBefore = originalMap.size();
+        V previous = originalMap.putIfAbsent(key, value);
+
+        if (originalMap.size() != sizeBefore) {
+            fireAdded(key, value);
+        } else if (previous == null && value != null) {
+            // the key was mapped to null
+            fireSet(key, null, value);
+        }
+        return previous;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        if (!hasListeners()) {
+            return originalMap.replace(key, value);
+        }
+
+        V previous = originalMap.replace(key, value);
+        // a previous null value means an absent key or a key that has been
+        // mapped to null, only the latter is reported
+        if (previous != null || (!equalityPolicy.isUnchanged(null, value)
+                && originalMap.containsKey(key))) {
+            fireSet(key, previous, value);
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        boolean result = originalMap.replace(key, oldValue, newValue);
+        if (result) {
+            fireSet(key, oldValue, newValue);
+        }
+        return result;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+
+        boolean[] computed = new boolean[1];
+        int sizeBefore = originalMap.size();
+        V value = originalMap.computeIfAbsent(key, k -> {
+            computed[0] = true;
+            return mappingFunction.apply(k);
+        });
+
+        if (originalMap.size() != sizeBefore) {
+            fireAdded(key, value);
+        } else if (computed[0] && value != null) {
+            // the key was mapped to null
+            fireSet(key, null, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+
+        Remapping<V> r = new Remapping<>();
+        int sizeBefore = originalMap.size();
+        V value = originalMap.computeIfPresent(key, (k, oldValue) -> {
+            r.invoked(oldValue);
+            return remappingFunction.apply(k, oldValue);
+        });
+
+        fireRemapped(key, r, value, sizeBefore, false);
+        return value;
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+
+        Remapping<V> r = new Remapping<>();
+        int sizeBefore = originalMap.size();
+        V value = originalMap.compute(key, (k, oldValue) -> {
+            r.invoked(oldValue);
+            return remappingFunction.apply(k, oldValue);
+        });
+
+        fireRemapped(key, r, value, sizeBefore, false);
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+
+        Remapping<V> r = new Remapping<>();
+        int sizeBefore = originalMap.size();
+        V result = originalMap.merge(key, value, (oldValue, v) -> {
+            r.invoked(oldValue);
+            return remappingFunction.apply(oldValue, v);
+        });
+
+        fireRemapped(key, r, result, sizeBefore, true);
+        return result;
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+
+        if (!hasListeners()) {
+            originalMap.replaceAll(function);
+            return;
+        }
+
+        Map<K, V> removed = new LinkedHashMap<>();
+        Map<K, V> added = new LinkedHashMap<>();
+
+        for (Entry<K, V> e : originalMap.entrySet()) {
+            V before = e.getValue();
+            V after = function.apply(e.getKey(), before);
+            e.setValue(after);
+            if (!equalityPolicy.isUnchanged(before, after)) {
+                removed.put(e.getKey(), before);
+                added.put(e.getKey(), after);
+            }
+        }
+
+        if (!added.isEmpty()) {
+            fireChangeEvent(VMapChangeEvent.getSetEvent(this, removed, added, getEventInfo()));
+        }
+    }
+
+    /**
+     * Records the arguments of a remapping function invoked by the original
+     * map.
+     */
+    private static final class Remapping<V> {
+        boolean invoked;
+        V oldValue;
+
+        void invoked(V oldValue) {
+            this.invoked = true;
+            this.oldValue = oldValue;
+        }
+    }
+
+    /**
+     * Fires the event of a 'compute(..)' or 'merge(..)' operation.
+     *
+     * @param key key
+     * @param r recorded remapping
+     * @param value value after the operation
+     * @param sizeBefore size of the original map before the operation
+     * @param merge whether the operation was 'merge(..)'
+     */
+    private void fireRemapped(K key, Remapping<V> r, V value, int sizeBefore, boolean merge) {
+        if (originalMap.size() > sizeBefore) {
+            fireAdded(key, value);
+        } else if (originalMap.size() < sizeBefore) {
+            fireRemoved(key, r.oldValue);
+        } else if (r.invoked) {
+            // 'compute(..)' of an absent key that returned null changes nothing
+            if (r.oldValue != null || value != null) {
+                fireSet(key, r.oldValue, value);
+            }
+        } else if (merge) {
+            // 'merge(..)' replaced a null value without remapping
+            fireSet(key, null, value);
+        }
+    }
+
+    private void fireAdded(K key, V value) {
+        if (hasListeners()) {
+            fireChangeEvent(VMapChangeEvent.getAddedEvent(this,
+                    Collections.singletonMap(key, value), getEventInfo()));
+        }
+    }
+
+    private void fireRemoved(K key, V value) {
         if (hasListeners()) {
             fireChangeEvent(VMapChangeEvent.getRemovedEvent(this,
-                    java.util.Collections.singletonMap((K) key, removed), getEventInfo()));
+                    Collections.singletonMap(key, value), getEventInfo()));
+        }
+    }
+
+    private void fireSet(K key, V oldValue, V newValue) {
+        if (hasListeners() && !equalityPolicy.isUnchanged(oldValue, newValue)) {
+            fireChangeEvent(VMapChangeEvent.getSetEvent(this,
+                    Collections.singletonMap(key, oldValue),
+                    Collections.singletonMap(key, newValue), getEventInfo()));
         }
-        return removed;
     }
 
     @Override
@@ -202,6 +519,16 @@ final class VMapImpl<K, V> extends java.util.AbstractMap<K, V> implements VMap<K
         if (originalMap.isEmpty()) {
             return;
         }
+        if (backingSupplier != null) {
+            // swap the backing map, the detached map is the event payload
+            Map<K, V> detached = originalMap;
+            originalMap = newBackingMap();
+            if (hasListeners()) {
+                fireChangeEvent(VMapChangeEvent.getRemovedEvent(this,
+                        Collections.unmodifiableMap(detached), getEventInfo()));
+            }
+            return;
+        }
         Map<K, V> removed = new java.util.LinkedHashMap<>(originalMap);
         originalMap.clear();
         if (hasListeners()) {
@@ -212,23 +539,161 @@ final class VMapImpl<K, V> extends java.util.AbstractMap<K, V> implements VMap<K
     @Override
     public void putAll(Map<? extends K, ? extends V> m) {
         if (m.isEmpty()) return;
-        Map<K, V> added = new java.util.LinkedHashMap<>();
-        Map<K, V> removed = new java.util.LinkedHashMap<>();
+
+        if (!hasListeners()) {
+            originalMap.putAll(m);
+            return;
+        }
+
+        // one put per entry, inserts and updates are told apart by the size
+        // of the original map
+        int n = m.size();
+        Object[] addedKeys = new Object[n];
+        Object[] addedValues = new Object[n];
+        Object[] updatedKeys = null;
+        Object[] oldValues = null;
+        int numAdded = 0;
+        int numUpdated = 0;
+
         for (Entry<? extends K, ? extends V> e : m.entrySet()) {
             K k = e.getKey();
             V v = e.getValue();
-            if (originalMap.containsKey(k)) {
-                V prev = originalMap.put(k, v);
+            int sizeBefore = originalMap.size();
+            V prev = originalMap.put(k, v);
+            if (originalMap.size() == sizeBefore) {
+                if (equalityPolicy.isUnchanged(prev, v)) {
+                    continue;
+                }
+                if (updatedKeys == null) {
+                    updatedKeys = new Object[n];
+                    oldValues = new Object[n];
+                }
+                updatedKeys[numUpdated] = k;
+                oldValues[numUpdated] = prev;
+                numUpdated++;
+            }
+            addedKeys[numAdded] = k;
+            addedValues[numAdded] = v;
+            numAdded++;
+        }
+
+        if (numAdded == 0) {
+            return;
+        }
+
+        Map<K, V> added = new EntryArrayMap<>(addedKeys, addedValues, numAdded);
+
+        if (numUpdated == 0) {
+            fireChangeEvent(VMapChangeEvent.getAddedEvent(this, added, getEventInfo()));
+        } else {
+            fireChangeEvent(VMapChangeEvent.getSetEvent(this,
+                    new EntryArrayMap<>(updatedKeys, oldValues, numUpdated),
+                    added, getEventInfo()));
+        }
+    }
+
+    /**
+     * Replaces the contents of this map with the specified entries and leaves
+     * the notification of the listeners to the caller, e.g., to notify them
+     * after several collections have been changed. Removed keys and replaced
+     * values are reported by one event. Values that are the same instance as
+     * before or that are unchanged according to the equality policy are not
+     * reported.
+     *
+     * @param entries new contents
+     * @return an action that notifies the listeners or {@code null} if the
+     * contents didn't change
+     */
+    Runnable applyContents(Map<? extends K, ? extends V> entries) {
+
+        Objects.requireNonNull(entries);
+
+        List<K> removedKeys = new ArrayList<>();
+        for (K k : originalMap.keySet()) {
+            if (!entries.containsKey(k)) {
+                removedKeys.add(k);
+            }
+        }
+
+        Map<K, V> removed = new java.util.LinkedHashMap<>();
+        Map<K, V> added = new java.util.LinkedHashMap<>();
+
+        for (K k : removedKeys) {
+            removed.put(k, originalMap.remove(k));
+        }
+
+        for (Entry<? extends K, ? extends V> e : entries.entrySet()) {
+            K k = e.getKey();
+            V v = e.getValue();
+            boolean present = originalMap.containsKey(k);
+            V prev = originalMap.get(k);
+            if (present && (prev == v || equalityPolicy.isUnchanged(prev, v))) {
+                continue;
+            }
+            originalMap.put(k, v);
+            if (present) {
                 removed.put(k, prev);
-                added.put(k, v);
-            } else {
-                originalMap.put(k, v);
-                added.put(k, v);
             }
+            added.put(k, v);
         }
-        if (hasListeners()) {
-            fireChangeEvent(VMapChangeEvent.getSetEvent(this, removed, added, getEventInfo()));
+
+        if (removed.isEmpty() && added.isEmpty()) {
+            return null;
         }
+
+        VMapChangeEvent<K, V> evt = new VMapChangeEventImpl<>(this,
+                added.isEmpty() ? VMapChange.empty() : VMapChange.newInstance(added),
+                removed.isEmpty() ? VMapChange.empty() : VMapChange.newInstance(removed),
+                getEventInfo());
+
+        return () -> fireChangeEvent(evt);
+    }
+
+    /**
+     * Replaces the contents of the specified map with the specified entries.
+     * Maps created by {@link VMap#newInstance(Map)} are changed via
+     * {@link #applyContents(Map)}, i.e., the notification of their listeners is
+     * left to the caller. Other maps are changed via
+     * {@link VMap#removeAll(Object[])} and {@link VMap#putAll(Map)} and notify
+     * their listeners immediately. Values that are the same instance as before
+     * are not written.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param map map to change
+     * @param entries new contents
+     * @return an action that notifies the listeners or {@code null} if the
+     * contents didn't change or the listeners have already been notified
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> Runnable writeContents(VMap<K, V> map, Map<? extends K, ? extends V> entries) {
+
+        if (map instanceof VMapImpl) {
+            return ((VMapImpl<K, V>) map).applyContents(entries);
+        }
+
+        List<K> removed = new ArrayList<>();
+        for (K k : map.keySet()) {
+            if (!entries.containsKey(k)) {
+                removed.add(k);
+            }
+        }
+
+        Map<K, V> changed = new java.util.LinkedHashMap<>();
+        for (Entry<? extends K, ? extends V> e : entries.entrySet()) {
+            if (!map.containsKey(e.getKey()) || map.get(e.getKey()) != e.getValue()) {
+                changed.put(e.getKey(), e.getValue());
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            map.removeAll((K[]) removed.toArray());
+        }
+        if (!changed.isEmpty()) {
+            map.putAll(changed);
+        }
+
+        return null;
     }
 
     @Override
@@ -236,10 +701,20 @@ final class VMapImpl<K, V> extends java.util.AbstractMap<K, V> implements VMap<K
         return originalMap.entrySet();
     }
 
+    @Override
+    public Map<K, V> snapshot() {
+        if (originalMap instanceof TransientHashMap) {
+            return ((TransientHashMap<K, V>) originalMap).snapshot();
+        }
+        return VMap.super.snapshot();
+    }
+
     @Override
     public VMap<K, V> asUnmodifiable() {
         if (unmodifiableInstance == null) {
-            unmodifiableInstance = new VMapImpl<>(java.util.Collections.unmodifiableMap(originalMap));
+            // the backing map of a swapping map may be replaced, read through this map
+            unmodifiableInstance = new VMapImpl<>(Collections.unmodifiableMap(
+                    backingSupplier == null ? originalMap : this));
             syncMaps(this, unmodifiableInstance);
         }
         return unmodifiableInstance;
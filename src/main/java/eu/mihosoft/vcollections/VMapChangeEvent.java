@@ -34,6 +34,8 @@
  */
 package eu.mihosoft.vcollections;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -66,6 +68,28 @@ public interface VMapChangeEvent<K, V> {
 
     default String eventInfo() { return ""; }
 
+    /**
+     * Returns the immutable version of the source map before the change, if
+     * the source keeps versions (see {@link VersionedVMap}).
+     *
+     * @return the version before the change or {@code null} if the source
+     * doesn't keep versions
+     */
+    default Map<K, V> before() {
+        return null;
+    }
+
+    /**
+     * Returns the immutable version of the source map after the change, if
+     * the source keeps versions (see {@link VersionedVMap}).
+     *
+     * @return the version after the change or {@code null} if the source
+     * doesn't keep versions
+     */
+    default Map<K, V> after() {
+        return null;
+    }
+
     static <K, V> VMapChangeEvent<K, V> getAddedEvent(VMap<K, V> source, Map<K, V> added) {
         return new VMapChangeEventImpl<>(source, VMapChange.newInstance(added), VMapChange.empty());
     }
@@ -163,3 +187,88 @@ class VMapChangeEventImpl<K, V> implements VMapChangeEvent<K, V> {
         return sb.toString();
     }
 }
+
+/**
+ * Event that references the versions of a {@link VersionedVMap} before and
+ * after a change. The added and removed entries are computed on demand from
+ * the differences of both versions.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class VMapVersionEventImpl<K, V> implements VMapChangeEvent<K, V> {
+
+    private final VMap<K, V> source;
+    private final PersistentHashMap<K, V> before;
+    private final PersistentHashMap<K, V> after;
+    private final String evtInfo;
+
+    private VMapChange<K, V> added;
+    private VMapChange<K, V> removed;
+
+    VMapVersionEventImpl(VMap<K, V> source, PersistentHashMap<K, V> before,
+            PersistentHashMap<K, V> after, String evtInfo) {
+        this.source = source;
+        this.before = before;
+        this.after = after;
+        this.evtInfo = evtInfo;
+    }
+
+    private void computeChanges() {
+        if (added == null) {
+            Map<K, V> removedEntries = new LinkedHashMap<>();
+            Map<K, V> addedEntries = new LinkedHashMap<>();
+            PersistentHashMap.diff(before, after, removedEntries, addedEntries);
+            removed = removedEntries.isEmpty() ? VMapChange.empty()
+                    : VMapChange.newInstance(Collections.unmodifiableMap(removedEntries));
+            added = addedEntries.isEmpty() ? VMapChange.empty()
+                    : VMapChange.newInstance(Collections.unmodifiableMap(addedEntries));
+        }
+    }
+
+    @Override
+    public VMapChange<K, V> added() {
+        computeChanges();
+        return added;
+    }
+
+    @Override
+    public VMapChange<K, V> removed() {
+        computeChanges();
+        return removed;
+    }
+
+    @Override
+    public Map<K, V> before() {
+        return before;
+    }
+
+    @Override
+    public Map<K, V> after() {
+        return after;
+    }
+
+    @Override
+    public VMap<K, V> source() {
+        return source;
+    }
+
+    @Override
+    public String eventInfo() {
+        return evtInfo;
+    }
+
+    @Override
+    public String toString() {
+        return "event: #added=" + added().entries().size() + ", #removed=" + removed().entries().size();
+    }
+
+    @Override
+    public String toStringWithDetails() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("event: [#removed: ").append(removed().entries().size()).append(", #added: ").append(added().entries().size()).append("]\n");
+        sb.append("removed-keys   = ").append(removed().keys()).append("\n");
+        sb.append("added-keys     = ").append(added().keys()).append("\n");
+        return sb.toString();
+    }
+}
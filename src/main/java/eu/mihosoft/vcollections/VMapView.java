@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.AbstractMap;
+import java.util.Objects;
+import vjavax.observer.Subscription;
+
+/**
+ * Base class for read-only map views that are derived from other observable
+ * collections. Subclasses maintain their own state and fire change events via
+ * {@link #fireChangeEvent(VMapChangeEvent)}. All modifying operations throw
+ * an {@link UnsupportedOperationException} unless overridden.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+abstract class VMapView<K, V> extends AbstractMap<K, V> implements VMap<K, V> {
+
+    private VMapChangeSupport<K, V> mapChangeSupport;
+
+    private String evtInfo = "";
+    private EqualityPolicy equalityPolicy = EqualityPolicy.NONE;
+
+    private VMapChangeSupport<K, V> getMapChangeSupport() {
+        if (mapChangeSupport == null) {
+            mapChangeSupport = new VMapChangeSupport<>();
+        }
+        return mapChangeSupport;
+    }
+
+    /**
+     * Indicates whether this view has listeners.
+     *
+     * @return {@code true} if this view has listeners; {@code false} otherwise
+     */
+    boolean hasListeners() {
+        return mapChangeSupport != null && mapChangeSupport.hasListeners();
+    }
+
+    /**
+     * Fires the specified event if this view has listeners.
+     *
+     * @param evt event to fire
+     */
+    void fireChangeEvent(VMapChangeEvent<K, V> evt) {
+        if (hasListeners()) {
+            mapChangeSupport.fireEvent(evt);
+        }
+    }
+
+    @Override
+    public void setEventInfo(String evtInfo) {
+        if (evtInfo == null) {
+            this.evtInfo = "";
+        } else {
+            this.evtInfo = evtInfo;
+        }
+    }
+
+    @Override
+    public String getEventInfo() {
+        return this.evtInfo;
+    }
+
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return this.equalityPolicy;
+    }
+
+    /**
+     * Sets the equality policy. Views report the changes of their sources,
+     * the policy of a view only applies to writes that the view performs
+     * itself.
+     *
+     * @param policy equality policy to set
+     */
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        this.equalityPolicy = Objects.requireNonNull(policy);
+    }
+
+    @Override
+    public VMap<K, V> asUnmodifiable() {
+        return this;
+    }
+
+    @Override
+    @SafeVarargs
+    public final boolean removeAll(K... keys) {
+        throw new UnsupportedOperationException("Cannot modify a read-only view.");
+    }
+
+    @Override
+    public Subscription addChangeListener(VMapChangeListener<K, V> l) {
+        return getMapChangeSupport().addChangeListener(l);
+    }
+
+    @Override
+    public boolean removeChangeListener(VMapChangeListener<K, V> l) {
+        boolean result = getMapChangeSupport().removeChangeListener(l);
+        if (!getMapChangeSupport().hasListeners()) {
+            mapChangeSupport = null;
+        }
+        return result;
+    }
+}
@@ -35,7 +35,11 @@
 package eu.mihosoft.vcollections;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import vjavax.observer.Subscription;
 import vjavax.observer.collection.CollectionChangeListener;
@@ -47,7 +51,7 @@ import vjavax.observer.collection.CollectionChangeListener;
  * @param <T> element type of the target list
  * @param <V> element type of the source list
  */
-public final class VMappedList<T, V> extends AbstractList<T> implements VList<T> {
+public class VMappedList<T, V> extends AbstractList<T> implements VList<T> {
 
     private final VList<V> originalList;
     private final Function<V, T> fromOrigToThis;
@@ -76,7 +80,7 @@ public final class VMappedList<T, V> extends AbstractList<T> implements VList<T>
     public static <T, V> VList<T> newInstance(VList<V> srcList,
             Function<V, T> fromOrigToThis,
             Function<T, V> fromThisToOrig) {
-        return new VMappedList<>(srcList, fromOrigToThis, fromThisToOrig);
+        return create(srcList, fromOrigToThis, fromThisToOrig);
     }
 
     /**
@@ -96,13 +100,23 @@ public final class VMappedList<T, V> extends AbstractList<T> implements VList<T>
      */
     public static <T, V> VList<T> newUnmodifiableInstance(VList<V> srcList,
             Function<V, T> fromOrigToThis) {
-        return new VMappedList<>(srcList.asUnmodifiable(),
+        return create(srcList.asUnmodifiable(),
                 fromOrigToThis, (e) -> {
                     throw new UnsupportedOperationException(
                             "Cannot modify an unmodifiable list.");
                 });
     }
 
+    private static <T, V> VMappedList<T, V> create(VList<V> srcList,
+            Function<V, T> fromOrigToThis,
+            Function<T, V> fromThisToOrig) {
+        // a mapped list has random access if the source list has
+        if (srcList instanceof RandomAccess) {
+            return new RandomAccessMappedList<>(srcList, fromOrigToThis, fromThisToOrig);
+        }
+        return new VMappedList<>(srcList, fromOrigToThis, fromThisToOrig);
+    }
+
     /**
      * Cretes a mapped list.
      *
@@ -134,6 +148,16 @@ public final class VMappedList<T, V> extends AbstractList<T> implements VList<T>
         return originalList.getEventInfo();
     }
 
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        originalList.setEqualityPolicy(policy);
+    }
+
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return originalList.getEqualityPolicy();
+    }
+
     @Override
     public T get(int index) {
         return fromOrigToThis.apply(originalList.get(index));
@@ -144,6 +168,17 @@ public final class VMappedList<T, V> extends AbstractList<T> implements VList<T>
         return originalList.size();
     }
 
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        originalList.forEach(e -> action.accept(fromOrigToThis.apply(e)));
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return ListUtil.mappedSpliterator(originalList.spliterator(), fromOrigToThis);
+    }
+
     @Override
     public T set(int index, T e) {
         return fromOrigToThis.apply(
@@ -195,6 +230,58 @@ public final class VMappedList<T, V> extends AbstractList<T> implements VList<T>
                 map(fromThisToOrig).collect(Collectors.toList()));
     }
 
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        return subListView(fromIndex, toIndex);
+    }
+
+    @Override
+    public boolean setContents(List<? extends T> elements) {
+        return originalList.setContents(elements.stream().
+                map(fromThisToOrig).collect(Collectors.toList()));
+    }
+
+    @Override
+    public void moveRange(int from, int count, int to) {
+        originalList.moveRange(from, count, to);
+    }
+
+    @Override
+    public boolean setRangeContents(int fromIndex, int toIndex, List<? extends T> elements) {
+        return originalList.setRangeContents(fromIndex, toIndex, elements.stream().
+                map(fromThisToOrig).collect(Collectors.toList()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sortRange(int fromIndex, int toIndex, Comparator<? super T> c) {
+        Comparator<? super T> cmp = c != null ? c
+                : (Comparator<? super T>) Comparator.naturalOrder();
+        originalList.sortRange(fromIndex, toIndex, (a, b) -> cmp.compare(
+                fromOrigToThis.apply(a), fromOrigToThis.apply(b)));
+    }
+
+    @Override
+    public void parallelReplaceAll(UnaryOperator<T> operator, ForkJoinPool pool) {
+        originalList.parallelReplaceAll(e -> fromThisToOrig.apply(
+                operator.apply(fromOrigToThis.apply(e))), pool);
+    }
+
+    @Override
+    public boolean parallelRemoveIf(Predicate<? super T> filter, ForkJoinPool pool) {
+        return originalList.parallelRemoveIf(
+                e -> filter.test(fromOrigToThis.apply(e)), pool);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void parallelSort(Comparator<? super T> c, ForkJoinPool pool) {
+        Comparator<? super T> cmp = c != null ? c
+                : (Comparator<? super T>) Comparator.naturalOrder();
+        originalList.parallelSort((a, b) -> cmp.compare(
+                fromOrigToThis.apply(a), fromOrigToThis.apply(b)), pool);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Subscription addChangeListener(CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
@@ -204,6 +291,26 @@ public final class VMappedList<T, V> extends AbstractList<T> implements VList<T>
 
         VListChangeListener<V> mappedListener = (evt) -> {
 
+            if (evt instanceof VListMoveEventImpl) {
+                // forward moves, elements are mapped on demand
+                VListMoveEventImpl<V> mEvt = (VListMoveEventImpl<V>) evt;
+                VListChangeEvent e = VListChangeEvent.getMoveEvent(VMappedList.this,
+                        mEvt.moveFrom(), mEvt.moveCount(), mEvt.moveTo(),
+                        mapped(mEvt.rangeBefore()), evt.eventInfo());
+                l.onChange(e);
+                return;
+            }
+
+            if (evt instanceof VListPermutationEventImpl) {
+                // forward permutations, elements are mapped on demand
+                VListPermutationEventImpl<V> pEvt = (VListPermutationEventImpl<V>) evt;
+                VListChangeEvent e = new VListPermutationEventImpl<>(VMappedList.this,
+                        pEvt.offset(), pEvt.size(), pEvt.rangePermutation(),
+                        mapped(pEvt.rangeBefore()), evt.eventInfo());
+                l.onChange(e);
+                return;
+            }
+
             VListChangeEvent e = new VListChangeEventImpl<>(VMappedList.this,
                     VListChange.newInstance(evt.added().indices(),
                             evt.added().elements().stream()
@@ -228,6 +335,27 @@ public final class VMappedList<T, V> extends AbstractList<T> implements VList<T>
         };
     }
 
+    /**
+     * Returns a view of the specified elements that maps each element on
+     * demand.
+     *
+     * @param elements elements of the original list
+     * @return mapped view of the specified elements
+     */
+    private List<T> mapped(List<V> elements) {
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return fromOrigToThis.apply(elements.get(index));
+            }
+
+            @Override
+            public int size() {
+                return elements.size();
+            }
+        };
+    }
+
     @Override
     public boolean removeChangeListener(CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
         if (listenerMap.containsKey(l)) {
@@ -243,4 +371,20 @@ public final class VMappedList<T, V> extends AbstractList<T> implements VList<T>
     public VList<T> asUnmodifiable() {
         throw new UnsupportedOperationException("Unsupported operation: use 'newUnModifiableInstance(...)' instead.");
     }
+
+    /**
+     * Mapped list with a random access source list.
+     *
+     * @param <T> element type of the target list
+     * @param <V> element type of the source list
+     */
+    private static final class RandomAccessMappedList<T, V> extends VMappedList<T, V>
+            implements RandomAccess {
+
+        private RandomAccessMappedList(List<V> originalList,
+                Function<V, T> fromOrigToThis,
+                Function<T, V> fromThisToOrig) {
+            super(originalList, fromOrigToThis, fromThisToOrig);
+        }
+    }
 }
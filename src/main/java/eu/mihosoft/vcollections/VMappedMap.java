@@ -73,6 +73,16 @@ public final class VMappedMap<K, V, OK, OV> extends AbstractMap<K, V> implements
         return originalMap.getEventInfo();
     }
 
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        originalMap.setEqualityPolicy(policy);
+    }
+
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return originalMap.getEqualityPolicy();
+    }
+
     @Override
     public int size() {
         return originalMap.size();
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import vjavax.observer.Subscription;
+import vjavax.observer.collection.CollectionChangeEvent;
+import vjavax.observer.collection.CollectionChangeListener;
+
+/**
+ * Observable view of a contiguous range (window) of a list. Changes of the
+ * parent list move and resize the window. Insertions at the boundaries of the
+ * window are considered outside of the window unless they are performed
+ * through this view.
+ *
+ * Modifications of this view are performed as a single operation on the
+ * parent list. Listeners of this view only receive the changes inside the
+ * window, indices are relative to the window.
+ *
+ * The view observes the parent list only while the view itself has
+ * listeners, i.e., creating a view doesn't register anything on the parent
+ * list. Without listeners, the window is only adjusted by the changes that are
+ * performed through this view. Like the sublists of {@link java.util.List},
+ * an unobserved view is undefined after other structural changes of the
+ * parent list.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ * @param <T> element type
+ */
+final class VSubList<T> extends VListView<T> {
+
+    private final VList<T> parent;
+    private int from;
+    private int to;
+
+    /**
+     * Indicates whether the current change of the parent list is performed
+     * through this view.
+     */
+    private boolean ownChange;
+
+    private VList<T> unmodifiableInstance;
+
+    private final VListChangeListener<T> parentListener = this::parentChanged;
+
+    /**
+     * Indicates whether the parent listener is registered.
+     */
+    private boolean observing;
+
+    /**
+     * Creates a new view of the specified range of the specified list.
+     *
+     * @param parent parent list
+     * @param fromIndex low endpoint (inclusive) of the view
+     * @param toIndex high endpoint (exclusive) of the view
+     */
+    VSubList(VList<T> parent, int fromIndex, int toIndex) {
+        if (fromIndex < 0) {
+            throw new IndexOutOfBoundsException("fromIndex = " + fromIndex);
+        }
+        if (toIndex > parent.size()) {
+            throw new IndexOutOfBoundsException("toIndex = " + toIndex);
+        }
+        if (fromIndex > toIndex) {
+            throw new IllegalArgumentException("fromIndex(" + fromIndex
+                    + ") > toIndex(" + toIndex + ")");
+        }
+
+        this.parent = parent;
+        this.from = fromIndex;
+        this.to = toIndex;
+    }
+
+    @Override
+    public Subscription addChangeListener(CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
+        if (!observing) {
+            parent.addChangeListener(parentListener);
+            observing = true;
+        }
+        super.addChangeListener(l);
+        return () -> removeChangeListener(l);
+    }
+
+    @Override
+    public boolean removeChangeListener(CollectionChangeListener<T, ? super VList<T>, ? super VListChange<T>> l) {
+        boolean result = super.removeChangeListener(l);
+        if (observing && !hasListeners()) {
+            parent.removeChangeListener(parentListener);
+            observing = false;
+        }
+        return result;
+    }
+
+    private void parentChanged(CollectionChangeEvent<T, VList<T>, VListChange<T>> evt) {
+
+        if (evt instanceof VListMoveEventImpl) {
+            VListChangeEvent<T> mEvt = (VListChangeEvent<T>) evt;
+            int lo = Math.min(mEvt.moveFrom(), mEvt.moveTo());
+            int hi = Math.max(mEvt.moveFrom(), mEvt.moveTo()) + mEvt.moveCount();
+            if (lo >= from && hi <= to) {
+                // the move happens inside the window
+                fireShiftedChangeEvent(evt, -from);
+                return;
+            }
+        }
+
+        if (evt instanceof VListPermutationEventImpl) {
+            VListPermutationEventImpl<T> pEvt = (VListPermutationEventImpl<T>) evt;
+            int lo = pEvt.offset();
+            int hi = lo + pEvt.rangePermutation().length;
+            if (lo >= from && hi <= to) {
+                // the permutation happens inside the window
+                fireShiftedChangeEvent(evt, -from);
+                return;
+            }
+        }
+
+        VListChange<T> removed = evt.removed();
+        VListChange<T> added = evt.added();
+
+        if (removed.hasChanges() && added.hasChanges()
+                && Arrays.equals(removed.indices(), added.indices())) {
+            setChanged(removed, added, evt.eventInfo());
+        } else {
+            structureChanged(removed, added, evt.eventInfo());
+        }
+    }
+
+    /**
+     * Translates a change that replaces elements without changing the size
+     * of the parent list (set and permutation events).
+     */
+    private void setChanged(VListChange<T> removed, VListChange<T> added, String evtInfo) {
+        int[] indices = removed.indices();
+
+        int[] relative = new int[indices.length];
+        List<T> elementsRemoved = new ArrayList<>();
+        List<T> elementsAdded = new ArrayList<>();
+        int n = 0;
+
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] >= from && indices[i] < to) {
+                relative[n++] = indices[i] - from;
+                elementsRemoved.add(removed.elements().get(i));
+                elementsAdded.add(added.elements().get(i));
+            }
+        }
+
+        if (n > 0) {
+            fireChangeEvent(VListChangeEvent.getSetEvent(this,
+                    Arrays.copyOf(relative, n), elementsRemoved, elementsAdded, evtInfo));
+        }
+    }
+
+    /**
+     * Translates a change that removes and/or inserts elements. Removed
+     * indices refer to the parent list before the change and are applied
+     * first, added indices refer to the parent list after the change.
+     */
+    private void structureChanged(VListChange<T> removed, VListChange<T> added, String evtInfo) {
+
+        int[] removedRelative = new int[removed.indices().length];
+        List<T> elementsRemoved = new ArrayList<>();
+        int numRemoved = 0;
+
+        int[] removedIndices = removed.indices();
+        int[] permutation = ListUtil.sortingPermutation(removedIndices);
+        int numBefore = 0;
+        for (int k = 0; k < removedIndices.length; k++) {
+            int j = permutation == null ? k : permutation[k];
+            int index = removedIndices[j];
+            if (index < from) {
+                numBefore++;
+            } else if (index < to) {
+                removedRelative[numRemoved++] = index - from;
+                elementsRemoved.add(removed.elements().get(j));
+            }
+        }
+        from -= numBefore;
+        to -= numBefore + numRemoved;
+
+        int[] addedRelative = new int[added.indices().length];
+        List<T> elementsAdded = new ArrayList<>();
+        int numAdded = 0;
+
+        int[] addedIndices = added.indices();
+        permutation = ListUtil.sortingPermutation(addedIndices);
+        for (int k = 0; k < addedIndices.length; k++) {
+            int j = permutation == null ? k : permutation[k];
+            int index = addedIndices[j];
+            boolean inside = ownChange
+                    ? index >= from && index <= to
+                    : index > from && index < to;
+            if (inside) {
+                addedRelative[numAdded++] = index - from;
+                elementsAdded.add(added.elements().get(j));
+                to++;
+            } else if (index <= from) {
+                from++;
+                to++;
+            }
+        }
+
+        if (numRemoved > 0 || numAdded > 0) {
+            fireChangeEvent(new VListChangeEventImpl<>(this,
+                    numAdded == 0 ? VListChange.empty()
+                    : VListChange.newInstance(Arrays.copyOf(addedRelative, numAdded), elementsAdded),
+                    numRemoved == 0 ? VListChange.empty()
+                    : VListChange.newInstance(Arrays.copyOf(removedRelative, numRemoved), elementsRemoved),
+                    evtInfo));
+        }
+    }
+
+    /**
+     * Performs the specified modification of the parent list that may change
+     * its size. Insertions at the boundaries of the window are considered
+     * inside of the window.
+     *
+     * @param <R> result type
+     * @param modification modification to perform
+     * @return result of the modification
+     */
+    private <R> R modify(Supplier<R> modification) {
+        boolean wasOwnChange = ownChange;
+        int sizeBefore = parent.size();
+        ownChange = true;
+        try {
+            return modification.get();
+        } finally {
+            ownChange = wasOwnChange;
+            if (!observing) {
+                // the modification only affects the window
+                to += parent.size() - sizeBefore;
+            }
+        }
+    }
+
+    private void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private int[] shift(int[] indices, int size) {
+        int[] result = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            checkIndex(indices[i], size);
+            result[i] = indices[i] + from;
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public T get(int index) {
+        checkIndex(index, size());
+        return parent.get(from + index);
+    }
+
+    @Override
+    public T set(int index, T element) {
+        checkIndex(index, size());
+        return parent.set(from + index, element);
+    }
+
+    @Override
+    public Collection<T> setAll(int index, Collection<T> elements) {
+        if (index < 0 || index + elements.size() > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", Count: " + elements.size() + ", Size: " + size());
+        }
+        return parent.setAll(from + index, elements);
+    }
+
+    @Override
+    public void add(int index, T element) {
+        checkIndex(index, size() + 1);
+        modify(() -> {
+            parent.add(from + index, element);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        return addAll(size(), c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> c) {
+        checkIndex(index, size() + 1);
+        return modify(() -> parent.addAll(from + index, c));
+    }
+
+    @Override
+    public boolean addAll(int[] indices, Collection<? extends T> c) {
+        int[] shifted = shift(indices, size() + indices.length);
+        return modify(() -> parent.addAll(shifted, c));
+    }
+
+    @Override
+    public T remove(int index) {
+        checkIndex(index, size());
+        return modify(() -> parent.remove(from + index));
+    }
+
+    @Override
+    public boolean removeAll(int... indices) {
+        int[] shifted = shift(indices, size());
+        return modify(() -> parent.removeAll(shifted));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        Objects.requireNonNull(filter);
+
+        int[] indices = IntStream.range(0, size()).filter(i -> filter.test(get(i))).toArray();
+
+        return indices.length > 0 && removeAll(indices);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Set<?> lookup = c instanceof Set ? (Set<?>) c : new HashSet<>(c);
+        return removeIf(lookup::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Set<?> lookup = c instanceof Set ? (Set<?>) c : new HashSet<>(c);
+        return removeIf(e -> !lookup.contains(e));
+    }
+
+    @Override
+    public void clear() {
+        removeRange(0, size());
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < toIndex) {
+            int[] indices = IntStream.range(from + fromIndex, from + toIndex).toArray();
+            modify(() -> parent.removeAll(indices));
+        }
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<T> operator) {
+        Objects.requireNonNull(operator);
+
+        List<T> elements = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            elements.add(operator.apply(get(i)));
+        }
+
+        if (!elements.isEmpty()) {
+            setAll(0, elements);
+        }
+    }
+
+    @Override
+    public void sort(Comparator<? super T> c) {
+        sortRange(0, size(), c);
+    }
+
+    @Override
+    public void sortRange(int fromIndex, int toIndex, Comparator<? super T> comparator) {
+        ListUtil.checkRange(fromIndex, toIndex, size());
+        parent.sortRange(from + fromIndex, from + toIndex, comparator);
+    }
+
+    @Override
+    public void moveRange(int fromIndex, int count, int toIndex) {
+        ListUtil.checkMove(fromIndex, count, toIndex, size());
+        parent.moveRange(from + fromIndex, count, from + toIndex);
+    }
+
+    @Override
+    public boolean setContents(List<? extends T> elements) {
+        return setRangeContents(0, size(), elements);
+    }
+
+    @Override
+    public boolean setRangeContents(int fromIndex, int toIndex, List<? extends T> elements) {
+        Objects.requireNonNull(elements);
+        ListUtil.checkRange(fromIndex, toIndex, size());
+        return modify(() -> parent.setRangeContents(from + fromIndex, from + toIndex, elements));
+    }
+
+    @Override
+    public VList<T> asUnmodifiable() {
+        if (unmodifiableInstance == null) {
+            unmodifiableInstance = new UnmodifiableVList<>(this);
+        }
+        return unmodifiableInstance;
+    }
+}
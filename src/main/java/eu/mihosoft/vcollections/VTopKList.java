@@ -0,0 +1,327 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import vjavax.observer.collection.CollectionChangeEvent;
+
+/**
+ * Live view of the first {@code k} elements of a list according to the
+ * specified comparator, e.g., a leaderboard. Elements that compare equal are
+ * ordered by the time they have been added to the source list.
+ *
+ * <p>
+ * All elements of the source list are kept in an ordered tree and, by their
+ * source index, in an indexed tree. Each element that is added to or removed
+ * from the source list costs {@code O(log n)}, each moved element costs
+ * {@code O(log n)} and a permutation of the source list costs
+ * {@code O(n log n)}.
+ * Only if a change affects the window of the first {@code k} elements, the
+ * window is refilled from the tree and this list fires one event that
+ * contains the elements that left and entered the window.</p>
+ *
+ * <p>
+ * This list is a read-only view. Call {@link #dispose()} to stop observing the
+ * source list.</p>
+ *
+ * @param <T> element type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class VTopKList<T> extends VListView<T> {
+
+    private final VList<T> source;
+    private final int limit;
+    private final Comparator<Node<T>> nodeComparator;
+
+    private final TreeSet<Node<T>> tree;
+
+    // node of each element in the source list, addressed by its index
+    private final IndexedTree<Node<T>> nodes = new IndexedTree<>();
+
+    private List<Node<T>> window = new ArrayList<>();
+
+    private long sequence;
+
+    private final VListChangeListener<T> sourceListener = this::sourceChanged;
+
+    /**
+     * Creates a new view of the first {@code limit} elements of the specified
+     * list.
+     *
+     * @param <T> element type
+     * @param source source list
+     * @param comparator comparator that defines the order of the elements
+     * @param limit maximum number of elements of the view
+     * @return a new view of the first {@code limit} elements of the specified
+     * list
+     */
+    public static <T> VTopKList<T> newInstance(VList<T> source,
+            Comparator<? super T> comparator, int limit) {
+        return new VTopKList<>(source, comparator, limit);
+    }
+
+    private VTopKList(VList<T> source, Comparator<? super T> comparator, int limit) {
+        Objects.requireNonNull(comparator, "Comparator must not be null");
+
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+
+        this.source = source;
+        this.limit = limit;
+        this.nodeComparator = (a, b) -> {
+            int result = comparator.compare(a.value, b.value);
+            return result != 0 ? result : Long.compare(a.seq, b.seq);
+        };
+        this.tree = new TreeSet<>(nodeComparator);
+
+        for (T e : source) {
+            Node<T> node = new Node<>(e, sequence++);
+            nodes.insert(nodes.size(), node);
+            tree.add(node);
+        }
+
+        window = firstNodes();
+
+        source.addChangeListener(sourceListener);
+    }
+
+    /**
+     * Stops observing the source list. Afterwards this list won't change
+     * anymore.
+     */
+    public void dispose() {
+        source.removeChangeListener(sourceListener);
+    }
+
+    /**
+     * Returns the maximum number of elements of this list.
+     *
+     * @return the maximum number of elements of this list
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    private List<Node<T>> firstNodes() {
+        List<Node<T>> result = new ArrayList<>(Math.min(limit, tree.size()));
+        Iterator<Node<T>> it = tree.iterator();
+        while (result.size() < limit && it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    private boolean affectsWindow(Node<T> node, Node<T> boundary, boolean removed) {
+        if (boundary == null) {
+            return true;
+        }
+        int result = nodeComparator.compare(node, boundary);
+        return removed ? result <= 0 : result < 0;
+    }
+
+    private void moveNodes(int from, int count, int to) {
+        List<Node<T>> moved = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            IndexedTree.Node<Node<T>> node = nodes.get(from);
+            moved.add(node.value());
+            nodes.remove(node);
+        }
+        for (int i = 0; i < count; i++) {
+            nodes.insert(to + i, moved.get(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void permuteNodes(int[] permutation) {
+        Object[] nodesAfter = new Object[permutation.length];
+        for (int i = 0; i < permutation.length; i++) {
+            nodesAfter[permutation[i]] = nodes.get(i).value();
+        }
+        nodes.clear();
+        for (Object node : nodesAfter) {
+            nodes.insert(nodes.size(), (Node<T>) node);
+        }
+    }
+
+    private void sourceChanged(CollectionChangeEvent<T, VList<T>, VListChange<T>> evt) {
+
+        if (evt instanceof VListChangeEvent && ((VListChangeEvent<T>) evt).wasMoved()) {
+            // moves don't change the tree, only the source positions
+            VListChangeEvent<T> mEvt = (VListChangeEvent<T>) evt;
+            moveNodes(mEvt.moveFrom(), mEvt.moveCount(), mEvt.moveTo());
+            return;
+        }
+
+        if (evt instanceof VListChangeEvent && ((VListChangeEvent<T>) evt).wasPermutated()) {
+            // permutations don't change the tree, only the source positions
+            permuteNodes(((VListChangeEvent<T>) evt).permutation());
+            return;
+        }
+
+        // the last element of a full window, changes beyond it are invisible
+        Node<T> boundary = window.size() == limit && limit > 0
+                ? window.get(limit - 1) : null;
+
+        boolean affected = limit > 0 && boundary == null;
+
+        if (evt.removed().hasChanges()) {
+            int[] sortedIndices = evt.removed().indices().clone();
+            Arrays.sort(sortedIndices);
+
+            List<IndexedTree.Node<Node<T>>> removed = new ArrayList<>(sortedIndices.length);
+            for (int i : sortedIndices) {
+                IndexedTree.Node<Node<T>> node = nodes.get(i);
+                removed.add(node);
+                tree.remove(node.value());
+                affected |= affectsWindow(node.value(), boundary, true);
+            }
+
+            for (IndexedTree.Node<Node<T>> node : removed) {
+                nodes.remove(node);
+            }
+        }
+
+        if (evt.added().hasChanges()) {
+            int[] indices = evt.added().indices();
+            int[] permutation = ListUtil.sortingPermutation(indices);
+
+            // insert in ascending order, i.e., each index is final
+            for (int i = 0; i < indices.length; i++) {
+                int j = permutation == null ? i : permutation[i];
+                Node<T> node = new Node<>(evt.added().elements().get(j), sequence++);
+                nodes.insert(indices[j], node);
+                tree.add(node);
+                affected |= affectsWindow(node, boundary, false);
+            }
+        }
+
+        if (!affected) {
+            return;
+        }
+
+        List<Node<T>> oldWindow = window;
+        window = firstNodes();
+
+        fireWindowChange(oldWindow, window, evt.eventInfo());
+    }
+
+    private void fireWindowChange(List<Node<T>> oldWindow, List<Node<T>> newWindow, String evtInfo) {
+
+        if (!hasListeners()) {
+            return;
+        }
+
+        // both windows are sorted by the node order, i.e., one merge pass
+        // yields the nodes that left and entered the window
+        List<Integer> removedIndices = new ArrayList<>();
+        List<T> removedElements = new ArrayList<>();
+        List<Integer> addedIndices = new ArrayList<>();
+        List<T> addedElements = new ArrayList<>();
+
+        int i = 0;
+        int j = 0;
+
+        while (i < oldWindow.size() || j < newWindow.size()) {
+            int result;
+            if (i == oldWindow.size()) {
+                result = 1;
+            } else if (j == newWindow.size()) {
+                result = -1;
+            } else {
+                result = nodeComparator.compare(oldWindow.get(i), newWindow.get(j));
+            }
+
+            if (result == 0) {
+                i++;
+                j++;
+            } else if (result < 0) {
+                removedIndices.add(i);
+                removedElements.add(oldWindow.get(i++).value);
+            } else {
+                addedIndices.add(j);
+                addedElements.add(newWindow.get(j++).value);
+            }
+        }
+
+        if (removedIndices.isEmpty() && addedIndices.isEmpty()) {
+            return;
+        }
+
+        fireChangeEvent(new VListChangeEventImpl<>(this,
+                addedIndices.isEmpty() ? VListChange.empty()
+                : VListChange.newInstance(toArray(addedIndices), addedElements),
+                removedIndices.isEmpty() ? VListChange.empty()
+                : VListChange.newInstance(toArray(removedIndices), removedElements),
+                evtInfo));
+    }
+
+    private static int[] toArray(List<Integer> indices) {
+        return indices.stream().mapToInt(i -> i).toArray();
+    }
+
+    @Override
+    public int size() {
+        return window.size();
+    }
+
+    @Override
+    public T get(int index) {
+        return window.get(index).value;
+    }
+
+    /**
+     * Element of the source list. The sequence number distinguishes elements
+     * that compare equal.
+     *
+     * @param <T> element type
+     */
+    private static final class Node<T> {
+
+        private final T value;
+        private final long seq;
+
+        Node(T value, long seq) {
+            this.value = value;
+            this.seq = seq;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import vjavax.observer.Property;
+import vjavax.observer.Subscription;
+import vjavax.observer.ValueChangeListener;
+
+/**
+ * Transaction that spans several lists, maps and properties. Each collection
+ * or property that takes part in the transaction is edited via a working copy
+ * (see {@link #edit(VList)}, {@link #edit(VMap)} and {@link #edit(Property)}),
+ * i.e., the collections and properties don't change and don't fire events
+ * until the transaction is committed.
+ *
+ * <p>
+ * On commit the working copies are written back in the order the collections
+ * have been added to the transaction. Afterwards each changed collection fires
+ * one event with its net change, in the same order. Listeners therefore never
+ * observe a state where only some of the collections have been changed. If
+ * writing back fails, the collections that have already been written are
+ * restored and the exception is rethrown. Aborting the transaction discards
+ * the working copies.</p>
+ *
+ * <p>
+ * Properties are set after all collections have been written and before the
+ * collections notify their listeners, in the order the properties have been
+ * added to the transaction. Since properties notify their listeners when they
+ * are set, property listeners observe all collection changes of the
+ * transaction but only the properties that have been set before.</p>
+ *
+ * <p>
+ * Lists created by {@link VList#newInstance(List)} and maps created by
+ * {@link VMap#newInstance(Map)} (and their variants) defer their events until
+ * all collections have been written. Other implementations fire their events
+ * while they are written back.</p>
+ *
+ * <pre><code>
+ * try (VTransaction tx = VTransaction.begin()) {
+ *     List&lt;Item&gt; items = tx.edit(itemList);
+ *     Map&lt;String, Item&gt; byName = tx.edit(itemsByName);
+ *     Property&lt;Item&gt; selected = tx.edit(selection);
+ *
+ *     items.add(item);
+ *     byName.put(item.getName(), item);
+ *     selected.set(item);
+ *
+ *     tx.commit();
+ * } // aborts if not committed
+ * </code></pre>
+ *
+ * <p>
+ * Transactions are not isolated: changes made to a collection outside of the
+ * transaction after it has been added to the transaction are overwritten on
+ * commit. A transaction must only be used by one thread.</p>
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class VTransaction implements AutoCloseable {
+
+    // identity of each collection, equal collections are separate participants
+    private final Map<Object, Participant> participants = new IdentityHashMap<>();
+    private final List<Participant> order = new ArrayList<>();
+    private final List<Participant> properties = new ArrayList<>();
+
+    private boolean active = true;
+
+    private VTransaction() {
+        //
+    }
+
+    /**
+     * Begins a new transaction.
+     *
+     * @return a new transaction
+     */
+    public static VTransaction begin() {
+        return new VTransaction();
+    }
+
+    /**
+     * Adds the specified list to this transaction and returns its working
+     * copy. Subsequent calls with the same list return the same copy.
+     *
+     * @param <T> element type
+     * @param list list to edit
+     * @return the working copy of the specified list
+     * @throws IllegalStateException if this transaction has already been
+     * committed or aborted
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> edit(VList<T> list) {
+        Objects.requireNonNull(list);
+        checkActive();
+        return ((ListParticipant<T>) participants.computeIfAbsent(list,
+                l -> add(new ListParticipant<>(list)))).copy;
+    }
+
+    /**
+     * Adds the specified map to this transaction and returns its working copy.
+     * Subsequent calls with the same map return the same copy.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param map map to edit
+     * @return the working copy of the specified map
+     * @throws IllegalStateException if this transaction has already been
+     * committed or aborted
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> edit(VMap<K, V> map) {
+        Objects.requireNonNull(map);
+        checkActive();
+        return ((MapParticipant<K, V>) participants.computeIfAbsent(map,
+                m -> add(new MapParticipant<>(map)))).copy;
+    }
+
+    /**
+     * Adds the specified property to this transaction and returns its working
+     * copy. Subsequent calls with the same property return the same copy. The
+     * working copy can't be observed, i.e., {@link Property#onChanged} throws
+     * an {@link UnsupportedOperationException}.
+     *
+     * @param <V> value type
+     * @param property property to edit
+     * @return the working copy of the specified property
+     * @throws IllegalStateException if this transaction has already been
+     * committed or aborted
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Property<V> edit(Property<V> property) {
+        Objects.requireNonNull(property);
+        checkActive();
+        return (PropertyParticipant<V>) participants.computeIfAbsent(property, p -> {
+            PropertyParticipant<V> participant = new PropertyParticipant<>(property);
+            properties.add(participant);
+            return participant;
+        });
+    }
+
+    private Participant add(Participant p) {
+        order.add(p);
+        return p;
+    }
+
+    /**
+     * Writes the working copies back and notifies the listeners of the changed
+     * collections. If writing back fails, the collections that have already
+     * been written are restored without notifying their listeners, the
+     * properties that have already been set are reset and the transaction is
+     * aborted.
+     *
+     * @throws IllegalStateException if this transaction has already been
+     * committed or aborted
+     */
+    public void commit() {
+        checkActive();
+        active = false;
+
+        List<Runnable> notifications = new ArrayList<>(order.size());
+
+        try {
+            for (Participant p : order) {
+                Runnable notification = p.apply();
+                if (notification != null) {
+                    notifications.add(notification);
+                }
+            }
+            for (Participant p : properties) {
+                p.apply();
+            }
+        } catch (RuntimeException | Error ex) {
+            rollback(ex);
+            throw ex;
+        }
+
+        for (Runnable notification : notifications) {
+            notification.run();
+        }
+    }
+
+    private void rollback(Throwable cause) {
+        rollback(properties, cause);
+        rollback(order, cause);
+    }
+
+    private static void rollback(List<Participant> participants, Throwable cause) {
+        for (int i = participants.size() - 1; i >= 0; i--) {
+            try {
+                participants.get(i).rollback();
+            } catch (RuntimeException | Error ex) {
+                cause.addSuppressed(ex);
+            }
+        }
+    }
+
+    /**
+     * Aborts this transaction. The working copies are discarded and the
+     * collections remain unchanged.
+     *
+     * @throws IllegalStateException if this transaction has already been
+     * committed or aborted
+     */
+    public void abort() {
+        checkActive();
+        active = false;
+    }
+
+    /**
+     * Indicates whether this transaction has neither been committed nor
+     * aborted.
+     *
+     * @return {@code true} if this transaction is active; {@code false}
+     * otherwise
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Aborts this transaction if it is still active.
+     */
+    @Override
+    public void close() {
+        if (active) {
+            abort();
+        }
+    }
+
+    private void checkActive() {
+        if (!active) {
+            throw new IllegalStateException("Transaction has already been committed or aborted");
+        }
+    }
+
+    /**
+     * Collection or property that takes part in a transaction.
+     */
+    private interface Participant {
+
+        /**
+         * Writes the working copy back.
+         *
+         * @return an action that notifies the listeners or {@code null} if
+         * nothing changed or the listeners have already been notified
+         */
+        Runnable apply();
+
+        /**
+         * Restores the contents or value before {@link #apply()}. Does
+         * nothing if it hasn't been written.
+         */
+        void rollback();
+    }
+
+    private static final class ListParticipant<T> implements Participant {
+
+        private final VList<T> target;
+        private final List<T> copy;
+        private List<T> before;
+
+        ListParticipant(VList<T> target) {
+            this.target = target;
+            this.copy = new ArrayList<>(target);
+        }
+
+        @Override
+        public Runnable apply() {
+            before = new ArrayList<>(target);
+            return write(copy);
+        }
+
+        @Override
+        public void rollback() {
+            if (before != null) {
+                write(before);
+            }
+        }
+
+        private Runnable write(List<T> contents) {
+            if (target instanceof VListImpl) {
+                return ((VListImpl<T>) target).applyContents(contents);
+            }
+            target.setContents(contents);
+            return null;
+        }
+    }
+
+    private static final class MapParticipant<K, V> implements Participant {
+
+        private final VMap<K, V> target;
+        private final Map<K, V> copy;
+        private Map<K, V> before;
+
+        MapParticipant(VMap<K, V> target) {
+            this.target = target;
+            this.copy = new LinkedHashMap<>(target);
+        }
+
+        @Override
+        public Runnable apply() {
+            before = new LinkedHashMap<>(target);
+            return write(copy);
+        }
+
+        @Override
+        public void rollback() {
+            if (before != null) {
+                write(before);
+            }
+        }
+
+        private Runnable write(Map<K, V> contents) {
+            return VMapImpl.writeContents(target, contents);
+        }
+    }
+
+    private static final class PropertyParticipant<V> implements Participant, Property<V> {
+
+        private final Property<V> target;
+        private V value;
+        private boolean changed;
+        private V before;
+        private boolean written;
+
+        PropertyParticipant(Property<V> target) {
+            this.target = target;
+            this.value = target.get();
+        }
+
+        @Override
+        public V get() {
+            return value;
+        }
+
+        @Override
+        public void set(V value) {
+            this.value = value;
+            this.changed = true;
+        }
+
+        @Override
+        public Subscription onChanged(ValueChangeListener<? super V> listener) {
+            throw new UnsupportedOperationException("Working copies can't be observed");
+        }
+
+        @Override
+        public Runnable apply() {
+            before = target.get();
+            if (changed && before != value) {
+                written = true;
+                target.set(value);
+            }
+            return null;
+        }
+
+        @Override
+        public void rollback() {
+            if (written) {
+                target.set(before);
+            }
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * If you use this software for scientific research then please cite the following publication(s):
+ *
+ * M. Hoffer, C. Poliwoda, & G. Wittum. (2013). Visual reflection library:
+ * a framework for declarative GUI programming on the Java platform.
+ * Computing and Visualization in Science, 2013, 16(4),
+ * 181–192. http://doi.org/10.1007/s00791-014-0230-y
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+package eu.mihosoft.vcollections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import vjavax.observer.Subscription;
+
+/**
+ * Observable map that keeps its state as a sequence of immutable versions.
+ * Each version is a hash array mapped trie, a modification produces a new
+ * version that shares all unmodified nodes with the previous one, i.e., it
+ * only copies the {@code O(log32 n)} nodes on the path to the modified key.
+ * Keeping many historical versions (see {@link #snapshot()}) therefore costs
+ * little more memory than keeping the current version.
+ *
+ * Events reference the versions before and after the change (see
+ * {@link VMapChangeEvent#before()} and {@link VMapChangeEvent#after()}). The
+ * added and removed entries are computed on demand from the differences of
+ * both versions, modified values are detected by identity. Modifications
+ * that don't change the current version don't fire events.
+ *
+ * The current version is published safely, i.e., {@link #snapshot()} and all
+ * read operations may be called from any thread. Like {@link VMapImpl}
+ * modifications must not be performed concurrently.
+ *
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class VersionedVMap<K, V> extends AbstractMap<K, V> implements VMap<K, V> {
+
+    private volatile PersistentHashMap<K, V> current;
+
+    private VMapChangeSupport<K, V> mapChangeSupport;
+
+    private String evtInfo = "";
+    private EqualityPolicy equalityPolicy = EqualityPolicy.NONE;
+
+    private Set<Entry<K, V>> entrySet;
+    private VMap<K, V> unmodifiableInstance;
+
+    private VersionedVMap(PersistentHashMap<K, V> current) {
+        this.current = current;
+    }
+
+    /**
+     * Creates a new empty versioned map.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @return a new empty versioned map
+     */
+    public static <K, V> VersionedVMap<K, V> newInstance() {
+        return new VersionedVMap<>(new TransientHashMap<K, V>().snapshot());
+    }
+
+    /**
+     * Creates a new versioned map that contains the entries of the specified
+     * map. The entries are copied.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param entries initial entries
+     * @return a new versioned map that contains the specified entries
+     */
+    public static <K, V> VersionedVMap<K, V> newInstance(Map<? extends K, ? extends V> entries) {
+        TransientHashMap<K, V> map = new TransientHashMap<>();
+        map.putAll(entries);
+        return new VersionedVMap<>(map.snapshot());
+    }
+
+    /**
+     * Returns the current version of this map in constant time. Versions are
+     * immutable and safe to read from any thread.
+     *
+     * @return the current version of this map
+     */
+    @Override
+    public Map<K, V> snapshot() {
+        return current;
+    }
+
+    private VMapChangeSupport<K, V> getMapChangeSupport() {
+        if (mapChangeSupport == null) {
+            mapChangeSupport = new VMapChangeSupport<>();
+        }
+        return mapChangeSupport;
+    }
+
+    private boolean hasListeners() {
+        return mapChangeSupport != null && mapChangeSupport.hasListeners();
+    }
+
+    /**
+     * Applies the specified modification to a new version and fires an event
+     * if the version differs from the current version.
+     *
+     * @param <R> result type
+     * @param modification modification to apply
+     * @return result of the modification
+     */
+    private <R> R write(Function<TransientHashMap<K, V>, R> modification) {
+        PersistentHashMap<K, V> before = current;
+        TransientHashMap<K, V> next = before.asTransient();
+
+        R result = modification.apply(next);
+
+        PersistentHashMap<K, V> after = next.snapshot();
+
+        if (!before.isSameVersion(after)) {
+            current = after;
+            if (hasListeners()) {
+                mapChangeSupport.fireEvent(new VMapVersionEventImpl<>(
+                        this, before, after, getEventInfo()));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return current.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return current.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        PersistentHashMap<K, V> map = current;
+        if (equalityPolicy != EqualityPolicy.NONE && map.containsKey(key)) {
+            V previous = map.get(key);
+            if (equalityPolicy.isUnchanged(previous, value)) {
+                return previous;
+            }
+        }
+        return write(m -> m.put(key, value));
+    }
+
+    @Override
+    public V remove(Object key) {
+        return write(m -> m.remove(key));
+    }
+
+    /**
+     * Puts all entries of the specified map into a single new version, i.e.,
+     * listeners are notified once.
+     *
+     * @param m entries to put
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        write(map -> {
+            for (Entry<? extends K, ? extends V> e : m.entrySet()) {
+                K key = e.getKey();
+                V value = e.getValue();
+                if (equalityPolicy == EqualityPolicy.NONE || !map.containsKey(key)
+                        || !equalityPolicy.isUnchanged(map.get(key), value)) {
+                    map.put(key, value);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Replaces all values in a single new version, i.e., listeners are
+     * notified once.
+     *
+     * @param function function that computes the new values
+     */
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        write(map -> {
+            for (Entry<K, V> e : current.entrySet()) {
+                V value = function.apply(e.getKey(), e.getValue());
+                if (equalityPolicy == EqualityPolicy.NONE
+                        || !equalityPolicy.isUnchanged(e.getValue(), value)) {
+                    map.put(e.getKey(), value);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void clear() {
+        write(map -> {
+            map.clear();
+            return null;
+        });
+    }
+
+    @Override
+    @SafeVarargs
+    public final boolean removeAll(K... keys) {
+        if (keys.length == 0) {
+            return true;
+        }
+        return write(map -> {
+            boolean result = false;
+            for (K key : keys) {
+                if (map.containsKey(key)) {
+                    map.remove(key);
+                    result = true;
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    // iterates over the version that is current when the
+                    // iterator is created
+                    Iterator<Entry<K, V>> it = current.entrySet().iterator();
+                    return new Iterator<Entry<K, V>>() {
+
+                        private Entry<K, V> last;
+
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Entry<K, V> next() {
+                            Entry<K, V> e = it.next();
+                            last = new SimpleEntry<K, V>(e) {
+                                @Override
+                                public V setValue(V value) {
+                                    super.setValue(value);
+                                    return put(getKey(), value);
+                                }
+                            };
+                            return last;
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) {
+                                throw new IllegalStateException();
+                            }
+                            VersionedVMap.this.remove(last.getKey());
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return current.entrySet().contains(o);
+                }
+
+                @Override
+                public int size() {
+                    return current.size();
+                }
+
+                @Override
+                public void clear() {
+                    VersionedVMap.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    @Override
+    public VMap<K, V> asUnmodifiable() {
+        if (unmodifiableInstance == null) {
+            unmodifiableInstance = new UnmodifiableVMap<>(this);
+        }
+        return unmodifiableInstance;
+    }
+
+    @Override
+    public void setEqualityPolicy(EqualityPolicy policy) {
+        this.equalityPolicy = Objects.requireNonNull(policy);
+    }
+
+    @Override
+    public EqualityPolicy getEqualityPolicy() {
+        return this.equalityPolicy;
+    }
+
+    @Override
+    public void setEventInfo(String evtInfo) {
+        this.evtInfo = evtInfo == null ? "" : evtInfo;
+    }
+
+    @Override
+    public String getEventInfo() {
+        return this.evtInfo;
+    }
+
+    @Override
+    public Subscription addChangeListener(VMapChangeListener<K, V> l) {
+        return getMapChangeSupport().addChangeListener(l);
+    }
+
+    @Override
+    public boolean removeChangeListener(VMapChangeListener<K, V> l) {
+        boolean result = getMapChangeSupport().removeChangeListener(l);
+        if (!getMapChangeSupport().hasListeners()) {
+            mapChangeSupport = null;
+        }
+        return result;
+    }
+}
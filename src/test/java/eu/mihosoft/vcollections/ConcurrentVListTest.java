@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for {@link ConcurrentVList}.
+ */
+public class ConcurrentVListTest {
+
+    @Test
+    public void sequencedEventsTest() {
+        ConcurrentVList<Integer> list = ConcurrentVList.newInstance(Arrays.asList(3, 1, 2));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        list.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        list.add(4);
+        list.sort(null);
+        list.removeAll(0, 1);
+
+        Assert.assertEquals(Arrays.asList(3, 4), list);
+        Assert.assertEquals(3, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            Assert.assertSame(list, events.get(i).source());
+            Assert.assertEquals(i + 1, events.get(i).sequenceNumber());
+        }
+        Assert.assertTrue(events.get(1).wasPermutated());
+
+        // iterators work on snapshots
+        List<Integer> seen = new ArrayList<>();
+        for (Integer i : list) {
+            list.add(i);
+            seen.add(i);
+        }
+        Assert.assertEquals(Arrays.asList(3, 4), seen);
+        Assert.assertEquals(Arrays.asList(3, 4, 3, 4), list);
+    }
+
+    @Test
+    public void concurrentWritersTest() throws InterruptedException {
+        ConcurrentVList<Integer> list = ConcurrentVList.newInstance();
+
+        ConcurrentSkipListMap<Long, Integer> added = new ConcurrentSkipListMap<>();
+        list.addChangeListener(e -> added.put(((VListChangeEvent<Integer>) e).sequenceNumber(),
+                e.added().elements().get(0)));
+
+        int numThreads = 4;
+        int numElements = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean readFailed = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < numThreads; t++) {
+            final int offset = t * numElements;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int i = 0; i < numElements; i++) {
+                    list.add(offset + i);
+                    // reads see consistent states
+                    int size = list.size();
+                    if (size == 0 || list.get(size - 1) == null) {
+                        readFailed.set(true);
+                    }
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        Assert.assertFalse(readFailed.get());
+        Assert.assertEquals(numThreads * numElements, list.size());
+
+        // ordering the events by sequence number reproduces the list
+        Assert.assertEquals(numThreads * numElements, added.size());
+        Assert.assertEquals(Long.valueOf(1), added.firstKey());
+        Assert.assertEquals(new ArrayList<>(list), new ArrayList<>(added.values()));
+
+        List<Integer> sorted = new ArrayList<>(list);
+        Collections.sort(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            Assert.assertEquals(Integer.valueOf(i), sorted.get(i));
+        }
+    }
+
+    @Test
+    public void snapshotsDuringWritesTest() throws InterruptedException {
+        ConcurrentVList<Integer> list = ConcurrentVList.newInstance();
+        for (int i = 0; i < 100; i++) {
+            list.add(i);
+        }
+
+        // later writes must not leak into a snapshot
+        List<Integer> snapshot = list.snapshot();
+        list.set(5, -1);
+        list.add(50, -2);
+        list.remove(0);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(Integer.valueOf(i), snapshot.get(i));
+        }
+
+        list.clear();
+
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                list.add(i);
+                if (i % 100 == 99) {
+                    list.set(i, i);
+                }
+            }
+            done.set(true);
+        });
+        writer.start();
+
+        // each snapshot is a consistent prefix of the written elements
+        while (!done.get()) {
+            int n = 0;
+            for (Integer e : list) {
+                Assert.assertEquals(Integer.valueOf(n++), e);
+            }
+        }
+        writer.join();
+
+        Assert.assertEquals(20000, list.snapshot().size());
+    }
+}
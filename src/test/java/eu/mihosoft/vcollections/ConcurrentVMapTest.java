@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests for {@link ConcurrentVMap}.
+ */
+public class ConcurrentVMapTest {
+
+    @Test
+    public void eventsTest() {
+        ConcurrentVMap<String, Integer> map = ConcurrentVMap.newInstance();
+        map.put("a", 1);
+
+        List<VMapChangeEvent<String, Integer>> events = new ArrayList<>();
+        map.addChangeListener(events::add);
+
+        map.put("b", 2);
+        map.merge("a", 10, Integer::sum);
+        Assert.assertEquals(Integer.valueOf(11), map.putIfAbsent("a", 5));
+        Assert.assertEquals(Integer.valueOf(2), map.computeIfAbsent("b", k -> 7));
+        Assert.assertFalse(map.remove("a", 1));
+        Assert.assertTrue(map.remove("a", 11));
+        map.computeIfPresent("b", (k, v) -> null);
+
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertEquals(4, events.size());
+
+        Assert.assertFalse(events.get(0).wasSet());
+        Assert.assertEquals(Collections.singletonMap("b", 2), events.get(0).added().entries());
+        Assert.assertTrue(events.get(1).wasSet());
+        Assert.assertEquals(Collections.singletonMap("a", 1), events.get(1).removed().entries());
+        Assert.assertEquals(Collections.singletonMap("a", 11), events.get(1).added().entries());
+        Assert.assertEquals(Collections.singletonMap("a", 11), events.get(2).removed().entries());
+        Assert.assertFalse(events.get(2).wasAdded());
+        Assert.assertEquals(Collections.singletonMap("b", 2), events.get(3).removed().entries());
+
+        // unchanged values are not reported
+        map.put("c", 3);
+        map.setEqualityPolicy(EqualityPolicy.EQUALS);
+        map.put("c", 3);
+        Assert.assertEquals(5, events.size());
+
+        // modifications via the entry set fire events
+        map.entrySet().iterator().next().setValue(4);
+        map.keySet().clear();
+        Assert.assertEquals(7, events.size());
+        Assert.assertEquals(Collections.singletonMap("c", 4), events.get(6).removed().entries());
+    }
+
+    @Test
+    public void reentrantListenerTest() {
+        ConcurrentVMap<Integer, Integer> map = ConcurrentVMap.newInstance();
+
+        List<Integer> values = new ArrayList<>();
+        map.addChangeListener(e -> {
+            Integer v = e.added().entries().get(0);
+            values.add(v);
+            if (v != null && v < 5) {
+                // nested writes are delivered after the current event
+                map.put(0, v + 1);
+                values.add(-v);
+            }
+        });
+
+        map.put(0, 0);
+
+        Assert.assertEquals(Integer.valueOf(5), map.get(0));
+        Assert.assertEquals(java.util.Arrays.asList(0, 0, 1, -1, 2, -2, 3, -3, 4, -4, 5),
+                values);
+    }
+
+    @Test
+    public void perKeyOrderTest() throws InterruptedException {
+        ConcurrentVMap<Integer, Integer> map = ConcurrentVMap.newInstance();
+
+        int numKeys = 16;
+        int numThreads = 4;
+        int numIncrements = 2000;
+
+        Map<Integer, List<Integer>> delivered = new ConcurrentHashMap<>();
+        map.addChangeListener(e -> e.added().entries().forEach((k, v)
+                -> delivered.computeIfAbsent(k, key -> Collections.synchronizedList(new ArrayList<>())).add(v)));
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int i = 0; i < numIncrements; i++) {
+                    map.merge(i % numKeys, 1, Integer::sum);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int k = 0; k < numKeys; k++) {
+            expected.put(k, numThreads * numIncrements / numKeys);
+        }
+        Assert.assertEquals(expected, map);
+
+        // each key reports 1, 2, 3, ... in this order
+        for (int k = 0; k < numKeys; k++) {
+            List<Integer> values = delivered.get(k);
+            Assert.assertEquals(expected.get(k).intValue(), values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Assert.assertEquals(i + 1, values.get(i).intValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link MutationQueue}.
+ */
+public class MutationQueueTest {
+
+    @Test
+    public void coalescedListEventTest() throws Exception {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 3)));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        list.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        // drains run when the test decides
+        List<Runnable> tasks = new ArrayList<>();
+        MutationQueue<List<Integer>> queue = MutationQueue.newInstance(list, tasks::add);
+
+        CompletableFuture<Boolean> added = queue.submit(l -> l.add(4));
+        CompletableFuture<Integer> set = queue.submit(l -> l.set(0, 10));
+        CompletableFuture<Integer> failed = queue.submit(l -> l.get(100));
+        CompletableFuture<Void> removed = queue.execute(l -> l.remove(1));
+
+        Assert.assertEquals(1, tasks.size());
+        Assert.assertFalse(added.isDone());
+
+        tasks.remove(0).run();
+
+        Assert.assertEquals(Arrays.asList(10, 3, 4), list);
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(added.get());
+        Assert.assertEquals(Integer.valueOf(1), set.get());
+        Assert.assertTrue(removed.isDone());
+        Assert.assertTrue(failed.isCompletedExceptionally());
+        Assert.assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void updatesAndAppendsTest() throws Exception {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 3)));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        list.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        List<Runnable> tasks = new ArrayList<>();
+        MutationQueue<List<Integer>> queue = MutationQueue.newInstance(list, tasks::add);
+
+        queue.execute(l -> l.set(2, 30));
+        queue.execute(l -> l.add(4));
+        queue.execute(l -> l.set(0, 10));
+        // intermediate values are not reported
+        queue.execute(l -> l.set(2, 300));
+        queue.execute(l -> l.set(3, 40));
+        CompletableFuture<Integer> size = queue.submit(List::size);
+
+        tasks.remove(0).run();
+
+        Assert.assertEquals(Arrays.asList(10, 2, 300, 40), list);
+        Assert.assertEquals(Integer.valueOf(4), size.get());
+
+        Assert.assertEquals(1, events.size());
+        VListChangeEvent<Integer> evt = events.get(0);
+        Assert.assertArrayEquals(new int[]{0, 2}, evt.removed().indices());
+        Assert.assertEquals(Arrays.asList(1, 3), evt.removed().elements());
+        Assert.assertArrayEquals(new int[]{0, 2, 3}, evt.added().indices());
+        Assert.assertEquals(Arrays.asList(10, 300, 40), evt.added().elements());
+    }
+
+    @Test
+    public void coalescedMapEventsTest() throws Exception {
+        VMap<String, Integer> map = VMap.newInstance(new HashMap<>());
+        map.put("a", 1);
+        map.put("b", 2);
+
+        List<VMapChangeEvent<String, Integer>> events = new ArrayList<>();
+        map.addChangeListener(events::add);
+
+        List<Runnable> tasks = new ArrayList<>();
+        MutationQueue<Map<String, Integer>> queue = MutationQueue.newInstance(map, tasks::add);
+
+        CompletableFuture<Integer> removed = queue.submit(m -> m.remove("a"));
+        queue.submit(m -> m.put("b", 20));
+        queue.submit(m -> m.put("c", 3));
+        // intermediate states are not reported
+        queue.submit(m -> m.put("d", 4));
+        queue.submit(m -> m.remove("d"));
+
+        tasks.remove(0).run();
+
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("b", 20);
+        expected.put("c", 3);
+        Assert.assertEquals(expected, map);
+        Assert.assertEquals(Integer.valueOf(1), removed.get());
+
+        // one event per drain
+        Map<String, Integer> expectedRemoved = new HashMap<>();
+        expectedRemoved.put("a", 1);
+        expectedRemoved.put("b", 2);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(expectedRemoved, events.get(0).removed().entries());
+        Assert.assertEquals(expected, events.get(0).added().entries());
+    }
+
+    @Test
+    public void rejectedDrainTest() throws Exception {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 3)));
+
+        List<Runnable> tasks = new ArrayList<>();
+        boolean[] reject = {true};
+        MutationQueue<List<Integer>> queue = MutationQueue.newInstance(list, task -> {
+            if (reject[0]) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(task);
+        });
+
+        CompletableFuture<Boolean> rejected = queue.submit(l -> l.add(4));
+        Assert.assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+        }
+
+        // the queue can be used again once the executor accepts tasks
+        reject[0] = false;
+        CompletableFuture<Boolean> added = queue.submit(l -> l.add(5));
+        Assert.assertEquals(1, tasks.size());
+        tasks.get(0).run();
+
+        Assert.assertTrue(added.get());
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 5), list);
+    }
+
+    @Test
+    public void producersTest() throws InterruptedException, ExecutionException {
+        VList<Integer> list = VList.newInstance(new ArrayList<>());
+
+        List<Integer> eventSizes = Collections.synchronizedList(new ArrayList<>());
+        list.addChangeListener(e -> eventSizes.add(e.added().elements().size()));
+
+        ExecutorService owner = Executors.newSingleThreadExecutor();
+        MutationQueue<List<Integer>> queue = MutationQueue.newInstance(list, owner);
+
+        int numThreads = 4;
+        int numElements = 2000;
+        List<CompletableFuture<Boolean>> futures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> producers = new ArrayList<>();
+
+        for (int t = 0; t < numThreads; t++) {
+            final int offset = t * numElements;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < numElements; i++) {
+                    int value = offset + i;
+                    futures.add(queue.submit(l -> l.add(value)));
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread t : producers) {
+            t.join();
+        }
+        for (CompletableFuture<Boolean> f : futures) {
+            Assert.assertTrue(f.get());
+        }
+        owner.shutdown();
+        Assert.assertTrue(owner.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(numThreads * numElements, list.size());
+        Assert.assertEquals(numThreads * numElements, new HashSet<>(list).size());
+        Assert.assertEquals(numThreads * numElements,
+                eventSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link ShardedDispatcher}.
+ */
+public class ShardedDispatcherTest {
+
+    @Test
+    public void listKeyOrderTest() throws Exception {
+        VList<String> list = VList.newInstance(new ArrayList<>());
+
+        Map<Character, List<String>> delivered = new ConcurrentHashMap<>();
+        Map<Character, List<String>> expected = new HashMap<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        try (ShardedDispatcher dispatcher = ShardedDispatcher.newInstance(4)) {
+            dispatcher.subscribe(list, s -> s.charAt(0), evt -> {
+                threads.add(Thread.currentThread().getName());
+                // removals of an event are reported before its additions
+                for (String s : evt.removed().elements()) {
+                    delivered.computeIfAbsent(s.charAt(0), k -> new ArrayList<>()).add("-" + s);
+                }
+                for (String s : evt.added().elements()) {
+                    delivered.computeIfAbsent(s.charAt(0), k -> new ArrayList<>()).add("+" + s);
+                }
+            });
+
+            Random r = VListTest.getRandom();
+
+            for (int i = 0; i < 2000; i++) {
+                if (list.isEmpty() || r.nextInt(3) > 0) {
+                    List<String> added = new ArrayList<>();
+                    for (int j = 0; j < 1 + r.nextInt(5); j++) {
+                        added.add((char) ('a' + r.nextInt(26)) + "" + i + "-" + j);
+                    }
+                    list.addAll(added);
+                    for (String s : added) {
+                        expected.computeIfAbsent(s.charAt(0), k -> new ArrayList<>()).add("+" + s);
+                    }
+                } else {
+                    String s = list.remove(r.nextInt(list.size()));
+                    expected.computeIfAbsent(s.charAt(0), k -> new ArrayList<>()).add("-" + s);
+                }
+            }
+
+            dispatcher.barrier().get(10, TimeUnit.SECONDS);
+        }
+
+        Assert.assertEquals(expected, delivered);
+        Assert.assertTrue(threads.size() > 1);
+        threads.forEach(name -> Assert.assertTrue(name.startsWith("vcollections-shard-")));
+    }
+
+    @Test
+    public void mapKeyOrderTest() throws Exception {
+        VMap<Integer, Integer> map = VMap.newInstance(new HashMap<>());
+
+        Map<Integer, List<Integer>> delivered = new ConcurrentHashMap<>();
+        AtomicInteger shardEvents = new AtomicInteger();
+
+        int numKeys = 32;
+        int numUpdates = 200;
+
+        try (ShardedDispatcher dispatcher = ShardedDispatcher.newInstance(3)) {
+            dispatcher.subscribe(map, evt -> {
+                shardEvents.incrementAndGet();
+                evt.added().entries().forEach((k, v)
+                        -> delivered.computeIfAbsent(k, key -> new ArrayList<>()).add(v));
+            });
+
+            for (int v = 1; v <= numUpdates; v++) {
+                Map<Integer, Integer> entries = new HashMap<>();
+                for (int k = 0; k < numKeys; k++) {
+                    entries.put(k, v);
+                }
+                map.putAll(entries);
+            }
+
+            dispatcher.barrier().get(10, TimeUnit.SECONDS);
+        }
+
+        // each event has been split into one event per shard
+        Assert.assertEquals(3 * numUpdates, shardEvents.get());
+
+        for (int k = 0; k < numKeys; k++) {
+            List<Integer> values = delivered.get(k);
+            Assert.assertEquals(numUpdates, values.size());
+            for (int i = 0; i < numUpdates; i++) {
+                Assert.assertEquals(i + 1, values.get(i).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void dispatchCompletionTest() throws Exception {
+        VList<Integer> list = VList.newInstance(new ArrayList<>());
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+
+        try (ShardedDispatcher dispatcher = ShardedDispatcher.newInstance(2)) {
+            List<VListChangeEvent<Integer>> events = new ArrayList<>();
+            list.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+            list.addAll(Arrays.asList(1, 2, 3, 4, 5));
+
+            dispatcher.dispatch(events.get(0), i -> i,
+                    evt -> processed.addAll(evt.added().elements()))
+                    .get(10, TimeUnit.SECONDS);
+        }
+
+        Assert.assertEquals(5, processed.size());
+    }
+
+    @Test
+    public void listenerExceptionTest() throws Exception {
+        VMap<Integer, Integer> map = VMap.newInstance(new HashMap<>());
+
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Set<Integer> delivered = ConcurrentHashMap.newKeySet();
+        IllegalStateException failure = new IllegalStateException("key 0");
+
+        try (ShardedDispatcher dispatcher = ShardedDispatcher.newInstance(2)) {
+            dispatcher.subscribe(map, evt -> {
+                if (evt.added().entries().containsKey(0)) {
+                    throw failure;
+                }
+                delivered.addAll(evt.added().entries().keySet());
+            }, failures::add);
+
+            Map<Integer, Integer> entries = new HashMap<>();
+            entries.put(0, 0);
+            entries.put(1, 1);
+            map.putAll(entries);
+
+            dispatcher.barrier().get(10, TimeUnit.SECONDS);
+        }
+
+        // the other shard of the event is still delivered
+        Assert.assertEquals(Collections.singleton(1), delivered);
+        Assert.assertEquals(Collections.singletonList(failure), failures);
+    }
+}
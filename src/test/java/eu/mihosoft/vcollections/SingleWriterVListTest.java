@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for {@link SingleWriterVList}.
+ */
+public class SingleWriterVListTest {
+
+    @Test
+    public void versionedEventsTest() {
+        SingleWriterVList<Integer> list = SingleWriterVList.newInstance(Arrays.asList(3, 1, 2));
+        Assert.assertEquals(0, list.version().number());
+
+        List<Long> numbers = new ArrayList<>();
+        list.addChangeListener(e -> {
+            VListChangeEvent<Integer> evt = (VListChangeEvent<Integer>) e;
+            // the version that contains the change is published before notification
+            Assert.assertSame(list, evt.source());
+            Assert.assertEquals(list.version().number(), evt.sequenceNumber());
+            numbers.add(evt.sequenceNumber());
+        });
+
+        SingleWriterVList.Version<Integer> first = list.version();
+
+        list.add(4);
+        list.sort(null);
+        list.removeAll(0, 1);
+        // unchanged lists don't publish new versions
+        list.removeIf(i -> i > 10);
+
+        Assert.assertEquals(Arrays.asList(3, 4), list);
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L), numbers);
+        Assert.assertEquals(3, list.version().number());
+
+        // published versions are immutable
+        Assert.assertEquals(Arrays.asList(3, 1, 2), first.elements());
+        Assert.assertSame(list.version().elements(), list.snapshot());
+    }
+
+    @Test
+    public void concurrentReadersTest() throws InterruptedException {
+        SingleWriterVList<Integer> list = SingleWriterVList.newInstance();
+
+        int numElements = 20000;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+
+        for (int t = 0; t < 3; t++) {
+            readers.add(new Thread(() -> {
+                long lastNumber = -1;
+                while (!done.get() && failure.get() == null) {
+                    SingleWriterVList.Version<Integer> version = list.version();
+                    List<Integer> elements = version.elements();
+                    if (version.number() < lastNumber) {
+                        failure.set("version number decreased");
+                    }
+                    lastNumber = version.number();
+                    // each version contains a prefix of the sequence
+                    if (elements.size() != version.number()) {
+                        failure.set("size " + elements.size() + " in version " + version.number());
+                    }
+                    for (int i = 0; i < elements.size(); i += 97) {
+                        if (elements.get(i) != i) {
+                            failure.set("unexpected element at " + i);
+                        }
+                    }
+                }
+            }));
+        }
+
+        readers.forEach(Thread::start);
+        for (int i = 0; i < numElements; i++) {
+            list.add(i);
+        }
+        done.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(numElements, list.size());
+        Assert.assertEquals(numElements, list.version().number());
+    }
+}
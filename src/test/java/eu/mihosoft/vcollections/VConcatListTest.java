@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link VConcatList}.
+ */
+public class VConcatListTest {
+
+    @Test
+    public void getAndSizeTest() {
+        VList<Integer> a = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2)));
+        VList<Integer> b = VList.newInstance(new ArrayList<>());
+        VList<Integer> c = VList.newInstance(new ArrayList<>(Arrays.asList(3, 4, 5)));
+
+        VConcatList<Integer> list = VConcatList.newInstance(a, b, c);
+
+        Assert.assertEquals(5, list.size());
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), list);
+
+        b.add(7);
+        Assert.assertEquals(Arrays.asList(1, 2, 7, 3, 4, 5), list);
+    }
+
+    @Test
+    public void eventTranslationTest() {
+        VList<Integer> a = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2)));
+        VList<Integer> b = VList.newInstance(new ArrayList<>(Arrays.asList(3, 4)));
+
+        VConcatList<Integer> list = VConcatList.newInstance(a, b);
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        list.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        b.add(1, 9);
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(new int[]{3}, events.get(0).added().indices());
+
+        a.remove(0);
+        Assert.assertEquals(2, events.size());
+        Assert.assertArrayEquals(new int[]{0}, events.get(1).removed().indices());
+
+        b.set(0, 8);
+        Assert.assertEquals(3, events.size());
+        Assert.assertTrue(events.get(2).wasSet());
+        Assert.assertArrayEquals(new int[]{1}, events.get(2).added().indices());
+        Assert.assertArrayEquals(new int[]{1}, events.get(2).removed().indices());
+        Assert.assertEquals(Arrays.asList(2, 8, 9, 4), list);
+    }
+
+    @Test
+    public void positionalEditsTest() {
+        VList<Integer> a = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2)));
+        VList<Integer> b = VList.newInstance(new ArrayList<>(Arrays.asList(3, 4)));
+
+        VConcatList<Integer> list = VConcatList.newInstance(a, b);
+
+        list.add(2, 10);
+        Assert.assertEquals(Arrays.asList(10, 3, 4), b);
+
+        list.set(1, 20);
+        Assert.assertEquals(Arrays.asList(1, 20), a);
+
+        Assert.assertEquals(Integer.valueOf(4), list.remove(4));
+        list.addAll(Arrays.asList(5, 6));
+        Assert.assertEquals(Arrays.asList(10, 3, 5, 6), b);
+        Assert.assertEquals(Arrays.asList(1, 20, 10, 3, 5, 6), list);
+    }
+
+    @Test
+    public void moveTest() {
+        VList<Integer> a = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2)));
+        VList<Integer> b = VList.newInstance(new ArrayList<>(Arrays.asList(3, 4, 5)));
+
+        VConcatList<Integer> list = VConcatList.newInstance(a, b);
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        list.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        // moves within a segment are forwarded as shifted moves
+        list.move(4, 2);
+        Assert.assertEquals(Arrays.asList(5, 3, 4), b);
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).wasMoved());
+        Assert.assertEquals(4, events.get(0).moveFrom());
+        Assert.assertEquals(2, events.get(0).moveTo());
+        Assert.assertArrayEquals(new int[]{0, 1, 3, 4, 2}, events.get(0).permutation());
+
+        // moves across segments
+        list.moveRange(0, 2, 3);
+        Assert.assertEquals(Arrays.asList(5, 3, 4, 1, 2), list);
+    }
+
+    @Test
+    public void permutationTest() {
+        VList<Integer> a = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2)));
+        VList<Integer> b = VList.newInstance(new ArrayList<>(Arrays.asList(5, 3, 4)));
+
+        VConcatList<Integer> list = VConcatList.newInstance(a, b);
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        list.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        // permutations within a segment are forwarded as shifted permutations
+        b.sort(null);
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), list);
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).wasPermutated());
+        Assert.assertArrayEquals(new int[]{0, 1, 4, 2, 3}, events.get(0).permutation());
+        Assert.assertArrayEquals(new int[]{2, 3, 4}, events.get(0).removed().indices());
+        Assert.assertEquals(Arrays.asList(5, 3, 4), events.get(0).removed().elements());
+        Assert.assertEquals(Arrays.asList(3, 4, 5), events.get(0).added().elements());
+    }
+
+
+    @Test
+    public void disposeTest() {
+        VList<Integer> a = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2)));
+        VConcatList<Integer> list = VConcatList.newInstance(a);
+
+        list.dispose();
+        a.add(3);
+
+        Assert.assertEquals(2, list.size());
+    }
+
+    @Test
+    public void randomModificationTest() {
+        Random r = VListTest.getRandom();
+
+        List<VList<Integer>> segments = new ArrayList<>();
+        for (int i = 0; i < 13; i++) {
+            segments.add(VList.newInstance(new ArrayList<>()));
+        }
+
+        VConcatList<Integer> list = VConcatList.newInstance(segments);
+
+        // replay the events on a plain list
+        List<Integer> mirror = new ArrayList<>();
+        list.addChangeListener(evt -> {
+            int[] removed = evt.removed().indices();
+            for (int i = removed.length - 1; i > -1; i--) {
+                mirror.remove(removed[i]);
+            }
+            int[] added = evt.added().indices();
+            for (int i = 0; i < added.length; i++) {
+                mirror.add(added[i], evt.added().elements().get(i));
+            }
+        });
+
+        for (int i = 0; i < 1000; i++) {
+            VList<Integer> segment = segments.get(r.nextInt(segments.size()));
+            if (segment.isEmpty() || r.nextBoolean()) {
+                segment.add(r.nextInt(segment.size() + 1), r.nextInt());
+            } else {
+                segment.remove(r.nextInt(segment.size()));
+            }
+
+            List<Integer> expected = new ArrayList<>();
+            segments.forEach(expected::addAll);
+
+            Assert.assertEquals(expected, list);
+            Assert.assertEquals(expected, mirror);
+        }
+    }
+}
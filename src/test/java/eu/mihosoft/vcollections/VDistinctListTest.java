@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link VDistinctList}.
+ */
+public class VDistinctListTest {
+
+    @Test
+    public void distinctTest() {
+        VList<String> src = VList.newInstance(new ArrayList<>(Arrays.asList("a", "b", "a", "c", "b")));
+        VDistinctList<String> distinct = VDistinctList.newInstance(src);
+
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), distinct);
+        Assert.assertEquals(2, distinct.count("a"));
+        Assert.assertEquals(0, distinct.count("x"));
+    }
+
+    @Test
+    public void eventsFollowFirstOccurrenceTest() {
+        VList<String> src = VList.newInstance(new ArrayList<>(Arrays.asList("a", "b", "a")));
+        VDistinctList<String> distinct = VDistinctList.newInstance(src);
+
+        List<VListChangeEvent<String>> events = new ArrayList<>();
+        distinct.addChangeListener(e -> events.add((VListChangeEvent<String>) e));
+
+        // later occurrences don't change the view
+        src.add("b");
+        Assert.assertEquals(0, events.size());
+
+        // the first occurrence of "a" moves behind "b"
+        src.remove(0);
+        Assert.assertEquals(Arrays.asList("b", "a"), distinct);
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(new int[]{0}, events.get(0).removed().indices());
+        Assert.assertArrayEquals(new int[]{1}, events.get(0).added().indices());
+
+        src.add("c");
+        Assert.assertEquals(2, events.size());
+        Assert.assertArrayEquals(new int[]{2}, events.get(1).added().indices());
+
+        // "b" keeps its position, "a" leaves
+        src.removeAll(0, 1);
+        Assert.assertEquals(3, events.size());
+        Assert.assertTrue(events.get(2).wasRemoved() && !events.get(2).wasAdded());
+        Assert.assertArrayEquals(new int[]{1}, events.get(2).removed().indices());
+        Assert.assertEquals(Arrays.asList("a"), events.get(2).removed().elements());
+        Assert.assertEquals(Arrays.asList("b", "c"), distinct);
+
+        // replacing an element by an equal one must not fire
+        src.set(0, "b");
+        Assert.assertEquals(3, events.size());
+
+        // re-entering elements are ordered by their first occurrence
+        src.add(1, "a");
+        Assert.assertEquals(Arrays.asList("b", "a", "c"), distinct);
+        Assert.assertArrayEquals(new int[]{1}, events.get(3).added().indices());
+    }
+
+    @Test
+    public void randomModificationTest() {
+        Random r = VListTest.getRandom();
+        VList<Integer> src = VList.newInstance(new ArrayList<>());
+        VDistinctList<Integer> distinct = VDistinctList.newInstance(src);
+
+        // replay the events on a plain list
+        List<Integer> mirror = new ArrayList<>();
+        distinct.addChangeListener(evt -> {
+            if (((VListChangeEvent<Integer>) evt).wasPermutated()) {
+                int[] permutation = ((VListChangeEvent<Integer>) evt).permutation();
+                List<Integer> before = new ArrayList<>(mirror);
+                for (int j = 0; j < permutation.length; j++) {
+                    mirror.set(permutation[j], before.get(j));
+                }
+                return;
+            }
+            int[] removed = evt.removed().indices();
+            for (int i = removed.length - 1; i > -1; i--) {
+                mirror.remove(removed[i]);
+            }
+            int[] added = evt.added().indices();
+            for (int i = 0; i < added.length; i++) {
+                mirror.add(added[i], evt.added().elements().get(i));
+            }
+        });
+
+        for (int i = 0; i < 1000; i++) {
+            int op = r.nextInt(5);
+            if (op == 0 || src.isEmpty()) {
+                src.add(r.nextInt(src.size() + 1), r.nextInt(20));
+            } else if (op == 3) {
+                // several removals and insertions in one event
+                List<Integer> contents = new ArrayList<>(src);
+                contents.remove(r.nextInt(contents.size()));
+                contents.add(r.nextInt(contents.size() + 1), r.nextInt(20));
+                contents.add(r.nextInt(contents.size() + 1), r.nextInt(20));
+                src.setContents(contents);
+            } else if (op == 4) {
+                src.sort(r.nextBoolean() ? Comparator.naturalOrder() : Comparator.reverseOrder());
+            } else if (op == 1) {
+                src.remove(r.nextInt(src.size()));
+            } else {
+                src.set(r.nextInt(src.size()), r.nextInt(20));
+            }
+
+            Assert.assertEquals(new ArrayList<>(new LinkedHashSet<>(src)), distinct);
+            Assert.assertEquals(distinct, mirror);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link VFlatMappedList}.
+ */
+public class VFlatMappedListTest {
+
+    private static VList<Integer> listOf(Integer... elements) {
+        return VList.newInstance(new ArrayList<>(Arrays.asList(elements)));
+    }
+
+    @Test
+    public void flattenTest() {
+        VList<VList<Integer>> parents = VList.newInstance(new ArrayList<>());
+        parents.add(listOf(1, 2));
+        parents.add(listOf());
+        parents.add(listOf(3));
+
+        VFlatMappedList<VList<Integer>, Integer> flat = VFlatMappedList.newInstance(parents, p -> p);
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), flat);
+    }
+
+    @Test
+    public void innerChangeTest() {
+        VList<VList<Integer>> parents = VList.newInstance(new ArrayList<>());
+        parents.add(listOf(1, 2));
+        parents.add(listOf(3, 4));
+
+        VFlatMappedList<VList<Integer>, Integer> flat = VFlatMappedList.newInstance(parents, p -> p);
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        flat.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        parents.get(1).add(0, 9);
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(new int[]{2}, events.get(0).added().indices());
+        Assert.assertEquals(Arrays.asList(1, 2, 9, 3, 4), flat);
+    }
+
+    @Test
+    public void outerChangeTest() {
+        VList<VList<Integer>> parents = VList.newInstance(new ArrayList<>());
+        parents.add(listOf(1, 2));
+        parents.add(listOf(3, 4));
+
+        VFlatMappedList<VList<Integer>, Integer> flat = VFlatMappedList.newInstance(parents, p -> p);
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        flat.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        VList<Integer> removedParent = parents.remove(0);
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(new int[]{0, 1}, events.get(0).removed().indices());
+        Assert.assertEquals(Arrays.asList(1, 2), events.get(0).removed().elements());
+
+        // removed inner lists must not be observed anymore
+        removedParent.add(5);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(Arrays.asList(3, 4), flat);
+
+        parents.add(0, listOf(7, 8));
+        Assert.assertEquals(2, events.size());
+        Assert.assertArrayEquals(new int[]{0, 1}, events.get(1).added().indices());
+        Assert.assertEquals(Arrays.asList(7, 8, 3, 4), flat);
+
+        // inner lists of added parents must be observed
+        parents.get(0).add(6);
+        Assert.assertEquals(3, events.size());
+        Assert.assertArrayEquals(new int[]{2}, events.get(2).added().indices());
+    }
+
+    @Test
+    public void randomModificationTest() {
+        Random r = VListTest.getRandom();
+
+        VList<VList<Integer>> parents = VList.newInstance(new ArrayList<>());
+        VFlatMappedList<VList<Integer>, Integer> flat = VFlatMappedList.newInstance(parents, p -> p);
+
+        // replay the events on a plain list
+        List<Integer> mirror = new ArrayList<>();
+        flat.addChangeListener(evt -> {
+            int[] removed = evt.removed().indices();
+            for (int i = removed.length - 1; i > -1; i--) {
+                mirror.remove(removed[i]);
+            }
+            int[] added = evt.added().indices();
+            for (int i = 0; i < added.length; i++) {
+                mirror.add(added[i], evt.added().elements().get(i));
+            }
+        });
+
+        for (int i = 0; i < 1000; i++) {
+            int op = r.nextInt(6);
+            if (op == 0 || parents.isEmpty()) {
+                parents.add(r.nextInt(parents.size() + 1), listOf(r.nextInt(), r.nextInt()));
+            } else if (op == 5) {
+                // several removed and added inner lists in one event
+                List<VList<Integer>> contents = new ArrayList<>(parents);
+                contents.remove(r.nextInt(contents.size()));
+                contents.add(r.nextInt(contents.size() + 1), listOf());
+                contents.add(r.nextInt(contents.size() + 1), listOf(r.nextInt()));
+                parents.setContents(contents);
+            } else if (op == 1) {
+                parents.remove(r.nextInt(parents.size()));
+            } else {
+                VList<Integer> inner = parents.get(r.nextInt(parents.size()));
+                if (inner.isEmpty() || op == 2) {
+                    inner.add(r.nextInt(inner.size() + 1), r.nextInt());
+                } else {
+                    inner.remove(r.nextInt(inner.size()));
+                }
+            }
+
+            List<Integer> expected = new ArrayList<>();
+            parents.forEach(expected::addAll);
+
+            Assert.assertEquals(expected, flat);
+            Assert.assertEquals(expected, mirror);
+        }
+    }
+}
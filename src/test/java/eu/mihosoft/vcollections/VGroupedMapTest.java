@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link VGroupedMap}.
+ */
+public class VGroupedMapTest {
+
+    @Test
+    public void initialGroupingTest() {
+        VList<Integer> src = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 3, 4, 5)));
+        VGroupedMap<Integer, Integer> groups = VGroupedMap.newInstance(src, i -> i % 2);
+
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(Arrays.asList(1, 3, 5), groups.get(1));
+        Assert.assertEquals(Arrays.asList(2, 4), groups.get(0));
+    }
+
+    @Test
+    public void groupCreationAndRemovalTest() {
+        VList<String> src = VList.newInstance(new ArrayList<>(Arrays.asList("a1", "b1")));
+        VGroupedMap<Character, String> groups = VGroupedMap.newInstance(src, s -> s.charAt(0));
+
+        List<VMapChangeEvent<Character, VList<String>>> events = new ArrayList<>();
+        groups.addChangeListener(events::add);
+
+        src.add("c1");
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).wasAdded());
+        Assert.assertEquals(Arrays.asList('c'), new ArrayList<>(events.get(0).added().keys()));
+
+        // adding to an existing group must not fire a map event
+        src.add("c2");
+        Assert.assertEquals(1, events.size());
+
+        src.remove("b1");
+        Assert.assertEquals(2, events.size());
+        Assert.assertTrue(events.get(1).wasRemoved());
+        Assert.assertFalse(groups.containsKey('b'));
+    }
+
+    @Test
+    public void groupMembershipEventsTest() {
+        VList<String> src = VList.newInstance(new ArrayList<>(Arrays.asList("a1", "b1", "a2", "b2")));
+        VGroupedMap<Character, String> groups = VGroupedMap.newInstance(src, s -> s.charAt(0));
+
+        List<VListChangeEvent<String>> aEvents = new ArrayList<>();
+        List<VListChangeEvent<String>> bEvents = new ArrayList<>();
+        groups.get('a').addChangeListener(e -> aEvents.add((VListChangeEvent<String>) e));
+        groups.get('b').addChangeListener(e -> bEvents.add((VListChangeEvent<String>) e));
+
+        // insert between a1 and a2
+        src.add(2, "a3");
+        Assert.assertEquals(1, aEvents.size());
+        Assert.assertEquals(0, bEvents.size());
+        Assert.assertArrayEquals(new int[]{1}, aEvents.get(0).added().indices());
+        Assert.assertEquals(Arrays.asList("a1", "a3", "a2"), groups.get('a'));
+
+        // bulk operation: one event per affected group
+        src.addAll(Arrays.asList("a4", "b3", "a5"));
+        Assert.assertEquals(2, aEvents.size());
+        Assert.assertEquals(1, bEvents.size());
+        Assert.assertArrayEquals(new int[]{3, 4}, aEvents.get(1).added().indices());
+        Assert.assertEquals(Arrays.asList("a4", "a5"), aEvents.get(1).added().elements());
+
+        // moving an element from one group to another
+        src.set(0, "b0");
+        Assert.assertEquals(3, aEvents.size());
+        Assert.assertEquals(2, bEvents.size());
+        Assert.assertTrue(aEvents.get(2).wasRemoved());
+        Assert.assertEquals(Arrays.asList("a1"), aEvents.get(2).removed().elements());
+        Assert.assertArrayEquals(new int[]{0}, bEvents.get(1).added().indices());
+        Assert.assertEquals(Arrays.asList("b0", "b1", "b2", "b3"), groups.get('b'));
+    }
+
+    @Test
+    public void sortFiresGroupPermutationTest() {
+        VList<Integer> src = VList.newInstance(new ArrayList<>(Arrays.asList(5, 2, 3, 4, 1)));
+        VGroupedMap<Integer, Integer> groups = VGroupedMap.newInstance(src, i -> i % 2);
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        groups.get(1).addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        src.sort(Comparator.naturalOrder());
+
+        Assert.assertEquals(Arrays.asList(1, 3, 5), groups.get(1));
+        Assert.assertEquals(Arrays.asList(2, 4), groups.get(0));
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).wasPermutated());
+        Assert.assertArrayEquals(new int[]{2, 1, 0}, events.get(0).permutation());
+    }
+
+
+    @Test
+    public void countingAndSummingTest() {
+        VList<Integer> src = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 3)));
+        VGroupedMap<Integer, Integer> groups = VGroupedMap.newInstance(src, i -> i % 2);
+
+        VMap<Integer, Long> counts = groups.counting();
+        VMap<Integer, Long> sums = groups.summingLong(i -> i);
+
+        Assert.assertEquals(2L, (long) counts.get(1));
+        Assert.assertEquals(4L, (long) sums.get(1));
+
+        List<VMapChangeEvent<Integer, Long>> events = new ArrayList<>();
+        counts.addChangeListener(events::add);
+
+        src.addAll(Arrays.asList(5, 7, 4));
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(4L, (long) counts.get(1));
+        Assert.assertEquals(2L, (long) counts.get(0));
+        Assert.assertEquals(16L, (long) sums.get(1));
+
+        src.removeAll(1);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(1L, (long) counts.get(0));
+        Assert.assertEquals(4L, (long) sums.get(0));
+    }
+
+    @Test
+    public void randomModificationTest() {
+        Random r = VListTest.getRandom();
+        VList<Integer> src = VList.newInstance(new ArrayList<>());
+        VGroupedMap<Integer, Integer> groups = VGroupedMap.newInstance(src, i -> i % 5);
+        VMap<Integer, Long> counts = groups.counting();
+
+        for (int i = 0; i < 500; i++) {
+            int op = r.nextInt(6);
+            if (op == 0 || src.isEmpty()) {
+                src.add(r.nextInt(Math.max(1, src.size())), r.nextInt(100));
+            } else if (op == 5) {
+                // several removals and insertions in one event
+                List<Integer> contents = new ArrayList<>(src);
+                contents.remove(r.nextInt(contents.size()));
+                contents.add(r.nextInt(contents.size() + 1), r.nextInt(100));
+                contents.add(r.nextInt(contents.size() + 1), r.nextInt(100));
+                src.setContents(contents);
+            } else if (op == 4) {
+                src.sort(r.nextBoolean() ? Comparator.naturalOrder() : Comparator.reverseOrder());
+            } else if (op == 1) {
+                src.removeAll(r.nextInt(src.size()));
+            } else if (op == 2) {
+                src.set(r.nextInt(src.size()), r.nextInt(100));
+            } else {
+                src.addAll(Arrays.asList(r.nextInt(100), r.nextInt(100)));
+            }
+
+            Map<Integer, List<Integer>> expected = src.stream().collect(
+                    Collectors.groupingBy(e -> e % 5, LinkedHashMap::new, Collectors.toList()));
+            Assert.assertEquals(expected.keySet(), groups.keySet());
+            expected.forEach((k, v) -> {
+                Assert.assertEquals(v, groups.get(k));
+                Assert.assertEquals((long) v.size(), (long) counts.get(k));
+            });
+        }
+    }
+}
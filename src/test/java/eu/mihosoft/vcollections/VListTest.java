@@ -40,9 +40,13 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Random;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -509,6 +513,590 @@ public class VListTest {
         Assert.assertEquals(Arrays.asList(10, 11), evt.added().elements());
     }
 
+    @Test
+    public void removeAllWithDuplicatesTest() {
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 1, 3, 2, 1)));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        Assert.assertTrue(vList.removeAll(Arrays.asList(1, 3)));
+
+        Assert.assertEquals(Arrays.asList(2, 2), vList);
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(new int[]{0, 2, 3, 5}, events.get(0).removed().indices());
+        Assert.assertEquals(Arrays.asList(1, 1, 3, 1), events.get(0).removed().elements());
+
+        // nothing to remove, no event
+        Assert.assertFalse(vList.removeAll(Arrays.asList(7)));
+        Assert.assertEquals(1, events.size());
+    }
+
+    @Test
+    public void removeIfEventTest() {
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(Arrays.asList(4, 1, 4, 2, 4)));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        Assert.assertTrue(vList.removeIf(e -> e == 4));
+
+        Assert.assertEquals(Arrays.asList(1, 2), vList);
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(new int[]{0, 2, 4}, events.get(0).removed().indices());
+        Assert.assertEquals(Arrays.asList(4, 4, 4), events.get(0).removed().elements());
+    }
+
+    @Test
+    public void removeFromFixedSizeListTest() {
+        VList<Integer> vList = VList.newInstance(Arrays.asList(1, 2, 3, 4));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        try {
+            vList.removeIf(e -> e == 2 || e == 3);
+            Assert.fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), vList);
+
+        try {
+            vList.removeAll(Arrays.asList(1, 3));
+            Assert.fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), vList);
+        Assert.assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void retainAllLargeCollectionTest() {
+        List<Integer> elements = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        VList<Integer> vList = VList.newInstance(new java.util.LinkedList<>(elements));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        List<Integer> toRetain = IntStream.range(0, 1000).filter(i -> i % 3 == 0).
+                boxed().collect(Collectors.toList());
+
+        Assert.assertTrue(vList.retainAll(toRetain));
+
+        Assert.assertEquals(toRetain, vList);
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(IntStream.range(0, 1000).filter(i -> i % 3 != 0).toArray(),
+                events.get(0).removed().indices());
+    }
+
+    @Test
+    public void addAllAtIndicesTest() {
+        for (List<Integer> backing : Arrays.<List<Integer>>asList(
+                new ArrayList<>(Arrays.asList(0, 1, 2, 3)),
+                new java.util.LinkedList<>(Arrays.asList(0, 1, 2, 3)))) {
+
+            VList<Integer> vList = VList.newInstance(backing);
+
+            List<VListChangeEvent<Integer>> events = new ArrayList<>();
+            vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+            // indices refer to the list after the operation
+            Assert.assertTrue(vList.addAll(new int[]{5, 0, 2}, Arrays.asList(50, 10, 20)));
+
+            Assert.assertEquals(Arrays.asList(10, 0, 20, 1, 2, 50, 3), vList);
+            Assert.assertEquals(1, events.size());
+            Assert.assertArrayEquals(new int[]{0, 2, 5}, events.get(0).added().indices());
+            Assert.assertEquals(Arrays.asList(10, 20, 50), events.get(0).added().elements());
+        }
+    }
+
+    @Test
+    public void removeAllAtIndicesTest() {
+        for (List<Integer> backing : Arrays.<List<Integer>>asList(
+                new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4, 5)),
+                new java.util.LinkedList<>(Arrays.asList(0, 1, 2, 3, 4, 5)))) {
+
+            VList<Integer> vList = VList.newInstance(backing);
+
+            List<VListChangeEvent<Integer>> events = new ArrayList<>();
+            vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+            Assert.assertTrue(vList.removeAll(5, 0, 3));
+
+            Assert.assertEquals(Arrays.asList(1, 2, 4), vList);
+            Assert.assertEquals(1, events.size());
+            Assert.assertArrayEquals(new int[]{0, 3, 5}, events.get(0).removed().indices());
+            Assert.assertEquals(Arrays.asList(0, 3, 5), events.get(0).removed().elements());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void removeAllAtIndicesOutOfBoundsTest() {
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(Arrays.asList(0, 1)));
+        vList.removeAll(0, 2);
+    }
+
+    @Test
+    public void removeAllAtIndicesFromFixedSizeListTest() {
+        VList<Integer> vList = VList.newInstance(Arrays.asList(1, 2, 3, 4));
+
+        try {
+            vList.removeAll(0, 2);
+            Assert.fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), vList);
+    }
+
+    @Test
+    public void sortPermutationEventTest() {
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(Arrays.asList(3, 1, 2, 4)));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        vList.sort(null);
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), vList);
+        Assert.assertEquals(1, events.size());
+
+        VListChangeEvent<Integer> evt = events.get(0);
+        Assert.assertTrue(evt.wasPermutated());
+        Assert.assertArrayEquals(new int[]{2, 0, 1, 3}, evt.permutation());
+
+        // set-changes are still available for listeners that don't handle permutations
+        Assert.assertTrue(evt.wasSet());
+        Assert.assertArrayEquals(new int[]{0, 1, 2}, evt.added().indices());
+        Assert.assertEquals(Arrays.asList(3, 1, 2), evt.removed().elements());
+        Assert.assertEquals(Arrays.asList(1, 2, 3), evt.added().elements());
+
+        // sorting a sorted list doesn't fire
+        vList.sort(null);
+        Assert.assertEquals(1, events.size());
+    }
+
+    @Test
+    public void sortLargeListTest() {
+        List<Integer> elements = new ArrayList<>();
+        addRandomInts(1000, elements);
+        // duplicates must keep their relative order
+        elements.addAll(elements.subList(0, 100));
+
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(elements));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        vList.sort(Collections.reverseOrder());
+
+        List<Integer> expected = new ArrayList<>(elements);
+        expected.sort(Collections.reverseOrder());
+        Assert.assertEquals(expected, vList);
+
+        int[] permutation = events.get(0).permutation();
+        for (int i = 0; i < permutation.length; i++) {
+            Assert.assertEquals(elements.get(i), vList.get(permutation[i]));
+        }
+    }
+
+
+    @Test
+    public void moveRangeEventTest() {
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4, 5, 6)));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        vList.moveRange(4, 2, 1);
+
+        Assert.assertEquals(Arrays.asList(0, 4, 5, 1, 2, 3, 6), vList);
+        Assert.assertEquals(1, events.size());
+
+        VListChangeEvent<Integer> evt = events.get(0);
+        Assert.assertTrue(evt.wasMoved());
+        Assert.assertTrue(evt.wasPermutated());
+        Assert.assertEquals(4, evt.moveFrom());
+        Assert.assertEquals(1, evt.moveTo());
+        Assert.assertEquals(2, evt.moveCount());
+        Assert.assertArrayEquals(new int[]{0, 3, 4, 5, 1, 2, 6}, evt.permutation());
+
+        // set-changes only cover the affected range
+        Assert.assertArrayEquals(new int[]{1, 2, 3, 4, 5}, evt.added().indices());
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), evt.removed().elements());
+        Assert.assertEquals(Arrays.asList(4, 5, 1, 2, 3), evt.added().elements());
+
+        vList.move(1, 5);
+        Assert.assertEquals(Arrays.asList(0, 5, 1, 2, 3, 4, 6), vList);
+        Assert.assertArrayEquals(new int[]{0, 5, 1, 2, 3, 4, 6}, events.get(1).permutation());
+
+        // empty moves don't fire
+        vList.move(3, 3);
+        vList.moveRange(2, 0, 5);
+        Assert.assertEquals(2, events.size());
+    }
+
+    @Test
+    public void moveRangeRandomTest() {
+        Random rnd = getRandom();
+
+        VList<Integer> vList = VList.newInstance(new ArrayList<>());
+        addRandomInts(100, vList);
+        List<Integer> mirror = new ArrayList<>(vList);
+
+        vList.addChangeListener(evt -> {
+            Object[] before = mirror.toArray();
+            int[] permutation = ((VListChangeEvent<Integer>) evt).permutation();
+            for (int i = 0; i < permutation.length; i++) {
+                mirror.set(permutation[i], (Integer) before[i]);
+            }
+        });
+
+        for (int i = 0; i < 200; i++) {
+            int count = rnd.nextInt(10);
+            int from = rnd.nextInt(vList.size() - count + 1);
+            int to = rnd.nextInt(vList.size() - count + 1);
+
+            List<Integer> expected = new ArrayList<>(vList);
+            List<Integer> moved = new ArrayList<>(expected.subList(from, from + count));
+            expected.subList(from, from + count).clear();
+            expected.addAll(to, moved);
+
+            vList.moveRange(from, count, to);
+
+            Assert.assertEquals(expected, vList);
+            Assert.assertEquals(expected, mirror);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void moveRangeOutOfBoundsTest() {
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(Arrays.asList(0, 1, 2)));
+        vList.moveRange(0, 2, 2);
+    }
+
+
+    @Test
+    public void setContentsMinimalEventTest() {
+        List<Integer> elements = IntStream.range(0, 100000).boxed().collect(Collectors.toList());
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(elements));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        List<Integer> snapshot = new ArrayList<>(elements);
+        snapshot.remove(70000);
+        snapshot.set(500, -1);
+        snapshot.add(20, -2);
+
+        Assert.assertTrue(vList.setContents(snapshot));
+        Assert.assertEquals(snapshot, vList);
+        Assert.assertEquals(1, events.size());
+
+        VListChangeEvent<Integer> evt = events.get(0);
+        Assert.assertArrayEquals(new int[]{500, 70000}, evt.removed().indices());
+        Assert.assertEquals(Arrays.asList(500, 70000), evt.removed().elements());
+        Assert.assertArrayEquals(new int[]{20, 501}, evt.added().indices());
+        Assert.assertEquals(Arrays.asList(-2, -1), evt.added().elements());
+
+        // equal contents don't fire
+        Assert.assertFalse(vList.setContents(new ArrayList<>(snapshot)));
+        Assert.assertEquals(1, events.size());
+    }
+
+    @Test
+    public void setContentsRandomTest() {
+        Random rnd = getRandom();
+
+        VList<Integer> vList = VList.newInstance(new ArrayList<>());
+        List<Integer> mirror = new ArrayList<>();
+
+        vList.addChangeListener(evt -> {
+            // removed indices refer to the list before the change
+            int[] removed = evt.removed().indices();
+            for (int i = removed.length - 1; i >= 0; i--) {
+                mirror.remove(removed[i]);
+            }
+            int[] added = evt.added().indices();
+            for (int i = 0; i < added.length; i++) {
+                mirror.add(added[i], evt.added().elements().get(i));
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            // small alphabet, many duplicates
+            List<Integer> snapshot = new ArrayList<>(vList);
+            for (int j = rnd.nextInt(20); j > 0; j--) {
+                if (!snapshot.isEmpty() && rnd.nextBoolean()) {
+                    snapshot.remove(rnd.nextInt(snapshot.size()));
+                } else {
+                    snapshot.add(rnd.nextInt(snapshot.size() + 1), rnd.nextInt(10));
+                }
+            }
+            if (i % 10 == 0) {
+                addRandomInts(200, snapshot);
+            }
+
+            vList.setContents(snapshot);
+
+            Assert.assertEquals(snapshot, vList);
+            Assert.assertEquals(snapshot, mirror);
+        }
+    }
+
+
+    @Test
+    public void equalityPolicyTest() {
+        VList<String> vList = VList.newInstance(new ArrayList<>(Arrays.asList("a", "b", "c")));
+
+        List<VListChangeEvent<String>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<String>) evt));
+
+        // by default every write is reported
+        vList.set(0, "a");
+        Assert.assertEquals(1, events.size());
+
+        vList.setEqualityPolicy(EqualityPolicy.IDENTITY);
+        vList.set(0, vList.get(0));
+        Assert.assertEquals(1, events.size());
+        vList.set(0, new String("a"));
+        Assert.assertEquals(2, events.size());
+
+        vList.setEqualityPolicy(EqualityPolicy.EQUALS);
+        vList.set(1, new String("b"));
+        vList.setAll(0, Arrays.asList("a", "b", "c"));
+        Assert.assertEquals(2, events.size());
+
+        // only the changed indices are reported
+        vList.replaceAll(s -> s.equals("b") ? "B" : s);
+        Assert.assertEquals(Arrays.asList("a", "B", "c"), vList);
+        Assert.assertEquals(3, events.size());
+        Assert.assertArrayEquals(new int[]{1}, events.get(2).added().indices());
+        Assert.assertEquals(Arrays.asList("b"), events.get(2).removed().elements());
+
+        vList.replaceAll(s -> s);
+        Assert.assertEquals(3, events.size());
+
+        // swapping equal elements doesn't change the list
+        String first = new String("x");
+        VList<String> xs = VList.newInstance(new ArrayList<>(Arrays.asList(first, new String("x"))));
+        xs.setEqualityPolicy(EqualityPolicy.EQUALS);
+        xs.addChangeListener(evt -> events.add((VListChangeEvent<String>) evt));
+        xs.sort((s1, s2) -> s1 == first ? 1 : s2 == first ? -1 : 0);
+        Assert.assertSame(first, xs.get(1));
+        Assert.assertEquals(3, events.size());
+    }
+
+
+    @Test
+    public void swappingClearTest() {
+        VList<Integer> vList = VList.newInstance(ArrayList::new);
+        vList.addAll(Arrays.asList(1, 2, 3));
+        VList<Integer> unmodifiable = vList.asUnmodifiable();
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        vList.clear();
+
+        Assert.assertTrue(vList.isEmpty());
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(new int[]{0, 1, 2}, events.get(0).removed().indices());
+        Assert.assertEquals(Arrays.asList(1, 2, 3), events.get(0).removed().elements());
+
+        // the list stays usable after the backing list was swapped
+        vList.add(4);
+        Assert.assertEquals(Arrays.asList(4), vList);
+        Assert.assertEquals(Arrays.asList(4), unmodifiable);
+        Assert.assertEquals(Arrays.asList(1, 2, 3), events.get(0).removed().elements());
+    }
+
+
+    @Test
+    public void persistentSnapshotTest() {
+        VList<Integer> list = VList.newPersistentInstance();
+        List<Integer> reference = new ArrayList<>();
+
+        List<List<Integer>> snapshots = new ArrayList<>();
+        List<List<Integer>> expected = new ArrayList<>();
+
+        Random r = getRandom();
+
+        for (int i = 0; i < 5000; i++) {
+            int op = r.nextInt(8);
+            int size = reference.size();
+            if (op < 3 || size == 0) {
+                int n = r.nextInt(100);
+                for (int j = 0; j < n; j++) {
+                    list.add(j);
+                    reference.add(j);
+                }
+            } else if (op == 3) {
+                int index = r.nextInt(size);
+                list.set(index, i);
+                reference.set(index, i);
+            } else if (op == 4) {
+                int index = r.nextInt(size + 1);
+                list.add(index, i);
+                reference.add(index, i);
+            } else if (op == 5) {
+                int from = r.nextInt(size);
+                int to = from + r.nextInt(size - from + 1);
+                list.removeAll(IntStream.range(from, to).toArray());
+                reference.subList(from, to).clear();
+            } else {
+                snapshots.add(list.snapshot());
+                expected.add(new ArrayList<>(reference));
+            }
+            Assert.assertEquals(reference.size(), list.size());
+        }
+
+        Assert.assertEquals(reference, list);
+
+        // snapshots are unaffected by later modifications
+        for (int i = 0; i < snapshots.size(); i++) {
+            Assert.assertEquals(expected.get(i), snapshots.get(i));
+        }
+
+        List<Integer> snapshot = list.snapshot();
+        Assert.assertSame(snapshot, list.snapshot());
+        try {
+            snapshot.set(0, 1);
+            Assert.fail("snapshots must be immutable");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void parallelBulkOperationsTest() {
+        List<Integer> elements = new ArrayList<>();
+        addRandomInts(20000, elements);
+        // duplicates must keep their relative order
+        elements.addAll(elements.subList(0, 1000));
+
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(elements));
+        // only report elements that actually change
+        vList.setEqualityPolicy(EqualityPolicy.EQUALS);
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        vList.addChangeListener(evt -> events.add((VListChangeEvent<Integer>) evt));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            // replace
+            vList.parallelReplaceAll(e -> e % 3 == 0 ? e : e + 1, pool);
+
+            List<Integer> expected = new ArrayList<>(elements);
+            expected.replaceAll(e -> e % 3 == 0 ? e : e + 1);
+            Assert.assertEquals(expected, vList);
+            Assert.assertEquals(1, events.size());
+
+            VListChangeEvent<Integer> evt = events.get(0);
+            Assert.assertTrue(evt.wasSet());
+            for (int i = 0; i < evt.added().indices().length; i++) {
+                int index = evt.added().indices()[i];
+                Assert.assertNotEquals(0, elements.get(index) % 3);
+                Assert.assertEquals(elements.get(index), evt.removed().elements().get(i));
+                Assert.assertEquals(expected.get(index), evt.added().elements().get(i));
+            }
+            Assert.assertEquals(elements.stream().filter(e -> e % 3 != 0).count(),
+                    evt.added().indices().length);
+
+            // remove
+            events.clear();
+            List<Integer> before = new ArrayList<>(vList);
+            Assert.assertTrue(vList.parallelRemoveIf(e -> e % 2 == 0, pool));
+
+            expected.removeIf(e -> e % 2 == 0);
+            Assert.assertEquals(expected, vList);
+            Assert.assertEquals(1, events.size());
+
+            evt = events.get(0);
+            Assert.assertTrue(evt.wasRemoved());
+            for (int i = 0; i < evt.removed().indices().length; i++) {
+                int index = evt.removed().indices()[i];
+                Assert.assertEquals(before.get(index), evt.removed().elements().get(i));
+                Assert.assertEquals(0, evt.removed().elements().get(i) % 2);
+            }
+
+            // nothing left to remove
+            events.clear();
+            Assert.assertFalse(vList.parallelRemoveIf(e -> e % 2 == 0, pool));
+            Assert.assertTrue(events.isEmpty());
+
+            // sort
+            before = new ArrayList<>(vList);
+            vList.parallelSort(Collections.reverseOrder(), pool);
+
+            expected.sort(Collections.reverseOrder());
+            Assert.assertEquals(expected, vList);
+            Assert.assertEquals(1, events.size());
+
+            int[] permutation = events.get(0).permutation();
+            for (int i = 0; i < permutation.length; i++) {
+                Assert.assertEquals(before.get(i), vList.get(permutation[i]));
+            }
+
+            // sorting a sorted list doesn't fire
+            vList.parallelSort(Collections.reverseOrder(), pool);
+            Assert.assertEquals(1, events.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    @Test
+    public void randomAccessTest() {
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            elements.add(i * 2);
+        }
+
+        VList<Integer> vList = VList.newInstance(new ArrayList<>(elements));
+        VList<String> mapped = VMappedList.newInstance(vList,
+                i -> Integer.toString(i), Integer::parseInt);
+
+        // the random access marker of the backing list is preserved
+        Assert.assertTrue(vList instanceof RandomAccess);
+        Assert.assertTrue(vList.asUnmodifiable() instanceof RandomAccess);
+        Assert.assertTrue(mapped instanceof RandomAccess);
+        Assert.assertTrue(VList.newPersistentInstance() instanceof RandomAccess);
+        Assert.assertFalse(VList.newInstance(new LinkedList<>()) instanceof RandomAccess);
+        Assert.assertFalse(VMappedList.newInstance(VList.newInstance(new LinkedList<Integer>()),
+                i -> i, i -> i) instanceof RandomAccess);
+
+        Assert.assertEquals(1234, Collections.binarySearch(vList, 2468));
+
+        // index based spliterators split in halves and report exact sizes
+        Spliterator<Integer> s = vList.spliterator();
+        Assert.assertTrue(s.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        Spliterator<Integer> prefix = s.trySplit();
+        Assert.assertEquals(5000, prefix.estimateSize());
+        Assert.assertEquals(5000, s.estimateSize());
+        Assert.assertTrue(mapped.spliterator().hasCharacteristics(
+                Spliterator.SIZED | Spliterator.SUBSIZED));
+
+        Assert.assertEquals(elements, vList.parallelStream().collect(Collectors.toList()));
+        Assert.assertEquals(elements.stream().map(i -> Integer.toString(i)).collect(Collectors.toList()),
+                mapped.parallelStream().collect(Collectors.toList()));
+
+        List<String> visited = new ArrayList<>();
+        mapped.forEach(visited::add);
+        Assert.assertEquals(mapped, visited);
+
+        // the spliterator of a persistent list accesses elements by index
+        VList<Integer> persistent = VList.newPersistentInstance();
+        persistent.addAll(elements);
+        Assert.assertEquals(elements, persistent.parallelStream().collect(Collectors.toList()));
+    }
+
+
     @Test
     public void removeChangeListenerResetsSupport() throws Exception {
         VList<Integer> vList = VList.newInstance(new ArrayList<Integer>());
@@ -516,7 +1104,7 @@ public class VListTest {
         vList.addChangeListener(l);
         vList.removeChangeListener(l);
 
-        java.lang.reflect.Field f = vList.getClass().getDeclaredField("listChangeSupport");
+        java.lang.reflect.Field f = VListImpl.class.getDeclaredField("listChangeSupport");
         f.setAccessible(true);
         Assert.assertNull(f.get(vList));
     }
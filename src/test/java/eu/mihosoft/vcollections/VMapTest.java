@@ -8,7 +8,9 @@ import org.junit.Test;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -218,6 +220,245 @@ public class VMapTest {
         Assert.assertEquals(2, events.size());
     }
 
+    @Test
+    public void equalityPolicyTest() {
+        VMap<String, String> map = VMap.newInstance(new HashMap<String, String>());
+        map.put("a", "x");
+
+        List<VMapChangeEvent<String, String>> events = new ArrayList<>();
+        map.addChangeListener(e -> events.add((VMapChangeEvent<String, String>) e));
+
+        // by default every put is reported
+        map.put("a", "x");
+        Assert.assertEquals(1, events.size());
+
+        map.setEqualityPolicy(EqualityPolicy.EQUALS);
+        map.put("a", new String("x"));
+        Assert.assertEquals(1, events.size());
+
+        Map<String, String> m = new HashMap<>();
+        m.put("a", "x");
+        m.put("b", "y");
+        map.putAll(m);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(1, events.get(1).added().entries().size());
+        Assert.assertTrue(events.get(1).removed().entries().isEmpty());
+
+        map.putAll(m);
+        Assert.assertEquals(2, events.size());
+    }
+
+
+    @Test
+    public void computeFamilyEventsTest() {
+        VMap<String, Integer> map = VMap.newInstance(new HashMap<String, Integer>());
+
+        List<VMapChangeEvent<String, Integer>> events = new ArrayList<>();
+        map.addChangeListener(e -> events.add((VMapChangeEvent<String, Integer>) e));
+
+        Assert.assertEquals(Integer.valueOf(1), map.merge("a", 1, Integer::sum));
+        Assert.assertEquals(Integer.valueOf(3), map.merge("a", 2, Integer::sum));
+        Assert.assertEquals(2, events.size());
+        Assert.assertTrue(events.get(0).wasAdded() && !events.get(0).wasRemoved());
+        Assert.assertTrue(events.get(1).wasSet());
+        Assert.assertEquals(Integer.valueOf(1), events.get(1).removed().entries().get("a"));
+        Assert.assertEquals(Integer.valueOf(3), events.get(1).added().entries().get("a"));
+
+        // absent keys that compute to null don't change the map
+        map.compute("b", (k, v) -> null);
+        map.computeIfPresent("b", (k, v) -> 1);
+        map.computeIfAbsent("a", k -> 7);
+        Assert.assertEquals(2, events.size());
+
+        map.computeIfAbsent("b", k -> 5);
+        map.compute("b", (k, v) -> v + 1);
+        map.computeIfPresent("b", (k, v) -> null);
+        Assert.assertEquals(5, events.size());
+        Assert.assertTrue(events.get(2).wasAdded() && !events.get(2).wasRemoved());
+        Assert.assertTrue(events.get(3).wasSet());
+        Assert.assertTrue(events.get(4).wasRemoved() && !events.get(4).wasAdded());
+        Assert.assertEquals(Integer.valueOf(6), events.get(4).removed().entries().get("b"));
+
+        Assert.assertNull(map.putIfAbsent("c", 1));
+        Assert.assertEquals(Integer.valueOf(1), map.putIfAbsent("c", 2));
+        Assert.assertNull(map.replace("d", 1));
+        Assert.assertFalse(map.replace("c", 2, 3));
+        Assert.assertTrue(map.replace("c", 1, 3));
+        Assert.assertFalse(map.remove("c", 1));
+        Assert.assertTrue(map.remove("c", 3));
+        Assert.assertEquals(8, events.size());
+
+        map.merge("a", 1, (v1, v2) -> null);
+        Assert.assertFalse(map.containsKey("a"));
+        Assert.assertEquals(9, events.size());
+        Assert.assertTrue(events.get(8).wasRemoved() && !events.get(8).wasAdded());
+    }
+
+    @Test
+    public void computeFamilyNullValuesTest() {
+        VMap<String, Integer> map = VMap.newInstance(new HashMap<String, Integer>());
+
+        List<VMapChangeEvent<String, Integer>> events = new ArrayList<>();
+        map.addChangeListener(e -> events.add((VMapChangeEvent<String, Integer>) e));
+
+        map.put("a", null);
+        map.put("a", null);
+        Assert.assertTrue(events.get(0).wasAdded() && !events.get(0).wasRemoved());
+        Assert.assertTrue(events.get(1).wasSet());
+
+        // null values are treated as absent by putIfAbsent and merge
+        map.putIfAbsent("a", 1);
+        map.put("b", null);
+        map.merge("b", 2, Integer::sum);
+        Assert.assertEquals(5, events.size());
+        Assert.assertTrue(events.get(2).wasSet());
+        Assert.assertTrue(events.get(4).wasSet());
+        Assert.assertEquals(Integer.valueOf(2), map.get("b"));
+
+        map.replace("a", null);
+        Assert.assertEquals(6, events.size());
+        Assert.assertNull(map.remove("a"));
+        Assert.assertEquals(7, events.size());
+        Assert.assertTrue(events.get(6).wasRemoved());
+
+        // replace keeps absent keys absent and replaces null values
+        map.put("c", null);
+        Assert.assertNull(map.replace("c", 3));
+        Assert.assertNull(map.replace("d", 3));
+        Assert.assertEquals(9, events.size());
+        Assert.assertTrue(events.get(8).wasSet());
+        Assert.assertEquals(Integer.valueOf(3), map.get("c"));
+        Assert.assertFalse(map.containsKey("d"));
+    }
+
+    @Test
+    public void replaceKeepsKeyOrderTest() {
+        VMap<String, Integer> map = VMap.newInstance(new LinkedHashMap<String, Integer>());
+        map.put("a", null);
+        map.put("b", 1);
+
+        List<VMapChangeEvent<String, Integer>> events = new ArrayList<>();
+        map.addChangeListener(e -> events.add((VMapChangeEvent<String, Integer>) e));
+
+        Assert.assertNull(map.replace("a", 5));
+
+        Assert.assertEquals(Arrays.asList("a", "b"), new ArrayList<>(map.keySet()));
+        Assert.assertEquals(Integer.valueOf(5), map.get("a"));
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).wasSet());
+    }
+
+    @Test
+    public void replaceAllEventTest() {
+        VMap<String, Integer> map = VMap.newInstance(new HashMap<String, Integer>());
+        map.put("a", 1);
+        map.put("b", 2);
+
+        List<VMapChangeEvent<String, Integer>> events = new ArrayList<>();
+        map.addChangeListener(e -> events.add((VMapChangeEvent<String, Integer>) e));
+
+        map.setEqualityPolicy(EqualityPolicy.EQUALS);
+        map.replaceAll((k, v) -> k.equals("a") ? 10 : v);
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(1, events.get(0).added().entries().size());
+        Assert.assertEquals(Integer.valueOf(10), events.get(0).added().entries().get("a"));
+        Assert.assertEquals(Integer.valueOf(1), events.get(0).removed().entries().get("a"));
+    }
+
+
+    @Test
+    public void putAllClassifiesEntriesTest() {
+        VMap<String, Integer> map = VMap.newInstance(new HashMap<String, Integer>());
+        map.put("a", 1);
+
+        List<VMapChangeEvent<String, Integer>> events = new ArrayList<>();
+        map.addChangeListener(e -> events.add((VMapChangeEvent<String, Integer>) e));
+
+        Map<String, Integer> inserts = new HashMap<>();
+        inserts.put("b", 2);
+        inserts.put("c", 3);
+        map.putAll(inserts);
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertFalse(events.get(0).wasRemoved());
+        Assert.assertEquals(inserts, events.get(0).added().entries());
+
+        Map<String, Integer> mixed = new HashMap<>();
+        mixed.put("a", 10);
+        mixed.put("d", 4);
+        map.putAll(mixed);
+
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(mixed, events.get(1).added().entries());
+        Assert.assertEquals(1, events.get(1).removed().entries().size());
+        Assert.assertEquals(Integer.valueOf(1), events.get(1).removed().entries().get("a"));
+        Assert.assertFalse(events.get(1).removed().entries().containsKey("d"));
+    }
+
+
+    @Test
+    public void swappingClearTest() {
+        VMap<String, Integer> map = VMap.newInstance(HashMap::new);
+        map.put("a", 1);
+        map.put("b", 2);
+        VMap<String, Integer> unmodifiable = map.asUnmodifiable();
+
+        List<VMapChangeEvent<String, Integer>> events = new ArrayList<>();
+        map.addChangeListener(e -> events.add((VMapChangeEvent<String, Integer>) e));
+
+        map.clear();
+
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(2, events.get(0).removed().entries().size());
+
+        map.put("c", 3);
+        Assert.assertEquals(1, unmodifiable.size());
+        Assert.assertEquals(Integer.valueOf(3), unmodifiable.get("c"));
+        Assert.assertFalse(events.get(0).removed().entries().containsKey("c"));
+    }
+
+
+    @Test
+    public void persistentSnapshotTest() {
+        VMap<String, Integer> map = VMap.newPersistentInstance();
+        Map<String, Integer> reference = new HashMap<>();
+
+        List<Map<String, Integer>> snapshots = new ArrayList<>();
+        List<Map<String, Integer>> expected = new ArrayList<>();
+
+        Random r = getRandom();
+
+        for (int i = 0; i < 20000; i++) {
+            // null keys and values are permitted
+            String key = r.nextInt(100) == 0 ? null : "k" + r.nextInt(2000);
+            Integer value = r.nextInt(100) == 0 ? null : r.nextInt();
+            int op = r.nextInt(10);
+            if (op < 6) {
+                Assert.assertEquals(reference.put(key, value), map.put(key, value));
+            } else if (op < 9) {
+                Assert.assertEquals(reference.remove(key), map.remove(key));
+            } else {
+                snapshots.add(map.snapshot());
+                expected.add(new HashMap<>(reference));
+            }
+            Assert.assertEquals(reference.containsKey(key), map.containsKey(key));
+        }
+
+        Assert.assertEquals(reference, map);
+
+        // snapshots are unaffected by later modifications
+        for (int i = 0; i < snapshots.size(); i++) {
+            Assert.assertEquals(expected.get(i), snapshots.get(i));
+        }
+
+        Map<String, Integer> snapshot = map.snapshot();
+        map.clear();
+        Assert.assertEquals(reference, snapshot);
+    }
+
+
     private static String randomKey() {
         return "k" + getRandom().nextInt();
     }
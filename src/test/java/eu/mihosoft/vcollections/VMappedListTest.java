@@ -4,6 +4,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
 
@@ -71,4 +72,19 @@ public class VMappedListTest {
 
         Assert.assertEquals("info", events.get(0).eventInfo());
     }
+
+    @Test
+    public void permutationPropagated() {
+        VList<Integer> src = VList.newInstance(new ArrayList<>(Arrays.asList(2, 1)));
+        VList<String> list = VMappedList.newInstance(src, fromOrig, toOrig);
+
+        List<VListChangeEvent<String>> events = new ArrayList<>();
+        list.addChangeListener(e -> events.add((VListChangeEvent<String>) e));
+        src.sort(null);
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).wasPermutated());
+        Assert.assertArrayEquals(new int[]{1, 0}, events.get(0).permutation());
+        Assert.assertEquals(Arrays.asList("n2", "n1"), events.get(0).removed().elements());
+    }
 }
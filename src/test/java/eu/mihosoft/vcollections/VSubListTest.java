@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link VSubList}.
+ */
+public class VSubListTest {
+
+    @Test
+    public void bulkOperationsFireOnceTest() {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4, 5, 6)));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        list.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        VList<Integer> sub = list.subListView(2, 6);
+        List<VListChangeEvent<Integer>> subEvents = new ArrayList<>();
+        sub.addChangeListener(e -> subEvents.add((VListChangeEvent<Integer>) e));
+
+        sub.removeIf(i -> i % 2 == 0);
+        Assert.assertEquals(Arrays.asList(3, 5), sub);
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(new int[]{2, 4}, events.get(0).removed().indices());
+        Assert.assertArrayEquals(new int[]{0, 2}, subEvents.get(0).removed().indices());
+
+        sub.clear();
+        Assert.assertEquals(Arrays.asList(0, 1, 6), list);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(2, subEvents.size());
+        Assert.assertArrayEquals(new int[]{0, 1}, subEvents.get(1).removed().indices());
+
+        // insertions through the view land inside the window
+        sub.addAll(Arrays.asList(7, 8));
+        Assert.assertEquals(Arrays.asList(0, 1, 7, 8, 6), list);
+        Assert.assertEquals(Arrays.asList(7, 8), sub);
+        Assert.assertArrayEquals(new int[]{0, 1}, subEvents.get(2).added().indices());
+    }
+
+    @Test
+    public void windowTracksParentTest() {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4)));
+
+        VList<Integer> sub = list.subListView(1, 3);
+        List<VListChangeEvent<Integer>> subEvents = new ArrayList<>();
+        sub.addChangeListener(e -> subEvents.add((VListChangeEvent<Integer>) e));
+
+        // changes outside the window are not reported
+        list.add(0, 9);
+        list.add(4, 9);
+        list.remove(list.size() - 1);
+        Assert.assertEquals(Arrays.asList(1, 2), sub);
+        Assert.assertTrue(subEvents.isEmpty());
+
+        list.set(2, 10);
+        Assert.assertEquals(Arrays.asList(10, 2), sub);
+        Assert.assertEquals(1, subEvents.size());
+        Assert.assertTrue(subEvents.get(0).wasSet());
+        Assert.assertArrayEquals(new int[]{0}, subEvents.get(0).added().indices());
+
+        list.remove(Integer.valueOf(10));
+        Assert.assertEquals(Arrays.asList(2), sub);
+        Assert.assertArrayEquals(new int[]{0}, subEvents.get(1).removed().indices());
+
+        VList<Integer> nested = sub.subListView(0, 1);
+        // the window stays in place, its contents are permuted
+        list.sort(Collections.reverseOrder());
+        Assert.assertEquals(Arrays.asList(9, 9, 3, 2, 0), list);
+        Assert.assertEquals(Arrays.asList(3), sub);
+        Assert.assertEquals(Arrays.asList(3), nested);
+    }
+
+    @Test
+    public void sortAndSetContentsFireOnceTest() {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(9, 4, 2, 3, 1, 0)));
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        list.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        VList<Integer> sub = list.subListView(1, 5);
+        List<VListChangeEvent<Integer>> subEvents = new ArrayList<>();
+        sub.addChangeListener(e -> subEvents.add((VListChangeEvent<Integer>) e));
+
+        sub.sort(null);
+        Assert.assertEquals(Arrays.asList(9, 1, 2, 3, 4, 0), list);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(1, subEvents.size());
+
+        // both events are permutations, elements outside the range stay in place
+        Assert.assertTrue(events.get(0).wasPermutated());
+        Assert.assertArrayEquals(new int[]{0, 4, 2, 3, 1, 5}, events.get(0).permutation());
+        Assert.assertTrue(subEvents.get(0).wasPermutated());
+        Assert.assertArrayEquals(new int[]{3, 1, 2, 0}, subEvents.get(0).permutation());
+        Assert.assertArrayEquals(new int[]{0, 3}, subEvents.get(0).added().indices());
+
+        sub.setContents(Arrays.asList(1, 5, 3, 4, 6));
+        Assert.assertEquals(Arrays.asList(9, 1, 5, 3, 4, 6, 0), list);
+        Assert.assertEquals(Arrays.asList(1, 5, 3, 4, 6), sub);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(2, subEvents.size());
+        Assert.assertArrayEquals(new int[]{2}, events.get(1).removed().indices());
+        Assert.assertArrayEquals(new int[]{2, 5}, events.get(1).added().indices());
+        Assert.assertArrayEquals(new int[]{1}, subEvents.get(1).removed().indices());
+        Assert.assertArrayEquals(new int[]{1, 4}, subEvents.get(1).added().indices());
+    }
+
+    @Test
+    public void unobservedViewsDontObserveParentTest() throws Exception {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4)));
+
+        java.lang.reflect.Field f = VListImpl.class.getDeclaredField("listChangeSupport");
+        f.setAccessible(true);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(2, list.subListView(1, 3).size());
+        }
+        Assert.assertNull(f.get(list));
+
+        // changes through an unobserved view still move its window
+        VList<Integer> sub = list.subListView(1, 3);
+        sub.add(0, 7);
+        sub.add(9);
+        sub.remove(1);
+        Assert.assertEquals(Arrays.asList(7, 2, 9), sub);
+        Assert.assertEquals(Arrays.asList(0, 7, 2, 9, 3, 4), list);
+        sub.subListView(1, 3).clear();
+        Assert.assertEquals(Arrays.asList(7), sub);
+        Assert.assertNull(f.get(list));
+
+        // the parent is observed while the view has listeners
+        VListChangeListener<Integer> l = evt -> {};
+        sub.addChangeListener(l);
+        Assert.assertNotNull(f.get(list));
+        list.add(0, 8);
+        Assert.assertEquals(Arrays.asList(7), sub);
+        sub.removeChangeListener(l);
+        Assert.assertNull(f.get(list));
+    }
+
+    @Test
+    public void randomTest() {
+        Random rnd = VListTest.getRandom();
+
+        VList<Integer> list = VList.newInstance(new ArrayList<>());
+        addRandomInts(rnd, 50, list);
+
+        VList<Integer> sub = list.subListView(10, 30);
+        List<Integer> mirror = new ArrayList<>(sub);
+
+        sub.addChangeListener(evt -> {
+            int[] removed = evt.removed().indices();
+            int[] added = evt.added().indices();
+            if (removed.length > 0 && Arrays.equals(removed, added)) {
+                for (int i = 0; i < added.length; i++) {
+                    mirror.set(added[i], evt.added().elements().get(i));
+                }
+                return;
+            }
+            for (int i = removed.length - 1; i >= 0; i--) {
+                mirror.remove(removed[i]);
+            }
+            for (int i = 0; i < added.length; i++) {
+                mirror.add(added[i], evt.added().elements().get(i));
+            }
+        });
+
+        for (int i = 0; i < 500; i++) {
+            VList<Integer> target = rnd.nextBoolean() || sub.isEmpty() ? list : sub;
+            switch (rnd.nextInt(7)) {
+                case 0:
+                    target.add(rnd.nextInt(target.size() + 1), rnd.nextInt(100));
+                    break;
+                case 1:
+                    if (!target.isEmpty()) {
+                        target.remove(rnd.nextInt(target.size()));
+                    }
+                    break;
+                case 2:
+                    if (!target.isEmpty()) {
+                        target.set(rnd.nextInt(target.size()), rnd.nextInt(100));
+                    }
+                    break;
+                case 3:
+                    if (target.size() > 1) {
+                        target.move(rnd.nextInt(target.size()), rnd.nextInt(target.size()));
+                    }
+                    break;
+                case 4:
+                    int threshold = rnd.nextInt(100);
+                    target.removeIf(e -> e < threshold && rnd.nextInt(4) == 0);
+                    break;
+                case 5:
+                    List<Integer> contents = new ArrayList<>(target);
+                    contents.removeIf(e -> rnd.nextInt(4) == 0);
+                    contents.add(rnd.nextInt(contents.size() + 1), rnd.nextInt(100));
+                    target.setContents(contents);
+                    break;
+                default:
+                    target.sort(null);
+                    break;
+            }
+
+            Assert.assertEquals(mirror, sub);
+
+            if (list.size() < 20) {
+                addRandomInts(rnd, 20, list);
+            }
+        }
+    }
+
+    private static void addRandomInts(Random rnd, int n, List<Integer> list) {
+        for (int i = 0; i < n; i++) {
+            list.add(rnd.nextInt(100));
+        }
+    }
+}
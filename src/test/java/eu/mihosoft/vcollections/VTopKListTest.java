@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link VTopKList}.
+ */
+public class VTopKListTest {
+
+    @Test
+    public void topKTest() {
+        VList<Integer> src = VList.newInstance(new ArrayList<>(Arrays.asList(5, 1, 9, 3, 7)));
+        VTopKList<Integer> top = VTopKList.newInstance(src, Comparator.reverseOrder(), 3);
+
+        Assert.assertEquals(Arrays.asList(9, 7, 5), top);
+    }
+
+    @Test
+    public void minimalEventsTest() {
+        VList<Integer> src = VList.newInstance(new ArrayList<>(Arrays.asList(5, 1, 9, 3, 7)));
+        VTopKList<Integer> top = VTopKList.newInstance(src, Comparator.reverseOrder(), 3);
+
+        List<VListChangeEvent<Integer>> events = new ArrayList<>();
+        top.addChangeListener(e -> events.add((VListChangeEvent<Integer>) e));
+
+        // changes outside of the window must not fire
+        src.add(2);
+        src.remove(Integer.valueOf(1));
+        Assert.assertEquals(0, events.size());
+
+        src.add(8);
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(new int[]{1}, events.get(0).added().indices());
+        Assert.assertArrayEquals(new int[]{2}, events.get(0).removed().indices());
+        Assert.assertEquals(Arrays.asList(5), events.get(0).removed().elements());
+        Assert.assertEquals(Arrays.asList(9, 8, 7), top);
+
+        // removing an element from the window refills it
+        src.remove(Integer.valueOf(9));
+        Assert.assertEquals(2, events.size());
+        Assert.assertArrayEquals(new int[]{0}, events.get(1).removed().indices());
+        Assert.assertArrayEquals(new int[]{2}, events.get(1).added().indices());
+        Assert.assertEquals(Arrays.asList(8, 7, 5), top);
+    }
+
+    @Test
+    public void randomModificationTest() {
+        Random r = VListTest.getRandom();
+        VList<Integer> src = VList.newInstance(new ArrayList<>());
+        VTopKList<Integer> top = VTopKList.newInstance(src, Comparator.naturalOrder(), 5);
+
+        // replay the events on a plain list
+        List<Integer> mirror = new ArrayList<>();
+        top.addChangeListener(evt -> {
+            int[] removed = evt.removed().indices();
+            for (int i = removed.length - 1; i > -1; i--) {
+                mirror.remove(removed[i]);
+            }
+            int[] added = evt.added().indices();
+            for (int i = 0; i < added.length; i++) {
+                mirror.add(added[i], evt.added().elements().get(i));
+            }
+        });
+
+        for (int i = 0; i < 1000; i++) {
+            int op = r.nextInt(5);
+            if (op == 0 || src.isEmpty()) {
+                src.add(r.nextInt(src.size() + 1), r.nextInt(50));
+            } else if (op == 4) {
+                src.sort(Comparator.reverseOrder());
+            } else if (op == 1) {
+                src.remove(r.nextInt(src.size()));
+            } else if (op == 2) {
+                src.set(r.nextInt(src.size()), r.nextInt(50));
+            } else {
+                src.addAll(Arrays.asList(r.nextInt(50), r.nextInt(50), r.nextInt(50)));
+            }
+
+            List<Integer> expected = src.stream().sorted().limit(5).collect(Collectors.toList());
+            Assert.assertEquals(expected, top);
+            Assert.assertEquals(expected, mirror);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import vjavax.observer.Property;
+import vjavax.observer.Subscription;
+import vjavax.observer.ValueChangeListener;
+
+/**
+ * Tests for {@link VTransaction}.
+ */
+public class VTransactionTest {
+
+    @Test
+    public void commitFiresNetEventsAfterAllChangesTest() {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 3)));
+        VMap<String, Integer> map = VMap.newInstance(new HashMap<>());
+        map.put("a", 1);
+        map.put("b", 2);
+
+        List<String> log = new ArrayList<>();
+        List<VListChangeEvent<Integer>> listEvents = new ArrayList<>();
+        List<VMapChangeEvent<String, Integer>> mapEvents = new ArrayList<>();
+
+        list.addChangeListener(e -> {
+            // the map has already been changed
+            Assert.assertEquals(Integer.valueOf(4), map.get("c"));
+            listEvents.add((VListChangeEvent<Integer>) e);
+            log.add("list");
+        });
+        map.addChangeListener(e -> {
+            Assert.assertEquals(Arrays.asList(1, 3, 4, 5), list);
+            mapEvents.add(e);
+            log.add("map");
+        });
+
+        try (VTransaction tx = VTransaction.begin()) {
+            List<Integer> l = tx.edit(list);
+            Map<String, Integer> m = tx.edit(map);
+
+            l.remove(1);
+            l.add(4);
+            l.add(5);
+            m.remove("a");
+            m.put("b", 20);
+            m.put("c", 4);
+
+            // same working copy
+            Assert.assertSame(l, tx.edit(list));
+
+            // nothing happens before commit
+            Assert.assertEquals(Arrays.asList(1, 2, 3), list);
+            Assert.assertFalse(map.containsKey("c"));
+
+            tx.commit();
+            Assert.assertFalse(tx.isActive());
+        }
+
+        // one event per collection, in the order of the edits
+        Assert.assertEquals(Arrays.asList("list", "map"), log);
+
+        VListChangeEvent<Integer> lEvt = listEvents.get(0);
+        Assert.assertEquals(Arrays.asList(2), lEvt.removed().elements());
+        Assert.assertEquals(Arrays.asList(4, 5), lEvt.added().elements());
+
+        VMapChangeEvent<String, Integer> mEvt = mapEvents.get(0);
+        Map<String, Integer> removed = new HashMap<>();
+        removed.put("a", 1);
+        removed.put("b", 2);
+        Map<String, Integer> added = new HashMap<>();
+        added.put("b", 20);
+        added.put("c", 4);
+        Assert.assertEquals(removed, mEvt.removed().entries());
+        Assert.assertEquals(added, mEvt.added().entries());
+    }
+
+    @Test
+    public void abortTest() {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 3)));
+        VMap<String, Integer> map = VMap.newInstance(new HashMap<>());
+
+        List<Object> events = new ArrayList<>();
+        list.addChangeListener(events::add);
+        map.addChangeListener(events::add);
+
+        try (VTransaction tx = VTransaction.begin()) {
+            tx.edit(list).clear();
+            tx.edit(map).put("a", 1);
+            // closed without commit
+        }
+
+        VTransaction tx = VTransaction.begin();
+        tx.edit(list).add(4);
+        tx.abort();
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), list);
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertTrue(events.isEmpty());
+
+        try {
+            tx.edit(list);
+            Assert.fail("Transaction has been aborted");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void failedCommitRollsBackTest() {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 3)));
+        VMap<String, Integer> map = VMap.newInstance(new HashMap<>());
+        VList<Integer> unmodifiable = VList.newInstance(
+                new ArrayList<>(Arrays.asList(7))).asUnmodifiable();
+
+        List<Object> events = new ArrayList<>();
+        list.addChangeListener(events::add);
+        map.addChangeListener(events::add);
+
+        VTransaction tx = VTransaction.begin();
+        tx.edit(list).add(4);
+        tx.edit(map).put("a", 1);
+        tx.edit(unmodifiable).add(8);
+
+        try {
+            tx.commit();
+            Assert.fail("Unmodifiable list must not be written");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), list);
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertEquals(Arrays.asList(7), unmodifiable);
+        Assert.assertTrue(events.isEmpty());
+        Assert.assertFalse(tx.isActive());
+    }
+
+    @Test
+    public void unchangedCollectionsDontFireTest() {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2, 3)));
+        VMap<String, Integer> map = VMap.newInstance(new HashMap<>());
+        map.put("a", 1);
+
+        List<Object> events = new ArrayList<>();
+        list.addChangeListener(events::add);
+        map.addChangeListener(events::add);
+
+        try (VTransaction tx = VTransaction.begin()) {
+            List<Integer> l = tx.edit(list);
+            l.add(4);
+            l.remove(3);
+            tx.edit(map).put("a", 1);
+            tx.commit();
+        }
+
+        Assert.assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void propertiesAreSetAfterCollectionsTest() {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2)));
+        TestProperty<Integer> max = new TestProperty<>(2);
+        TestProperty<Integer> size = new TestProperty<>(2);
+
+        List<String> log = new ArrayList<>();
+        list.addChangeListener(e -> {
+            Assert.assertEquals(Integer.valueOf(3), max.get());
+            log.add("list");
+        });
+        max.onSet = () -> {
+            // the list has already been written
+            Assert.assertEquals(Arrays.asList(1, 2, 3), list);
+            log.add("max");
+        };
+        size.onSet = () -> log.add("size");
+
+        try (VTransaction tx = VTransaction.begin()) {
+            Property<Integer> m = tx.edit(max);
+            Property<Integer> s = tx.edit(size);
+            tx.edit(list).add(3);
+            m.set(3);
+            // unchanged values are not set
+            s.set(s.get());
+
+            Assert.assertSame(m, tx.edit(max));
+            Assert.assertEquals(Integer.valueOf(3), m.get());
+            Assert.assertEquals(Integer.valueOf(2), max.get());
+
+            tx.commit();
+        }
+
+        Assert.assertEquals(Arrays.asList("max", "list"), log);
+    }
+
+    @Test
+    public void failedPropertyRollsBackTest() {
+        VList<Integer> list = VList.newInstance(new ArrayList<>(Arrays.asList(1, 2)));
+        TestProperty<Integer> first = new TestProperty<>(1);
+        TestProperty<Integer> second = new TestProperty<>(2);
+        second.onSet = () -> {
+            throw new IllegalArgumentException();
+        };
+
+        List<Object> events = new ArrayList<>();
+        list.addChangeListener(events::add);
+
+        VTransaction tx = VTransaction.begin();
+        tx.edit(list).add(3);
+        tx.edit(first).set(10);
+        tx.edit(second).set(20);
+
+        try {
+            tx.commit();
+            Assert.fail("Second property must not be written");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+
+        Assert.assertEquals(Arrays.asList(1, 2), list);
+        Assert.assertEquals(Integer.valueOf(1), first.get());
+        Assert.assertTrue(events.isEmpty());
+    }
+
+    private static final class TestProperty<V> implements Property<V> {
+
+        private V value;
+        private Runnable onSet = () -> {
+        };
+
+        TestProperty(V value) {
+            this.value = value;
+        }
+
+        @Override
+        public V get() {
+            return value;
+        }
+
+        @Override
+        public void set(V value) {
+            this.value = value;
+            onSet.run();
+        }
+
+        @Override
+        public Subscription onChanged(ValueChangeListener<? super V> listener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-2019 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ */
+package eu.mihosoft.vcollections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for {@link VersionedVMap}.
+ */
+public class VersionedVMapTest {
+
+    @Test
+    public void eventsReferenceVersionsTest() {
+        VersionedVMap<String, Integer> map = VersionedVMap.newInstance();
+        map.put("a", 1);
+
+        List<VMapChangeEvent<String, Integer>> events = new ArrayList<>();
+        map.addChangeListener(events::add);
+
+        Map<String, Integer> first = map.snapshot();
+
+        Map<String, Integer> entries = new HashMap<>();
+        entries.put("a", 2);
+        entries.put("b", 3);
+        map.putAll(entries);
+
+        Assert.assertEquals(1, events.size());
+        VMapChangeEvent<String, Integer> evt = events.get(0);
+        Assert.assertSame(first, evt.before());
+        Assert.assertSame(map.snapshot(), evt.after());
+        Assert.assertEquals(Collections.singletonMap("a", 1), evt.removed().entries());
+        Assert.assertEquals(entries, evt.added().entries());
+
+        // versions are immutable
+        Assert.assertEquals(Collections.singletonMap("a", 1), first);
+        Assert.assertEquals(entries, evt.after());
+
+        // writes that don't change the version don't fire
+        Integer value = map.get("b");
+        map.put("b", value);
+        map.remove("c");
+        Assert.assertEquals(1, events.size());
+
+        map.put(null, null);
+        map.clear();
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(Collections.singletonMap(null, null), events.get(1).added().entries());
+        Assert.assertEquals(3, events.get(2).removed().entries().size());
+        Assert.assertFalse(events.get(2).wasAdded());
+    }
+
+    @Test
+    public void versionHistoryTest() {
+        VersionedVMap<Key, Integer> map = VersionedVMap.newInstance();
+        Map<Key, Integer> reference = new HashMap<>();
+
+        List<Map<Key, Integer>> versions = new ArrayList<>();
+        List<Map<Key, Integer>> expected = new ArrayList<>();
+
+        map.addChangeListener(evt -> {
+            // replaying the event on the previous version yields the new version
+            Map<Key, Integer> replayed = new HashMap<>(evt.before());
+            evt.removed().keys().forEach(replayed::remove);
+            replayed.putAll(evt.added().entries());
+            Assert.assertEquals(evt.after(), replayed);
+        });
+
+        Random r = VListTest.getRandom();
+
+        for (int i = 0; i < 10000; i++) {
+            // some keys share their hash code
+            int id = r.nextInt(3000);
+            Key key = new Key(id, id % 10 == 0 ? 7 : id);
+            int op = r.nextInt(10);
+            if (op < 5) {
+                Integer value = r.nextInt(10);
+                Assert.assertEquals(reference.put(key, value), map.put(key, value));
+            } else if (op < 8) {
+                Assert.assertEquals(reference.remove(key), map.remove(key));
+            } else if (op < 9) {
+                Map<Key, Integer> entries = new HashMap<>();
+                for (int j = 0; j < 50; j++) {
+                    int otherId = r.nextInt(3000);
+                    entries.put(new Key(otherId, otherId), j);
+                }
+                reference.putAll(entries);
+                map.putAll(entries);
+            } else {
+                versions.add(map.snapshot());
+                expected.add(new HashMap<>(reference));
+            }
+        }
+
+        Assert.assertEquals(reference, map);
+
+        for (int i = 0; i < versions.size(); i++) {
+            Assert.assertEquals(expected.get(i), versions.get(i));
+        }
+    }
+
+    private static final class Key {
+
+        private final int id;
+        private final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).id == id;
+        }
+
+        @Override
+        public String toString() {
+            return "key-" + id;
+        }
+    }
+}